@@ -1,12 +1,45 @@
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.*;
 import org.apache.hadoop.hbase.client.*;
-import org.apache.hadoop.hbase.filter.CompareFilter;
 import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
+import org.apache.hadoop.hbase.mapreduce.LoadIncrementalHFiles;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Pair;
+
+import scrabble.GameCodec;
+import scrabble.GameRowMapper;
+import scrabble.HFilePutSink;
+import scrabble.IngestCheckpoint;
+import scrabble.KeyLayout;
+import scrabble.KeyLayout.KeyFormat;
+import scrabble.LoadEpoch;
+import scrabble.LoadStats;
+import scrabble.ParallelScanner;
+import scrabble.PipelinedLoader;
+import scrabble.PlayerSet;
+import scrabble.QueryCache;
+import scrabble.QueryServer;
+import scrabble.RepeatedPlayers;
+import scrabble.ScanProfile;
+import scrabble.SchemaProfile;
+import scrabble.Snapshot;
+import scrabble.SnapshotQueries;
+import scrabble.SnapshotWriter;
+import scrabble.ScrabbleQueries;
+import scrabble.ScrabbleSchema;
+import scrabble.SplitPlanner;
+import scrabble.StreamingIngest;
+import scrabble.TablePutSink;
+import scrabble.TourneyAggregates;
+import scrabble.WinnerIndex;
+import scrabble.metrics.QueryMetrics;
+import scrabble.metrics.ScrabbleMetrics;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Cloud Computing and Big Data Ecosystems Design: HBase assignment
@@ -17,13 +50,28 @@ import java.util.*;
  * @date 17/01/19.
  */
 
-public class HBaseScrabble {
+public class HBaseScrabble implements ScrabbleQueries, Closeable {
+    public static final String BATCH_GAP_KEY = "scrabble.batch.gap";
+
+    private static final long ALTER_POLL_MILLIS = 1000;
+
     private Configuration config;
+    private HConnection connection;
     private HBaseAdmin hBaseAdmin;
+    private KeyLayout keyLayout;
+    private GameCodec gameCodec;
+    private WinnerIndex winnerIndex;
+    private boolean winnerIndexChecked = false;
+    private Boolean hasAggregates;
+    private ParallelScanner scanner;
+    private final ScrabbleMetrics metrics = new ScrabbleMetrics();
 
     /**
      * The Constructor. Establishes the connection with HBase.
      *
+     * The connection is shared by the admin and all the tables the queries read, so the lookups in ZooKeeper and
+     * the locations of the regions are paid once for the life of the object.
+     *
      * @param zkHost
      * @throws IOException
      */
@@ -32,7 +80,22 @@ public class HBaseScrabble {
         config.set("hbase.zookeeper.quorum", zkHost.split(":")[0]);
         config.set("hbase.zookeeper.property.clientPort", zkHost.split(":")[1]);
         HBaseConfiguration.addHbaseResources(config);
-        this.hBaseAdmin = new HBaseAdmin(config);
+        this.connection = HConnectionManager.createConnection(config);
+        this.hBaseAdmin = new HBaseAdmin(connection);
+        this.metrics.start(config);
+    }
+
+    /**
+     * Closes the connection with HBase.
+     */
+    @Override
+    public void close() throws IOException {
+        if (scanner != null) {
+            scanner.close();
+        }
+        metrics.close();
+        hBaseAdmin.close();
+        connection.close();
     }
 
     /**
@@ -49,9 +112,65 @@ public class HBaseScrabble {
      * 2. Winner: contains all information related to the winning player of the game
      * 3. Loser: contains all information related to the losing player of the game
      *
+     * Next to it the table "ScrabbleWinnerIndex" is (re)created, which indexes the games by tourney and
+     * winner name for query1 (see {@link WinnerIndex}), and the table "ScrabbleTourneyStats", which holds the
+     * players of every tourney for query2 (see {@link TourneyAggregates}).
+     *
+     * The table is created as a single region with unsalted binary keys, and the cell format set by
+     * "scrabble.cell.format" (see {@link GameCodec}).
+     *
      * @throws IOException
      */
     public void createTable() throws IOException {
+        createTable(new KeyLayout(0, KeyFormat.BINARY), new byte[0][]);
+    }
+
+    /**
+     * Initializes and creates the HTable with name 'ScrabbleGames" like {@link #createTable()}, but with the
+     * given key layout and pre-split into regions at the given keys.
+     *
+     * Since the tourney ids are increasing, a single region would receive all the writes of a load until it
+     * splits. Pre-splitting, either by salt bucket or at split points sampled from the data (see
+     * {@link SplitPlanner}), spreads the load over all the region servers from the start.
+     *
+     * The layout is stored in the table descriptor, so loadTable and the queries pick it up transparently.
+     * The cell format is taken from "scrabble.cell.format", one cell per column by default, and the storage settings
+     * of the families from "scrabble.schema.profile", the defaults of HBase by default.
+     *
+     * The new table holds none of the games ingested so far, so the checkpoints of the streaming ingest are cleared
+     * (see {@link IngestCheckpoint}).
+     *
+     * @param layout    The layout of the row keys.
+     * @param splitKeys The sorted keys the table is split at, empty for a single region.
+     * @throws IOException
+     */
+    public void createTable(KeyLayout layout, byte[][] splitKeys) throws IOException {
+        String format = config.get(GameCodec.CELL_FORMAT_KEY, GameCodec.CellFormat.COLUMNS.name());
+        String profile = config.get(SchemaProfile.PROFILE_KEY, SchemaProfile.DEFAULT.name());
+        createTable(layout, GameCodec.of(GameCodec.CellFormat.valueOf(format.toUpperCase())),
+                    SchemaProfile.valueOf(profile.toUpperCase()), splitKeys);
+        new IngestCheckpoint(connection).clear();
+    }
+
+    /**
+     * Initializes and creates the HTable with name 'ScrabbleGames" like {@link #createTable(KeyLayout, byte[][])},
+     * with the given cell format and storage settings.
+     *
+     * The packed format stores a game in 3 cells instead of 19, which shrinks the table and the payload of every
+     * scan. Since a game is never updated, a single version of the cells is kept whatever the format: a reload
+     * writes the same values again, and older versions would only take space until the next major compaction.
+     *
+     * Unlike {@link #createTable(KeyLayout, byte[][])}, the checkpoints of the streaming ingest are kept: migrateKeys
+     * recreates the table with the games it already had.
+     *
+     * @param layout    The layout of the row keys.
+     * @param codec     The format of the cells.
+     * @param profile   The storage settings of the families, see {@link SchemaProfile}.
+     * @param splitKeys The sorted keys the table is split at, empty for a single region.
+     * @throws IOException
+     */
+    public void createTable(KeyLayout layout, GameCodec codec, SchemaProfile profile, byte[][] splitKeys)
+            throws IOException {
         byte[] TABLE = Bytes.toBytes("ScrabbleGames");
         HTableDescriptor table = new HTableDescriptor(TableName.valueOf(TABLE));
 
@@ -59,147 +178,506 @@ public class HBaseScrabble {
         byte[] wInfo = Bytes.toBytes("Winner");
         byte[] lInfo = Bytes.toBytes("Loser");
 
-        try {
-            this.hBaseAdmin.disableTable("ScrabbleGames"); // disable the table
-            this.hBaseAdmin.deleteTable("ScrabbleGames");  // Delete the table
-            System.out.println("Deleted previous ScrabbledGames table version");
-        } catch (Exception e) {
-        }
+        dropTable("ScrabbleGames");
 
         HColumnDescriptor gFamily = new HColumnDescriptor(gInfo);
-        gFamily.setMaxVersions(10); // Default is 3.
+        gFamily.setMaxVersions(1); // Default is 3, the games are never updated.
         HColumnDescriptor wFamily = new HColumnDescriptor(wInfo);
-        wFamily.setMaxVersions(10); // Default is 3.
+        wFamily.setMaxVersions(1);
         HColumnDescriptor lFamily = new HColumnDescriptor(lInfo);
-        lFamily.setMaxVersions(10); // Default is 3.
+        lFamily.setMaxVersions(1);
 
         table.addFamily(gFamily);
         table.addFamily(wFamily);
         table.addFamily(lFamily);
 
-        this.hBaseAdmin.createTable(table);
+        layout.applyTo(table);
+        codec.applyTo(table);
+        profile.applyTo(table, config);
+
+        if (splitKeys.length > 0) {
+            this.hBaseAdmin.createTable(table, splitKeys);
+            System.out.println("Created table with " + (splitKeys.length + 1) + " regions");
+        } else {
+            this.hBaseAdmin.createTable(table);
+        }
+        this.keyLayout = layout;
+        this.gameCodec = codec;
+
+        // The index only needs the bucket splits, its keys are not spread like the ones of the games
+        HTableDescriptor index = new HTableDescriptor(TableName.valueOf(WinnerIndex.TABLE_NAME));
+        index.addFamily(new HColumnDescriptor(WinnerIndex.GAMES));
+
+        dropTable(WinnerIndex.TABLE_NAME);
+        List<byte[]> bucketSplits = layout.bucketSplits();
+        if (bucketSplits.isEmpty()) {
+            this.hBaseAdmin.createTable(index);
+        } else {
+            this.hBaseAdmin.createTable(index, bucketSplits.toArray(new byte[bucketSplits.size()][]));
+        }
+        this.winnerIndex = new WinnerIndex(layout);
+        this.winnerIndexChecked = true;
+
+        // One small row per tourney, a single region is enough
+        HTableDescriptor aggregates = new HTableDescriptor(TableName.valueOf(TourneyAggregates.TABLE_NAME));
+        aggregates.addFamily(new HColumnDescriptor(TourneyAggregates.APPEARANCES));
+        aggregates.addFamily(new HColumnDescriptor(TourneyAggregates.STATS));
+
+        dropTable(TourneyAggregates.TABLE_NAME);
+        this.hBaseAdmin.createTable(aggregates);
+        this.hasAggregates = true;
+
+        bumpLoadEpoch();
     }
 
     /**
-     * Loads data from the specified folder into the previously defined table "ScrabbleGames".
-     *
-     * The row key being used is a 20 character string, where TourneyID and GameID are being padded with leading zeros
-     * to extend them to 20 character length. For example, 00000421530000000123 would be Game 123 in Tourney 42153.
+     * Records that the content of the "ScrabbleGames" table changed, so the query caches drop their results
+     * (see {@link LoadEpoch}). Tables created before the epoch existed get the "ScrabbleMeta" table here.
+     */
+    private void bumpLoadEpoch() throws IOException {
+        LoadEpoch.createTable(hBaseAdmin);
+        new LoadEpoch(connection).bump();
+    }
+
+    /**
+     * Changes the storage settings of the families of the existing "ScrabbleGames" table, without reloading it.
      *
-     * Rows are read one by one from the file but the puts are being loaded into the HBase table in batches of 100.000.
+     * The table stays online while the regions reopen with the new settings, unless online schema changes are
+     * disabled on the cluster, in which case it is disabled for the change. The new settings apply to the HFiles
+     * written from then on, so a major compaction is requested to rewrite the existing ones. The change of the
+     * descriptor is asynchronous, and a region compacted before it reopened would rewrite its HFiles with the
+     * previous settings, so the compaction is only requested once all the regions reopened.
      *
-     * @param folder containing the input data with the name "scrabble_games.csv". It requires the data folder to be in
-     *               in the root folder of the project at the same level as the src folder.
+     * @param profile The storage settings, see {@link SchemaProfile}.
      * @throws IOException
      * @throws InterruptedException
      */
-    public void loadTable(String folder) throws IOException, InterruptedException {
+    public void applySchemaProfile(SchemaProfile profile) throws IOException, InterruptedException {
+        TableName tableName = TableName.valueOf(ScrabbleSchema.TABLE_NAME);
+        HTableDescriptor table = hBaseAdmin.getTableDescriptor(tableName);
+        SchemaProfile previous = SchemaProfile.of(table);
+        profile.applyTo(table, config);
+
+        boolean online = config.getBoolean("hbase.online.schema.update.enable", true);
+        if (!online) {
+            hBaseAdmin.disableTable(tableName);
+        }
+        try {
+            hBaseAdmin.modifyTable(tableName, table);
+        } finally {
+            if (!online) {
+                hBaseAdmin.enableTable(tableName);
+            }
+        }
+        System.out.println("Changed the schema profile of " + tableName.getNameAsString() + " from " + previous
+                + " to " + profile);
+
+        // the first number is the regions still to reopen, the second one all the regions of the table
+        Pair<Integer, Integer> status = hBaseAdmin.getAlterStatus(tableName);
+        while (status.getFirst() > 0) {
+            System.out.println("Waiting for " + status.getFirst() + " of " + status.getSecond()
+                    + " regions to reopen with the new settings");
+            Thread.sleep(ALTER_POLL_MILLIS);
+            status = hBaseAdmin.getAlterStatus(tableName);
+        }
 
-        byte[] gInfo = Bytes.toBytes("Game");
-        byte[] wInfo = Bytes.toBytes("Winner");
-        byte[] lInfo = Bytes.toBytes("Loser");
+        hBaseAdmin.majorCompact(ScrabbleSchema.TABLE_NAME);
+        System.out.println("Requested a major compaction to rewrite the existing HFiles");
+    }
 
-        String filePath = folder + "/" + "scrabble_games.csv";
+    /**
+     * If the table exists already, it is being disabled and deleted.
+     */
+    private void dropTable(String tableName) {
+        try {
+            this.hBaseAdmin.disableTable(tableName); // disable the table
+            this.hBaseAdmin.deleteTable(tableName);  // Delete the table
+            System.out.println("Deleted previous " + tableName + " table version");
+        } catch (Exception e) {
+        }
+    }
 
-        HTable table = new HTable(config, "ScrabbleGames");
+    /**
+     * @return The key layout of the "ScrabbleGames" table, read once from its table descriptor.
+     */
+    private synchronized KeyLayout keyLayout() throws IOException {
+        if (keyLayout == null) {
+            keyLayout = KeyLayout.of(hBaseAdmin.getTableDescriptor(TableName.valueOf(ScrabbleSchema.TABLE_NAME)));
+        }
+        return keyLayout;
+    }
 
-        int[] keyTable = {1, 0};
+    /**
+     * @return The cell format of the "ScrabbleGames" table, read once from its table descriptor.
+     */
+    private synchronized GameCodec gameCodec() throws IOException {
+        if (gameCodec == null) {
+            gameCodec = GameCodec.of(hBaseAdmin.getTableDescriptor(TableName.valueOf(ScrabbleSchema.TABLE_NAME)));
+        }
+        return gameCodec;
+    }
 
-        String line;
-        BufferedReader br = new BufferedReader(new FileReader(filePath));
+    /**
+     * @return The winner index of the "ScrabbleGames" table, null if the table has none because it was created
+     *         before the index existed.
+     */
+    private synchronized WinnerIndex winnerIndex() throws IOException {
+        if (!winnerIndexChecked) {
+            if (hBaseAdmin.tableExists(WinnerIndex.TABLE_NAME)) {
+                winnerIndex = new WinnerIndex(keyLayout());
+            }
+            winnerIndexChecked = true;
+        }
+        return winnerIndex;
+    }
 
-        // read header
-        String header = br.readLine();
-        List<String> columns = Arrays.asList(header.split(","));
+    /**
+     * @return Whether the "ScrabbleGames" table has tourney aggregates. Tables created before the aggregates existed
+     *         have none.
+     */
+    private synchronized boolean hasAggregates() throws IOException {
+        if (hasAggregates == null) {
+            hasAggregates = hBaseAdmin.tableExists(TourneyAggregates.TABLE_NAME);
+        }
+        return hasAggregates;
+    }
 
-        List<Put> putList = new ArrayList<Put>();
+    /**
+     * Forgets the settings read from the table descriptors, so they are read again from the tables as they are now.
+     */
+    private synchronized void forgetTableSettings() {
+        keyLayout = null;
+        gameCodec = null;
+        winnerIndex = null;
+        winnerIndexChecked = false;
+        hasAggregates = null;
+    }
 
-        int rowId = 1;
-        while ((line = br.readLine()) != null) {
+    /**
+     * @return A new tracker of the aggregates to be maintained by a load, null if the table has none.
+     */
+    private TourneyAggregates newAggregates() throws IOException {
+        return hasAggregates() ? new TourneyAggregates() : null;
+    }
 
-            String[] values = line.split(",");
+    /**
+     * @return The scanner running the range scans of the queries in parallel, created on first use.
+     */
+    private synchronized ParallelScanner scanner() {
+        if (scanner == null) {
+            scanner = new ParallelScanner(config, connection, metrics.getRegionScans());
+        }
+        return scanner;
+    }
 
-            Put p = new Put(getKey(values, keyTable));
-            List<String> cells = Arrays.asList(line.split(","));
+    /**
+     * Loads data from the specified folder into the previously defined table "ScrabbleGames".
+     *
+     * The row key being used is TourneyID followed by GameID, encoded as described by the {@link KeyLayout} of the
+     * table: 8 bytes for tables created by createTable, or the 20 character string of older tables.
+     * If the table is salted, the key is prefixed with the bucket of the tourney.
+     *
+     * The file is loaded by a {@link PipelinedLoader}: one thread reads the lines, a pool of threads parses them
+     * into Puts and a single writer sends them to HBase through a client side write buffer, so reading, parsing
+     * and the RPCs overlap. The queues between the stages are bounded, which keeps the heap usage flat no
+     * matter how big the file is.
+     *
+     * The winner index and the tourney aggregates are maintained along with the games. Once all the games are
+     * written, the players that appeared more than once are recomputed for every tourney of the file.
+     *
+     * @param folder containing the input data with the name "scrabble_games.csv". It requires the data folder to be in
+     *               in the root folder of the project at the same level as the src folder.
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public void loadTable(String folder) throws IOException, InterruptedException {
+        String filePath = folder + "/" + "scrabble_games.csv";
+
+        TourneyAggregates aggregates = newAggregates();
+        LoadStats stats;
+        try (TablePutSink sink = new TablePutSink(config, metrics.getLoad().getRpc())) {
+            GameRowMapper mapper = new GameRowMapper(keyLayout(), gameCodec(), winnerIndex(), aggregates);
+            stats = new PipelinedLoader(config, mapper, metrics.getLoad()).load(filePath, sink);
+        }
+        System.out.println(stats);
+
+        if (aggregates != null) {
+            int tourneys = aggregates.getTouched();
+            aggregates.refresh(connection);
+            System.out.println("Refreshed the aggregates of " + tourneys + " tourneys");
+        }
+        bumpLoadEpoch();
+    }
+
+    /**
+     * Ingests the csv files of the folder in micro-batches, resuming from where the previous ingest stopped, see
+     * {@link StreamingIngest}.
+     *
+     * Unlike loadTable, a crash only loses the batch being written, and the games appended to the files are written
+     * as they come, so they can be queried within seconds. When following the files, the ingest runs until the
+     * process is stopped, and the batch being written when it is stopped is finished and checkpointed.
+     *
+     * @param folder containing the csv files, "scrabble_games.csv" and any other one.
+     * @param follow Whether to keep waiting for new games, instead of returning once the files are ingested.
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public void ingest(String folder, boolean follow) throws IOException, InterruptedException {
+        LoadEpoch.createTable(hBaseAdmin);
+        TourneyAggregates aggregates = newAggregates();
+        final StreamingIngest ingest;
+        LoadStats stats;
+        try (TablePutSink sink = new TablePutSink(config, metrics.getLoad().getRpc())) {
+            GameRowMapper mapper = new GameRowMapper(keyLayout(), gameCodec(), winnerIndex(), aggregates);
+            ingest = new StreamingIngest(config, connection, mapper, aggregates, new IngestCheckpoint(connection),
+                                         new LoadEpoch(connection), metrics.getLoad());
+
+            if (follow) {
+                // lets the batch being written be checkpointed before the process exits
+                final Thread ingesting = Thread.currentThread();
+                Runtime.getRuntime().addShutdownHook(new Thread() {
+                    @Override
+                    public void run() {
+                        ingest.stop();
+                        try {
+                            ingesting.join();
+                        } catch (InterruptedException e) {
+                            // exiting anyway
+                        }
+                    }
+                });
+                System.out.println("Following the csv files of " + folder + ", stop with Ctrl-C");
+            }
+            stats = ingest.ingest(new File(folder), follow, sink);
+        }
+        System.out.println(stats);
+    }
 
-            //Game info
-            p.add(gInfo, Bytes.toBytes("gameid"), Bytes.toBytes(cells.get(0)));
-            p.add(gInfo, Bytes.toBytes("tourneyid"), Bytes.toBytes(cells.get(1)));
-            p.add(gInfo, Bytes.toBytes("tie"), Bytes.toBytes(cells.get(2)));
-            p.add(gInfo, Bytes.toBytes("round"), Bytes.toBytes(cells.get(15)));
-            p.add(gInfo, Bytes.toBytes("division"), Bytes.toBytes(cells.get(16)));
-            p.add(gInfo, Bytes.toBytes("date"), Bytes.toBytes(cells.get(17)));
-            p.add(gInfo, Bytes.toBytes("lexicon"), Bytes.toBytes(cells.get(18)));
+    /**
+     * Loads data from the specified folder into the table "ScrabbleGames" without going through the write path.
+     *
+     * The games are parsed like in loadTable, but instead of being sent to the region servers the cells are
+     * sorted into HFiles in a staging directory, one sub directory per table and column family. The HFiles are
+     * then handed to the tables in one step, which skips the WAL and the memstores entirely. This is the fastest
+     * way of seeding the table, its winner index and its tourney aggregates after createTable.
+     *
+     * @param folder     containing the input data with the name "scrabble_games.csv".
+     * @param stagingDir directory for the HFiles on the file system of the cluster. It must not exist and is
+     *                   deleted after the load. A local path (file:///...) works against a local HBase.
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public void bulkLoad(String folder, String stagingDir) throws IOException, InterruptedException {
+        String filePath = folder + "/" + "scrabble_games.csv";
 
-            //Winner info
-            p.add(wInfo, Bytes.toBytes("id"), Bytes.toBytes(cells.get(3)));
-            p.add(wInfo, Bytes.toBytes("name"), Bytes.toBytes(cells.get(4)));
-            p.add(wInfo, Bytes.toBytes("score"), Bytes.toBytes(cells.get(5)));
-            p.add(wInfo, Bytes.toBytes("oldrating"), Bytes.toBytes(cells.get(6)));
-            p.add(wInfo, Bytes.toBytes("newrating"), Bytes.toBytes(cells.get(7)));
-            p.add(wInfo, Bytes.toBytes("pos"), Bytes.toBytes(cells.get(8)));
+        Path outputDir = new Path(stagingDir);
+        FileSystem fs = outputDir.getFileSystem(config);
+        if (fs.exists(outputDir)) {
+            throw new IOException("Staging directory " + outputDir + " already exists");
+        }
 
-            //Loser info
-            p.add(lInfo, Bytes.toBytes("id"), Bytes.toBytes(cells.get(9)));
-            p.add(lInfo, Bytes.toBytes("name"), Bytes.toBytes(cells.get(10)));
-            p.add(lInfo, Bytes.toBytes("score"), Bytes.toBytes(cells.get(11)));
-            p.add(lInfo, Bytes.toBytes("oldrating"), Bytes.toBytes(cells.get(12)));
-            p.add(lInfo, Bytes.toBytes("newrating"), Bytes.toBytes(cells.get(13)));
-            p.add(lInfo, Bytes.toBytes("pos"), Bytes.toBytes(cells.get(14)));
+        TourneyAggregates aggregates = newAggregates();
+        LoadStats stats;
+        Set<String> tables;
+        // The HFiles are written with the settings of their families, so they need no compaction to be encoded
+        List<HTableDescriptor> descriptors = new ArrayList<>();
+        descriptors.add(hBaseAdmin.getTableDescriptor(TableName.valueOf(ScrabbleSchema.TABLE_NAME)));
+        if (winnerIndex() != null) {
+            descriptors.add(hBaseAdmin.getTableDescriptor(TableName.valueOf(WinnerIndex.TABLE_NAME)));
+        }
+        if (aggregates != null) {
+            descriptors.add(hBaseAdmin.getTableDescriptor(TableName.valueOf(TourneyAggregates.TABLE_NAME)));
+        }
+        // The HFiles are cut at the region boundaries, so every region gets one HFile per family
+        Map<String, byte[][]> startKeys = new HashMap<>();
+        for (HTableDescriptor descriptor : descriptors) {
+            startKeys.put(descriptor.getTableName().getNameAsString(), regionStartKeys(descriptor.getTableName()));
+        }
+        try (HFilePutSink sink = new HFilePutSink(config, outputDir, descriptors, startKeys)) {
+            GameRowMapper mapper = new GameRowMapper(keyLayout(), gameCodec(), winnerIndex(), aggregates);
+            stats = new PipelinedLoader(config, mapper, metrics.getLoad()).load(filePath, sink);
+            System.out.println("Wrote " + sink.getFilesWritten() + " HFiles to " + outputDir);
+            tables = sink.getTables();
+        }
+        System.out.println(stats);
 
-            putList.add(p);
+        LoadIncrementalHFiles bulkLoader;
+        try {
+            bulkLoader = new LoadIncrementalHFiles(config);
+        } catch (Exception e) {
+            throw new IOException("Could not initialize the bulk load", e);
+        }
 
-            if (rowId % 100000.0 == 0) {
-                // write in batch to HBase makes it a bit faster, however not sure how big batches can be
-                // taking all data at once leads to heap size exception
-                table.put(putList);
-                putList.clear();
-                System.out.println("Loaded 100000 Records");
+        for (String tableName : tables) {
+            HTable table = new HTable(config, tableName);
+            try {
+                bulkLoader.doBulkLoad(new Path(outputDir, tableName), table);
+            } finally {
+                table.close();
             }
-            rowId++;
+            System.out.println("Bulk loaded HFiles into table " + tableName);
         }
+        fs.delete(outputDir, true);
 
-        System.out.println("Last Line: " + rowId);
-        table.put(putList);
-        System.out.println("Put rest: " + putList.size());
+        if (aggregates != null) {
+            aggregates.refresh(connection);
+        }
+        bumpLoadEpoch();
+    }
 
+    /**
+     * @return The start keys of the regions of a table.
+     */
+    private byte[][] regionStartKeys(TableName tableName) throws IOException {
+        List<HRegionLocation> regions = connection.locateRegions(tableName);
+        byte[][] startKeys = new byte[regions.size()][];
+        for (int i = 0; i < startKeys.length; i++) {
+            startKeys[i] = regions.get(i).getRegionInfo().getStartKey();
+        }
+        return startKeys;
     }
 
     /**
-     * This method generates the key.
+     * Migrates a "ScrabbleGames" table with 20 character ASCII keys to the 8 byte binary keys.
+     *
+     * The table is first cloned from a snapshot into "ScrabbleGames_ascii", then recreated with binary keys and the
+     * same salt buckets, cell format and schema profile, and every row of the clone is copied back under its new key
+     * with the timestamps of its cells. The winner index and the tourney aggregates are rebuilt along the way.
+     *
+     * The clone is the copy of reference until the migration completes: it is only dropped, with the snapshots, once
+     * all the rows were copied. A migration that failed once the clone existed is therefore resumed by running it
+     * again, which recreates "ScrabbleGames" from the clone and copies all the rows again, whatever the table holds.
      *
-     * @param values   The value of each column
-     * @param keyTable The position of each value that is required to create the key in the array of values.
-     * @return The encoded key to be inserted in HBase
+     * @throws IOException
+     * @throws InterruptedException
      */
-    private byte[] getKey(String[] values, int[] keyTable) {
-        String keyString = "";
-        for (int keyId : keyTable) {
-            keyString += String.format("%010d", Integer.parseInt(values[keyId]));
+    public void migrateKeys() throws IOException, InterruptedException {
+        TableName tableName = TableName.valueOf(ScrabbleSchema.TABLE_NAME);
+        TableName cloneName = TableName.valueOf(ScrabbleSchema.TABLE_NAME + "_ascii");
+        String snapshotPrefix = ScrabbleSchema.TABLE_NAME + "_ascii_";
+
+        HTableDescriptor oldDescriptor;
+        if (hBaseAdmin.tableExists(cloneName)) {
+            // A previous migration failed, the clone holds the ASCII table as it was
+            oldDescriptor = hBaseAdmin.getTableDescriptor(cloneName);
+            System.out.println("Resuming the migration from " + cloneName.getNameAsString());
+        } else {
+            oldDescriptor = hBaseAdmin.getTableDescriptor(tableName);
+            if (KeyLayout.of(oldDescriptor).getFormat() == KeyFormat.BINARY) {
+                System.out.println("Table " + tableName.getNameAsString() + " already has binary keys");
+                return;
+            }
+            String snapshotName = snapshotPrefix + System.currentTimeMillis();
+            hBaseAdmin.snapshot(snapshotName, tableName);
+            hBaseAdmin.cloneSnapshot(snapshotName, cloneName);
+            System.out.println("Cloned table " + tableName.getNameAsString() + " into " + cloneName.getNameAsString());
         }
-        byte[] key = Bytes.toBytes(keyString);
+        KeyLayout oldLayout = KeyLayout.of(oldDescriptor);
+        GameCodec codec = GameCodec.of(oldDescriptor);
+        SchemaProfile profile = SchemaProfile.of(oldDescriptor);
+
+        KeyLayout newLayout = new KeyLayout(oldLayout.isSalted() ? oldLayout.getBuckets() : 0, KeyFormat.BINARY);
+        List<byte[]> splits = newLayout.bucketSplits();
+        createTable(newLayout, codec, profile, splits.toArray(new byte[splits.size()][]));
+        TourneyAggregates aggregates = newAggregates();
+
+        HTable clone = new HTable(config, cloneName);
+        ResultScanner rs = clone.getScanner(ScanProfile.FULL_ROWS.newScan());
+
+        long rows = 0;
+        try (TablePutSink sink = new TablePutSink(config)) {
+            List<Put> batch = new ArrayList<>();
+            List<Put> indexBatch = new ArrayList<>();
+            List<Put> aggregatesBatch = new ArrayList<>();
+            for (Result result : rs) {
+                byte[] row = result.getRow();
+                int tourneyId = oldLayout.tourneyId(row);
+                int gameId = oldLayout.gameId(row);
+
+                Put p = new Put(newLayout.rowKey(tourneyId, gameId));
+                for (Cell cell : result.rawCells()) {
+                    p.add(CellUtil.cloneFamily(cell), CellUtil.cloneQualifier(cell), cell.getTimestamp(),
+                          CellUtil.cloneValue(cell));
+                }
+                batch.add(p);
 
-        return key;
-    }
+                String winnerName = codec.getString(result, ScrabbleSchema.WINNER, ScrabbleSchema.NAME);
+                String loserId = codec.getString(result, ScrabbleSchema.LOSER, ScrabbleSchema.ID);
+                if (winnerName != null && loserId != null) {
+                    indexBatch.add(winnerIndex().toPut(tourneyId, gameId, winnerName, Bytes.toBytes(loserId)));
+                }
+
+                String winnerId = codec.getString(result, ScrabbleSchema.WINNER, ScrabbleSchema.ID);
+                if (winnerId != null && loserId != null) {
+                    aggregatesBatch.add(aggregates.toPut(tourneyId, gameId, Integer.parseInt(winnerId),
+                                                         Integer.parseInt(loserId)));
+                }
 
+                if (batch.size() == 1000) {
+                    sink.write(ScrabbleSchema.TABLE_NAME, batch);
+                    sink.write(WinnerIndex.TABLE_NAME, indexBatch);
+                    sink.write(TourneyAggregates.TABLE_NAME, aggregatesBatch);
+                    batch.clear();
+                    indexBatch.clear();
+                    aggregatesBatch.clear();
+                }
+                rows++;
+            }
+            sink.write(ScrabbleSchema.TABLE_NAME, batch);
+            sink.write(WinnerIndex.TABLE_NAME, indexBatch);
+            sink.write(TourneyAggregates.TABLE_NAME, aggregatesBatch);
+            sink.flush();
+        } finally {
+            rs.close();
+            clone.close();
+        }
+        System.out.println("Migrated " + rows + " rows to binary keys");
+        aggregates.refresh(connection);
+        bumpLoadEpoch();
+
+        hBaseAdmin.disableTable(cloneName);
+        hBaseAdmin.deleteTable(cloneName);
+        // also the snapshots of the migrations that failed before their clone was made
+        hBaseAdmin.deleteSnapshots(snapshotPrefix + "\\d+");
+    }
 
     /**
      * Counts total number of records loaded into the "ScrabbleGames" table.
+     *
+     * Every region of the table is counted by its own scan, in parallel. Only the first key of every row is sent
+     * back, without its value.
      */
-    public void countRecords() throws IOException {
-        HTable table = new HTable(config, "ScrabbleGames");
-        Scan scan = new Scan();
-        ResultScanner rs = table.getScanner(scan);
-        Result res = rs.next();
+    @Override
+    public long countRecords() throws IOException {
+        long startTime = System.nanoTime();
+        long nRows = QueryMetrics.FAILED;
+        try {
+            nRows = countRows();
+        } finally {
+            metrics.getQuery("countRecords").record(startTime, nRows,
+                                                    nRows != QueryMetrics.FAILED ? 1 : QueryMetrics.FAILED);
+        }
+        return nRows;
+    }
 
-        int nRows = 0;
+    private long countRows() throws IOException {
+        List<Long> counts = scanner().scan("ScrabbleGames", ScanProfile.COUNT.newScan(), ParallelScanner.wholeTable(),
+                                           new ParallelScanner.RangeScan<Long>() {
+            @Override
+            public Long scan(ResultScanner rs) throws IOException {
+                long nRows = 0;
+                for (Result result : rs) {
+                    nRows++;
+                }
+                return nRows;
+            }
+        });
 
-        while (res != null && !res.isEmpty()) {
-            nRows++;
-            res = rs.next();
+        long nRows = 0;
+        for (long count : counts) {
+            nRows += count;
         }
-
-        System.out.println("Total rows in table: " + nRows);
+        return nRows;
     }
 
     /**
@@ -208,140 +686,339 @@ public class HBaseScrabble {
      * The opponents are identified by their id.
      * The tournaments are identified by their id.
      *
+     * The opponents are read with a single Get from the winner index, so the latency does not depend on the size
+     * of the tournament. Tables created before the index are scanned instead.
+     *
      * @param tourneyid  The id of the tournament.
      * @param winnername The id of the winner name.
      * @return The opponents list produced by the query.
      * @throws IOException
      */
+    @Override
     public List<String> query1(String tourneyid, String winnername) throws IOException {
-        // Getting reference to the table
-        HTable table = new HTable(config, "ScrabbleGames");
-
-        // Setting the interval
-        byte[] startKey = Bytes.toBytes(String.format("%010d", Integer.parseInt(tourneyid)) + "0000000000");
-        byte[] endKey = Bytes.toBytes(String.format("%010d", Integer.parseInt(tourneyid)) + "9999999999");
+        long startTime = System.nanoTime();
+        AtomicLong rowsRead = new AtomicLong();
+        List<String> queryResult = null;
+        try {
+            queryResult = winnerIndex() != null ? query1FromIndex(tourneyid, winnername, rowsRead)
+                                                : query1FromGames(tourneyid, winnername, rowsRead);
+        } finally {
+            metrics.getQuery("query1").record(startTime, rowsRead.get(),
+                                              queryResult != null ? queryResult.size() : QueryMetrics.FAILED);
+        }
+        return queryResult;
+    }
 
-        // Scan all the records between the interval
-        Scan scan = new Scan(startKey, endKey);
+    /**
+     * Query 1 answered by the games of the tournament, for tables created before the winner index.
+     */
+    private List<String> query1FromGames(String tourneyid, String winnername, AtomicLong rowsRead)
+            throws IOException {
+        // Setting the interval. All the games of a tournament are in the same bucket.
+        byte[] startKey = keyLayout().tourneyStart(Integer.parseInt(tourneyid));
+        byte[] endKey = keyLayout().tourneyStop(Integer.parseInt(tourneyid));
 
         // Creating the filter.
         // It means: get the rows wher the name of the winner is equal to the in the variabile "winnername"
-        SingleColumnValueFilter f = new SingleColumnValueFilter(Bytes.toBytes("Winner"),
-                                                                Bytes.toBytes("name"),
-                                                                CompareFilter.CompareOp.EQUAL,
-                                                                Bytes.toBytes(winnername));
-        // Applying the filtering
-        scan.setFilter(f);
-
-        // Get the iterator with the results
+        GameCodec codec = gameCodec();
+        SingleColumnValueFilter f = codec.equalFilter(ScrabbleSchema.WINNER, ScrabbleSchema.NAME, winnername);
+
+        // Scan all the records between the interval, reading only the winner name and the opponent
+        Scan scan = ScanProfile.QUERY1.newScan(codec, f);
+        scan.setStartRow(startKey);
+        scan.setStopRow(endKey);
+
+        // Getting reference to the table, and the iterator with the results
+        HTableInterface table = connection.getTable("ScrabbleGames");
         ResultScanner rs = table.getScanner(scan);
 
         // Instantiating the list that contains all the resulting opponents
         ArrayList<String> queryResult = new ArrayList<>();
 
         // Add the results to the list queryResult
-        Result result = rs.next();
-        while (result != null && !result.isEmpty()) {
-            // String key = Bytes.toString(result.getRow());
-            queryResult.add(Bytes.toString(result.getValue(Bytes.toBytes("Loser"), Bytes.toBytes("id"))));
-            result = rs.next();
+        try {
+            Result result = rs.next();
+            while (result != null && !result.isEmpty()) {
+                // String key = Bytes.toString(result.getRow());
+                queryResult.add(codec.getString(result, ScrabbleSchema.LOSER, ScrabbleSchema.ID));
+                rowsRead.incrementAndGet();
+                result = rs.next();
+            }
+        } finally {
+            rs.close();
+            table.close();
         }
 
         return queryResult;
     }
 
     /**
-     * Query 2: Returns the ids of the Winner and Loser that have participated more than once in all the
-     * tournaments between two given Tourneyids.
-     *
-     * @param firsttourneyid  The id of the first tournament.
-     * @param lasttourneyid   The id of the second tournament.
-     * @return The list containing
-     * @throws IOException
+     * Query 1 answered by the winner index: the row of the winner in the tournament holds one column per game,
+     * whose value is the id of the opponent.
      */
-    public List<String> query2(String firsttourneyid, String lasttourneyid) throws IOException {
-        // Instantiating working lists
-        Set<String> finalResult = new HashSet<>(); // outcome of the query
-        Set<String> tempResult = new HashSet<>();
-        Set<String> appearedOnce = new HashSet<>();
+    private List<String> query1FromIndex(String tourneyid, String winnername, AtomicLong rowsRead)
+            throws IOException {
+        Get get = new Get(winnerIndex().rowKey(Integer.parseInt(tourneyid), winnername));
+        get.addFamily(WinnerIndex.GAMES);
 
-        // Getting reference to the table
-        HTable table = new HTable(config, "ScrabbleGames");
-
-        // Setting the interval
-        byte[] startKey = Bytes.toBytes(String.format("%010d", Integer.parseInt(firsttourneyid)) + "0000000000");
-        byte[] endKey = Bytes.toBytes(String.format("%010d", Integer.parseInt(lasttourneyid)) + "0000000000");
-
-        // Scan all the records between the interval
-        Scan scan = new Scan(startKey, endKey);
-        ResultScanner rs = table.getScanner(scan);
-
-        // Workaround to let access the first IF (in the loop) to the very first tournament
-        String currentTourney = "-1";
+        HTableInterface table = connection.getTable(WinnerIndex.TABLE_NAME);
+        Result result;
+        try {
+            result = table.get(get);
+        } finally {
+            table.close();
+        }
 
-        // Iterating over the results of the scan
-        Result result = rs.next();
-         while (result != null && !result.isEmpty()) {
-            //String key = Bytes.toString(result.getRow());
-            String temp = Bytes.toString(result.getValue(Bytes.toBytes("Game"), Bytes.toBytes("tourneyid")));
+        return indexedOpponents(result, rowsRead);
+    }
 
-            // If the currentTourneyid is different from the temp-(TourneyId)
-            // This means the Tournament changes and so:
-            if (!currentTourney.equals(temp)) {
+    /**
+     * @return The opponents held by a row of the winner index, in the order of the games in the table.
+     */
+    private static List<String> indexedOpponents(Result result, AtomicLong rowsRead) {
+        // The columns come back sorted by game key, the order of the games in the table
+        ArrayList<String> queryResult = new ArrayList<>();
+        if (!result.isEmpty()) {
+            // every column stands for a game
+            rowsRead.addAndGet(result.size());
+            for (Cell cell : result.rawCells()) {
+                queryResult.add(Bytes.toString(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength()));
+            }
+        }
+        return queryResult;
+    }
 
-                // Take the intersection of the finalResult and the tempResult
-                // When the currentTourney is not the very first one
-                if (!firsttourneyid.equals(currentTourney)) {
-                    // The retain takes the intersection of the lists
-                    finalResult.retainAll(tempResult);
-                } else {
-                    // Clean the lists
-                    finalResult.addAll(tempResult);
+    /**
+     * Query 1 for many (tourney, winner) pairs at once.
+     *
+     * With the winner index, all the rows of the pairs are read by a single multi-get: the client groups the Gets by
+     * region server and sends the groups in parallel, so the batch takes about as long as the slowest server.
+     * Otherwise the games of the tournaments are scanned, keeping the rows of any of the winners. The tournaments
+     * are scanned together, see {@link #query3(Collection)}.
+     *
+     * @param winnernames The names of the winners, by tourney id.
+     * @return The ids of the opponents, by tourney id and winner name, in the order of the arguments.
+     * @throws IOException
+     */
+    @Override
+    public Map<String, Map<String, List<String>>> query1(Map<String, ? extends Collection<String>> winnernames)
+            throws IOException {
+        long startTime = System.nanoTime();
+        AtomicLong rowsRead = new AtomicLong();
+        Map<String, Map<String, List<String>>> queryResult = new LinkedHashMap<>();
+        long nResults = QueryMetrics.FAILED;
+        try {
+            Map<List<Object>, List<String>> opponents = winnerIndex() != null ? query1FromIndex(winnernames, rowsRead)
+                                                                              : query1FromGames(winnernames, rowsRead);
+
+            long returned = 0;
+            for (Map.Entry<String, ? extends Collection<String>> tourney : winnernames.entrySet()) {
+                int tourneyId = Integer.parseInt(tourney.getKey());
+                Map<String, List<String>> winners = new LinkedHashMap<>();
+                for (String winnername : tourney.getValue()) {
+                    List<String> games = opponents.get(Arrays.<Object>asList(tourneyId, winnername));
+                    winners.put(winnername, games != null ? new ArrayList<>(games) : new ArrayList<String>());
+                    returned += winners.get(winnername).size();
                 }
+                queryResult.put(tourney.getKey(), winners);
+            }
+            nResults = returned;
+        } finally {
+            metrics.getQuery("query1Batch").record(startTime, rowsRead.get(), nResults);
+        }
+        return queryResult;
+    }
 
-                tempResult.clear();
-                appearedOnce.clear();
-                // Update to the current tournament
-                currentTourney = temp;
+    /**
+     * Batched query 1 answered by the winner index.
+     *
+     * @return The opponents, by {tourney id, winner name}.
+     */
+    private Map<List<Object>, List<String>> query1FromIndex(Map<String, ? extends Collection<String>> winnernames,
+                                                            AtomicLong rowsRead) throws IOException {
+        List<List<Object>> pairs = new ArrayList<>();
+        List<Get> gets = new ArrayList<>();
+        for (Map.Entry<String, ? extends Collection<String>> tourney : winnernames.entrySet()) {
+            int tourneyId = Integer.parseInt(tourney.getKey());
+            for (String winnername : tourney.getValue()) {
+                Get get = new Get(winnerIndex().rowKey(tourneyId, winnername));
+                get.addFamily(WinnerIndex.GAMES);
+                gets.add(get);
+                pairs.add(Arrays.<Object>asList(tourneyId, winnername));
             }
+        }
+
+        HTableInterface table = connection.getTable(WinnerIndex.TABLE_NAME);
+        Result[] results;
+        try {
+            results = table.get(gets);
+        } finally {
+            table.close();
+        }
 
-            // check if WINNER appeared once or already more
-            String playerId = Bytes.toString(result.getValue(Bytes.toBytes("Winner"), Bytes.toBytes("id")));
+        // The results are in the order of the Gets
+        Map<List<Object>, List<String>> opponents = new HashMap<>();
+        for (int i = 0; i < results.length; i++) {
+            opponents.put(pairs.get(i), indexedOpponents(results[i], rowsRead));
+        }
+        return opponents;
+    }
 
-            if (appearedOnce.contains(playerId)) {
-                tempResult.add(playerId);
-                appearedOnce.remove(playerId);
+    /**
+     * Batched query 1 answered by the games of the tournaments, for tables created before the winner index.
+     *
+     * @return The opponents, by {tourney id, winner name}.
+     */
+    private Map<List<Object>, List<String>> query1FromGames(Map<String, ? extends Collection<String>> winnernames,
+                                                            AtomicLong rowsRead) throws IOException {
+        final Map<Integer, Set<String>> winnersByTourney = new HashMap<>();
+        Set<String> names = new LinkedHashSet<>();
+        for (Map.Entry<String, ? extends Collection<String>> tourney : winnernames.entrySet()) {
+            int tourneyId = Integer.parseInt(tourney.getKey());
+            if (!winnersByTourney.containsKey(tourneyId)) {
+                winnersByTourney.put(tourneyId, new HashSet<String>());
             }
-            else {
-                if (!tempResult.contains(playerId))
-                    appearedOnce.add(playerId);
+            winnersByTourney.get(tourneyId).addAll(tourney.getValue());
+            names.addAll(tourney.getValue());
+        }
+
+        // Keep the rows won by any of the winners, the pairs are told apart while reading them
+        final GameCodec codec = gameCodec();
+        List<SingleColumnValueFilter> filters = new ArrayList<>();
+        for (String name : names) {
+            filters.add(codec.equalFilter(ScrabbleSchema.WINNER, ScrabbleSchema.NAME, name));
+        }
+        Scan scan = ScanProfile.QUERY1.newScan(codec, filters);
+
+        final KeyLayout layout = keyLayout();
+        List<byte[][]> ranges = layout.tourneyRanges(winnersByTourney.keySet(), config.getInt(BATCH_GAP_KEY, 0));
+        List<Map<List<Object>, List<String>>> partials = scanner().scan("ScrabbleGames", scan, ranges,
+                new ParallelScanner.RangeScan<Map<List<Object>, List<String>>>() {
+            @Override
+            public Map<List<Object>, List<String>> scan(ResultScanner rs) throws IOException {
+                Map<List<Object>, List<String>> opponents = new HashMap<>();
+                for (Result result : rs) {
+                    int tourneyId = layout.tourneyId(result.getRow());
+                    String winnername = codec.getString(result, ScrabbleSchema.WINNER, ScrabbleSchema.NAME);
+                    // a tournament in a gap, or a winner asked for in another tournament
+                    Set<String> winners = winnersByTourney.get(tourneyId);
+                    if (winners != null && winners.contains(winnername)) {
+                        append(opponents, Arrays.<Object>asList(tourneyId, winnername),
+                               codec.getString(result, ScrabbleSchema.LOSER, ScrabbleSchema.ID));
+                    }
+                }
+                return opponents;
             }
+        }, rowsRead);
+        return mergeInKeyOrder(partials);
+    }
 
-            // Do the same for LOSER
-            playerId = Bytes.toString(result.getValue(Bytes.toBytes("Loser"), Bytes.toBytes("id")));
+    /**
+     * Query 2: Returns the ids of the Winner and Loser that have participated more than once in all the
+     * tournaments between two given Tourneyids.
+     *
+     * For every tournament in the interval the players appearing in more than one of its games are collected,
+     * and the result is the intersection of these sets. The order in which the tournaments are visited
+     * therefore does not matter, which lets a salted table be scanned bucket by bucket.
+     *
+     * These sets are precomputed by the loaders in the tourney aggregates, so only one small row per tournament is
+     * read. Tables created before the aggregates are scanned game by game instead. Either way the regions are
+     * scanned in parallel, and their partial results merged (see {@link RepeatedPlayers}).
+     *
+     * @param firsttourneyid  The id of the first tournament.
+     * @param lasttourneyid   The id of the second tournament (excluded).
+     * @return The list containing the ids of the players
+     * @throws IOException
+     */
+    @Override
+    public List<String> query2(String firsttourneyid, String lasttourneyid) throws IOException {
+        long startTime = System.nanoTime();
+        AtomicLong rowsRead = new AtomicLong();
+        List<String> queryResult = null;
+        try {
+            queryResult = hasAggregates() ? query2FromAggregates(firsttourneyid, lasttourneyid, rowsRead)
+                                          : query2FromGames(firsttourneyid, lasttourneyid, rowsRead);
+        } finally {
+            metrics.getQuery("query2").record(startTime, rowsRead.get(),
+                                              queryResult != null ? queryResult.size() : QueryMetrics.FAILED);
+        }
+        return queryResult;
+    }
 
-            if (appearedOnce.contains(playerId)) {
-                tempResult.add(playerId);
-                appearedOnce.remove(playerId);
+    /**
+     * Query 2 answered by the games of the tournaments, for tables created before the tourney aggregates.
+     */
+    private List<String> query2FromGames(String firsttourneyid, String lasttourneyid, AtomicLong rowsRead)
+            throws IOException {
+        // Setting the intervals, one per bucket.
+        // Within a bucket the games of a tournament are contiguous.
+        List<byte[][]> ranges = keyLayout().tourneyRanges(Integer.parseInt(firsttourneyid),
+                                                          Integer.parseInt(lasttourneyid));
+
+        // Every region is folded into a partial result in parallel, then the partial results are merged
+        final KeyLayout layout = keyLayout();
+        final GameCodec codec = gameCodec();
+        List<RepeatedPlayers.Partial> partials = scanner().scan("ScrabbleGames", ScanProfile.QUERY2_GAMES.newScan(codec), ranges,
+                                                                new ParallelScanner.RangeScan<RepeatedPlayers.Partial>() {
+            @Override
+            public RepeatedPlayers.Partial scan(ResultScanner rs) throws IOException {
+                return RepeatedPlayers.scan(rs, layout, codec);
             }
-            else {
-                if (!tempResult.contains(playerId))
-                    appearedOnce.add(playerId);
+        }, rowsRead);
+        return RepeatedPlayers.reduce(partials).toStrings();
+    }
+
+    /**
+     * Query 2 answered by the tourney aggregates: the intersection of the sorted arrays of repeated players of every
+     * tournament in the interval. The arrays are intersected straight from the bytes of the cells, and a region stops
+     * scanning as soon as its intersection is empty.
+     *
+     * The tournaments whose repeated players have not been computed yet, because their load stopped before the
+     * aggregates were refreshed, are computed from their appearances instead of being left out of the intersection.
+     */
+    private List<String> query2FromAggregates(String firsttourneyid, String lasttourneyid, AtomicLong rowsRead)
+            throws IOException {
+        // Scan the repeated players of all the tournaments between the interval
+        List<byte[][]> ranges = Collections.singletonList(
+                new byte[][]{TourneyAggregates.rowKey(Integer.parseInt(firsttourneyid)),
+                             TourneyAggregates.rowKey(Integer.parseInt(lasttourneyid))});
+        Scan scan = ScanProfile.QUERY2_AGGREGATES.newScan();
+
+        // Every region intersects its own tournaments, a tournament being a single row
+        final List<byte[]> notRefreshed = Collections.synchronizedList(new ArrayList<byte[]>());
+        List<PlayerSet> partials = scanner().scan(TourneyAggregates.TABLE_NAME, scan, ranges,
+                                                  new ParallelScanner.RangeScan<PlayerSet>() {
+            @Override
+            public PlayerSet scan(ResultScanner rs) throws IOException {
+                // The first tournament seeds the result, the others are intersected with it
+                PlayerSet partial = new PlayerSet();
+                for (Result result : rs) {
+                    Cell cell = result.getColumnLatestCell(TourneyAggregates.STATS, TourneyAggregates.REPEATED);
+                    if (cell == null) {
+                        notRefreshed.add(result.getRow());
+                        continue;
+                    }
+                    partial.retainEncoded(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
+                    if (partial.isEmpty()) {
+                        break;
+                    }
+                }
+                return partial;
             }
+        }, rowsRead);
 
-            result = rs.next();
+        // Regions without tournaments have an unseeded partial result, which leaves the intersection unchanged
+        PlayerSet finalResult = new PlayerSet();
+        for (PlayerSet partial : partials) {
+            finalResult.retain(partial);
         }
-
-        appearedOnce.clear();
-        // IF the interval is lower than 2, the finalResult list is not updated in the for cycle.
-        // This because there is only one tournament and so the result of the query is inside tempResult
-        // ELSE take the interesection with the last tempResult
-        if (Integer.parseInt(lasttourneyid) - Integer.parseInt(firsttourneyid) < 2)
-            finalResult.addAll(tempResult);
-        else
-            finalResult.retainAll(tempResult);
-
-        return new ArrayList<>(finalResult);
+        if (!notRefreshed.isEmpty() && !finalResult.isEmpty()) {
+            for (int[] repeated : TourneyAggregates.repeatedPlayers(connection, notRefreshed)) {
+                finalResult.retain(repeated, repeated.length);
+            }
+            rowsRead.addAndGet(notRefreshed.size());
+        }
+        return finalResult.toStrings();
     }
 
     /**
@@ -352,76 +1029,457 @@ public class HBaseScrabble {
      * @return The list participants that have finished in tie
      * @throws IOException
      */
+    @Override
     public List<String> query3(String tourneyid) throws IOException {
-        // Instantiating working lists
-        ArrayList<String> queryResult = new ArrayList<>();
-
-        // Getting reference to the table
-        HTable table = new HTable(config, "ScrabbleGames");
+        long startTime = System.nanoTime();
+        AtomicLong rowsRead = new AtomicLong();
+        List<String> queryResult = null;
+        try {
+            queryResult = tiedGames(tourneyid, rowsRead);
+        } finally {
+            metrics.getQuery("query3").record(startTime, rowsRead.get(),
+                                              queryResult != null ? queryResult.size() : QueryMetrics.FAILED);
+        }
+        return queryResult;
+    }
 
-        // Setting the interval
-        byte[] startKey = Bytes.toBytes(String.format("%010d", Integer.parseInt(tourneyid)) + "0000000000");
-        byte[] endKey = Bytes.toBytes(String.format("%010d", Integer.parseInt(tourneyid)) + "9999999999");
+    private List<String> tiedGames(String tourneyid, AtomicLong rowsRead) throws IOException {
+        // Setting the interval. All the games of a tournament are in the same bucket.
+        byte[] startKey = keyLayout().tourneyStart(Integer.parseInt(tourneyid));
+        byte[] endKey = keyLayout().tourneyStop(Integer.parseInt(tourneyid));
 
         // Create the filtering
         // Select all the rows where tie is equal to True
-        SingleColumnValueFilter f = new SingleColumnValueFilter(Bytes.toBytes("Game"),
-                                                                Bytes.toBytes("tie"),
-                                                                CompareFilter.CompareOp.EQUAL,
-                                                                Bytes.toBytes("True"));
-
-        // Scan all the records between the interval and apply the filter
-        Scan scan = new Scan(startKey, endKey);
-        scan.setFilter(f);
-        ResultScanner rs = table.getScanner(scan);
+        final GameCodec codec = gameCodec();
+        SingleColumnValueFilter f = codec.equalFilter(ScrabbleSchema.GAME, ScrabbleSchema.TIE, "True");
+
+        // Scan all the records between the interval and apply the filter, reading only the tie and the game id.
+        // A tournament cut by a region boundary is scanned in parallel, region by region.
+        Scan scan = ScanProfile.QUERY3.newScan(codec, f);
+        List<List<String>> partials = scanner().scan("ScrabbleGames", scan,
+                                                     Collections.singletonList(new byte[][]{startKey, endKey}),
+                                                     new ParallelScanner.RangeScan<List<String>>() {
+            @Override
+            public List<String> scan(ResultScanner rs) throws IOException {
+                List<String> games = new ArrayList<>();
+                for (Result result : rs) {
+                    games.add(codec.getString(result, ScrabbleSchema.GAME, ScrabbleSchema.GAMEID));
+                }
+                return games;
+            }
+        }, rowsRead);
 
-        // Kterate over the results
-        Result result = rs.next();
-        while (result != null && !result.isEmpty()) {
-            //String key = Bytes.toString(result.getRow());
-            queryResult.add(Bytes.toString(result.getValue(Bytes.toBytes("Game"), Bytes.toBytes("gameid"))));
-            result = rs.next();
+        // The regions come back in key order, so the games are in the order of the table
+        ArrayList<String> queryResult = new ArrayList<>();
+        for (List<String> games : partials) {
+            queryResult.addAll(games);
         }
+        return queryResult;
+    }
 
+    /**
+     * Query 3 for many tournaments at once.
+     *
+     * Instead of one scan per tournament, the tournaments following each other in the table are read by a single
+     * scan, see {@link KeyLayout#tourneyRanges(Collection, int)}. Setting "scrabble.batch.gap" lets a scan skip over
+     * that many tournaments that were not asked for, trading rows read for fewer scans. All the scans, cut at the
+     * region boundaries, are queued at once on the pool of the {@link ParallelScanner}, so the batch takes about as
+     * long as its slowest region rather than the sum of the single queries.
+     *
+     * @param tourneyids The ids of the tournaments.
+     * @return The ids of the games finished in tie, by tourney id, in the order of the arguments.
+     * @throws IOException
+     */
+    @Override
+    public Map<String, List<String>> query3(Collection<String> tourneyids) throws IOException {
+        long startTime = System.nanoTime();
+        AtomicLong rowsRead = new AtomicLong();
+        Map<String, List<String>> queryResult = new LinkedHashMap<>();
+        long nResults = QueryMetrics.FAILED;
+        try {
+            Map<Integer, List<String>> games = tiedGames(tourneyids, rowsRead);
+            long returned = 0;
+            for (String tourneyid : tourneyids) {
+                List<String> tied = games.get(Integer.parseInt(tourneyid));
+                queryResult.put(tourneyid, tied != null ? new ArrayList<>(tied) : new ArrayList<String>());
+                returned += queryResult.get(tourneyid).size();
+            }
+            nResults = returned;
+        } finally {
+            metrics.getQuery("query3Batch").record(startTime, rowsRead.get(), nResults);
+        }
         return queryResult;
     }
 
+    /**
+     * @return The ids of the games finished in tie of the tournaments asked for, by tourney id.
+     */
+    private Map<Integer, List<String>> tiedGames(Collection<String> tourneyids, AtomicLong rowsRead)
+            throws IOException {
+        final Set<Integer> requested = new HashSet<>();
+        for (String tourneyid : tourneyids) {
+            requested.add(Integer.parseInt(tourneyid));
+        }
+        final KeyLayout layout = keyLayout();
+        List<byte[][]> ranges = layout.tourneyRanges(requested, config.getInt(BATCH_GAP_KEY, 0));
+
+        final GameCodec codec = gameCodec();
+        SingleColumnValueFilter f = codec.equalFilter(ScrabbleSchema.GAME, ScrabbleSchema.TIE, "True");
+        Scan scan = ScanProfile.QUERY3.newScan(codec, f);
+        List<Map<Integer, List<String>>> partials = scanner().scan("ScrabbleGames", scan, ranges,
+                new ParallelScanner.RangeScan<Map<Integer, List<String>>>() {
+            @Override
+            public Map<Integer, List<String>> scan(ResultScanner rs) throws IOException {
+                Map<Integer, List<String>> games = new HashMap<>();
+                for (Result result : rs) {
+                    int tourneyId = layout.tourneyId(result.getRow());
+                    // the tournaments in the gaps are read but not returned
+                    if (requested.contains(tourneyId)) {
+                        append(games, tourneyId, codec.getString(result, ScrabbleSchema.GAME, ScrabbleSchema.GAMEID));
+                    }
+                }
+                return games;
+            }
+        }, rowsRead);
+        return mergeInKeyOrder(partials);
+    }
+
+    private static <K> void append(Map<K, List<String>> lists, K key, String value) {
+        List<String> list = lists.get(key);
+        if (list == null) {
+            list = new ArrayList<>();
+            lists.put(key, list);
+        }
+        list.add(value);
+    }
+
+    /**
+     * Merges the partial results of the sub-ranges of a batch. A tournament cut by a region boundary has games in
+     * several of them, which come back in key order, so its games stay in the order of the table.
+     */
+    private static <K> Map<K, List<String>> mergeInKeyOrder(List<Map<K, List<String>>> partials) {
+        Map<K, List<String>> merged = new HashMap<>();
+        for (Map<K, List<String>> partial : partials) {
+            for (Map.Entry<K, List<String>> entry : partial.entrySet()) {
+                for (String value : entry.getValue()) {
+                    append(merged, entry.getKey(), value);
+                }
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Exports the games of the "ScrabbleGames" table to a local columnar file, see {@link Snapshot}, which
+     * {@link SnapshotQueries} answers the queries from without the cluster.
+     *
+     * The snapshot is sorted by tourney id and game id. The keys of a salted table are only in that order within a
+     * bucket, so every bucket is read by a scanner of its own, and the scanners are merged on the ids of their next
+     * game. The blocks read are not cached, so the export does not evict the blocks of the other queries.
+     *
+     * @param path The snapshot file. An existing file is replaced once all the games are exported, and is left as
+     *             it was if the export fails.
+     * @throws IOException
+     */
+    public void exportSnapshot(String path) throws IOException {
+        KeyLayout layout = keyLayout();
+        GameCodec codec = gameCodec();
+        Scan scan = ScanProfile.FULL_ROWS.newScan(codec);
+
+        PriorityQueue<BucketScanner> next = new PriorityQueue<>();
+        HTableInterface table = connection.getTable(ScrabbleSchema.TABLE_NAME);
+        try (SnapshotWriter writer = new SnapshotWriter(new File(path))) {
+            for (int bucket = 0; bucket < layout.getBuckets(); bucket++) {
+                Scan bucketScan = new Scan(scan);
+                if (layout.isSalted()) {
+                    bucketScan.setStartRow(new byte[]{(byte) bucket});
+                    if (bucket + 1 < layout.getBuckets()) {
+                        bucketScan.setStopRow(new byte[]{(byte) (bucket + 1)});
+                    }
+                }
+                BucketScanner scanner = new BucketScanner(table.getScanner(bucketScan), layout);
+                if (scanner.advance()) {
+                    next.add(scanner);
+                } else {
+                    scanner.close();
+                }
+            }
+
+            String[] values = new String[ScrabbleSchema.CSV_COLUMNS];
+            while (!next.isEmpty()) {
+                BucketScanner scanner = next.poll();
+                for (Snapshot.Column column : Snapshot.Column.values()) {
+                    values[column.getCsvColumn()] = codec.getString(scanner.result, column.getFamily(),
+                                                                    column.getQualifier());
+                }
+                writer.append(values);
+                if (writer.getRows() % 100000 == 0) {
+                    System.out.println("Exported " + writer.getRows() + " games");
+                }
+                if (scanner.advance()) {
+                    next.add(scanner);
+                } else {
+                    scanner.close();
+                }
+            }
+            // only a complete export replaces the previous snapshot
+            writer.commit();
+            System.out.println("Exported " + writer.getRows() + " games to " + path);
+        } finally {
+            for (BucketScanner scanner : next) {
+                scanner.close();
+            }
+            table.close();
+        }
+    }
+
+    /**
+     * The games of one salt bucket, in key order, ordered by the ids of the next one.
+     */
+    private static final class BucketScanner implements Comparable<BucketScanner> {
+        private final ResultScanner scanner;
+        private final KeyLayout layout;
+        private Result result;
+        private int tourneyId;
+        private int gameId;
+
+        BucketScanner(ResultScanner scanner, KeyLayout layout) {
+            this.scanner = scanner;
+            this.layout = layout;
+        }
+
+        /**
+         * @return Whether there is a next game.
+         */
+        boolean advance() throws IOException {
+            result = scanner.next();
+            if (result == null) {
+                return false;
+            }
+            tourneyId = layout.tourneyId(result.getRow());
+            gameId = layout.gameId(result.getRow());
+            return true;
+        }
+
+        void close() {
+            scanner.close();
+        }
+
+        @Override
+        public int compareTo(BucketScanner other) {
+            int byTourney = Integer.compare(tourneyId, other.tourneyId);
+            return byTourney != 0 ? byTourney : Integer.compare(gameId, other.gameId);
+        }
+    }
+
+    /**
+     * Answers a query from a snapshot file, without connecting to the cluster.
+     *
+     * @param args The arguments of the "snapshot" action: the file, the query and its parameters.
+     */
+    private static void querySnapshot(String[] args) throws IOException {
+        long startTime = System.nanoTime();
+        Snapshot snapshot = Snapshot.open(new File(args[2]));
+        SnapshotQueries queries = new SnapshotQueries(HBaseConfiguration.create(), snapshot);
+        try {
+            String query = args[3].toUpperCase();
+            if (query.equals("QUERY1") && args.length == 6) {
+                System.out.println("The list of opponents is: " + queries.query1(args[4], args[5]));
+            } else if (query.equals("QUERY2") && args.length == 6) {
+                System.out.println("The list of players is: " + queries.query2(args[4], args[5]));
+            } else if (query.equals("QUERY3") && args.length == 5) {
+                System.out.println("The list of games is: " + queries.query3(args[4]));
+            } else if (query.equals("COUNTRECORDS") && args.length == 4) {
+                System.out.println("Total rows in snapshot: " + queries.countRecords());
+            } else {
+                System.out.println("Error: 1) ZK_HOST:ZK_PORT, 2) snapshot, 3) snapshotFile, " +
+                        "4) query1 tourneyid winnername | query2 firsttourneyid lasttourneyid | query3 tourneyid | countRecords");
+                System.exit(-1);
+            }
+        } finally {
+            queries.close();
+        }
+        double estimatedTime = (System.nanoTime() - startTime) / 1000000000.0;
+        System.out.println("Query took " + estimatedTime + " seconds.");
+    }
+
+    /**
+     * Serves the queries over HTTP until the process is stopped, see {@link QueryServer}.
+     *
+     * The regions of the tables are located before the first request, so no request pays for these lookups.
+     * Unless "scrabble.cache.entries" is 0, the results are cached until a load changes the table, see
+     * {@link QueryCache}. The settings read from the table descriptors are read again after such a change too, since
+     * createTable and migrateKeys may have changed the key layout or the cell format.
+     *
+     * @param port The port to listen on.
+     * @throws IOException
+     */
+    public void serve(int port) throws IOException {
+        for (String tableName : new String[]{ScrabbleSchema.TABLE_NAME, WinnerIndex.TABLE_NAME,
+                                             TourneyAggregates.TABLE_NAME}) {
+            if (hBaseAdmin.tableExists(tableName)) {
+                List<HRegionLocation> regions = connection.locateRegions(TableName.valueOf(tableName));
+                System.out.println("Located " + regions.size() + " regions of " + tableName);
+            }
+        }
+        // The descriptors are read here rather than by the first requests, and again once the load epoch changes
+        keyLayout();
+        gameCodec();
+        winnerIndex();
+        hasAggregates();
+
+        // the cache follows the load epoch even when it keeps no results
+        LoadEpoch.createTable(hBaseAdmin);
+        final QueryCache queries = new QueryCache(config, this, new LoadEpoch(connection), new QueryCache.Listener() {
+            @Override
+            public void invalidated() {
+                forgetTableSettings();
+            }
+        });
+
+        final QueryServer server = new QueryServer(config, queries);
+        server.start(port);
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                server.stop();
+                System.out.println("Query cache: " + queries);
+                queries.close();
+                try {
+                    close();
+                } catch (IOException e) {
+                    System.out.println("Closing the connection failed: " + e.getMessage());
+                }
+            }
+        });
+        System.out.println("Serving queries on port " + port);
+    }
+
     /**
      * MAIN METHOD
      */
     public static void main(String[] args) throws IOException, InterruptedException {
         if (args.length < 2) {
-            System.out.println("Error: \n1)ZK_HOST:ZK_PORT, \n2)action [createTable, loadTable, query1, query2, query3], \n3)Extra parameters for loadTables and queries:\n" +
-                    "\ta) If loadTable: csvsFolder.\n " +
-                    "\tb) If query1: tourneyid winnername.\n  " +
-                    "\tc) If query2: firsttourneyid lasttourneyid.\n  " +
-                    "\td) If query3: tourneyid.\n  ");
+            System.out.println("Error: \n1)ZK_HOST:ZK_PORT, \n2)action [createTable, loadTable, bulkLoad, ingest, migrateKeys, applySchema, query1, query2, query3, countRecords, serve, exportSnapshot, snapshot], \n3)Extra parameters for loadTables and queries:\n" +
+                    "\ta) If createTable: [saltBuckets [regionsPerBucket csvsFolder]].\n " +
+                    "\tb) If loadTable: csvsFolder [parserThreads].\n " +
+                    "\tc) If bulkLoad: csvsFolder [hfileStagingDir].\n " +
+                    "\td) If query1: tourneyid winnername [tourneyid winnername ...].\n  " +
+                    "\te) If query2: firsttourneyid lasttourneyid.\n  " +
+                    "\tf) If query3: tourneyid [tourneyid ...].\n  " +
+                    "\tg) If serve: [port].\n  " +
+                    "\th) If applySchema: DEFAULT|SCAN|POINT_LOOKUP.\n  " +
+                    "\ti) If ingest: csvsFolder [once].\n  " +
+                    "\tj) If exportSnapshot: snapshotFile.\n  " +
+                    "\tk) If snapshot: snapshotFile query1|query2|query3|countRecords [parameters of the query].\n  ");
             System.exit(-1);
         }
+        if (args[1].toUpperCase().equals("SNAPSHOT")) {
+            if (args.length < 4) {
+                System.out.println("Error: 1) ZK_HOST:ZK_PORT, 2) snapshot, 3) snapshotFile, " +
+                        "4) query1 tourneyid winnername | query2 firsttourneyid lasttourneyid | query3 tourneyid | countRecords");
+                System.exit(-1);
+            }
+            // the snapshot is local, the cluster is not needed
+            querySnapshot(args);
+            return;
+        }
         HBaseScrabble hBaseScrabble = new HBaseScrabble(args[0]);
         if (args[1].toUpperCase().equals("CREATETABLE")) {
+            if (args.length != 2 && args.length != 3 && args.length != 5) {
+                System.out.println("Error: 1) ZK_HOST:ZK_PORT, 2) createTable, 3) [saltBuckets " +
+                        "4) [regionsPerBucket 5) csvsFolder]]");
+                System.exit(-1);
+            }
+            KeyLayout layout = new KeyLayout(args.length > 2 ? Integer.parseInt(args[2]) : 0, KeyFormat.BINARY);
+            SplitPlanner planner = new SplitPlanner(hBaseScrabble.config, layout);
             long startTime = System.nanoTime();
-            hBaseScrabble.createTable();
+            if (args.length == 5) {
+                hBaseScrabble.createTable(layout,
+                        planner.sampledSplits(args[4] + "/" + "scrabble_games.csv", Integer.parseInt(args[3])));
+            } else {
+                hBaseScrabble.createTable(layout, planner.bucketSplits());
+            }
             double estimatedTime = (System.nanoTime() - startTime) / 1000000000.0;
             System.out.println("Query took " + estimatedTime + " seconds.");
         } else if (args[1].toUpperCase().equals("LOADTABLE")) {
-            if (args.length != 3) {
-                System.out.println("Error: 1) ZK_HOST:ZK_PORT, 2)action [createTables, loadTables], 3)csvsFolder");
+            if (args.length != 3 && args.length != 4) {
+                System.out.println("Error: 1) ZK_HOST:ZK_PORT, 2)action [createTables, loadTables], 3)csvsFolder, " +
+                        "4) [parserThreads]");
                 System.exit(-1);
             } else if (!(new File(args[2])).isDirectory()) {
                 System.out.println("Error: Folder " + args[2] + " does not exist.");
                 System.exit(-2);
             }
+            if (args.length == 4) {
+                hBaseScrabble.config.setInt(PipelinedLoader.PARSERS_KEY, Integer.parseInt(args[3]));
+            }
             long startTime = System.nanoTime();
             hBaseScrabble.loadTable(args[2]);
             double estimatedTime = (System.nanoTime() - startTime) / 1000000000.0;
             System.out.println("Query took " + estimatedTime + " seconds.");
             //hBaseScrabble.merge();
             //System.out.println("Merged automatically split regions.");
+        } else if (args[1].toUpperCase().equals("BULKLOAD")) {
+            if (args.length != 3 && args.length != 4) {
+                System.out.println("Error: 1) ZK_HOST:ZK_PORT, 2) bulkLoad, 3) csvsFolder, 4) [hfileStagingDir]");
+                System.exit(-1);
+            } else if (!(new File(args[2])).isDirectory()) {
+                System.out.println("Error: Folder " + args[2] + " does not exist.");
+                System.exit(-2);
+            }
+            String stagingDir = args.length == 4 ? args[3] : "/tmp/scrabble-bulkload-" + System.currentTimeMillis();
+            long startTime = System.nanoTime();
+            hBaseScrabble.bulkLoad(args[2], stagingDir);
+            double estimatedTime = (System.nanoTime() - startTime) / 1000000000.0;
+            System.out.println("Query took " + estimatedTime + " seconds.");
+        } else if (args[1].toUpperCase().equals("INGEST")) {
+            if ((args.length != 3 && args.length != 4) || (args.length == 4 && !args[3].equalsIgnoreCase("once"))) {
+                System.out.println("Error: 1) ZK_HOST:ZK_PORT, 2) ingest, 3) csvsFolder, 4) [once]");
+                System.exit(-1);
+            } else if (!(new File(args[2])).isDirectory()) {
+                System.out.println("Error: Folder " + args[2] + " does not exist.");
+                System.exit(-1);
+            }
+            hBaseScrabble.ingest(args[2], args.length == 3);
+        } else if (args[1].toUpperCase().equals("MIGRATEKEYS")) {
+            long startTime = System.nanoTime();
+            hBaseScrabble.migrateKeys();
+            double estimatedTime = (System.nanoTime() - startTime) / 1000000000.0;
+            System.out.println("Query took " + estimatedTime + " seconds.");
+        } else if (args[1].toUpperCase().equals("APPLYSCHEMA")) {
+            if (args.length != 3) {
+                System.out.println("Error: 1) ZK_HOST:ZK_PORT, 2) applySchema, 3) DEFAULT|SCAN|POINT_LOOKUP");
+                System.exit(-1);
+            }
+            hBaseScrabble.applySchemaProfile(SchemaProfile.valueOf(args[2].toUpperCase()));
+        } else if (args[1].toUpperCase().equals("QUERY1") && args.length > 4) {
+            if (args.length % 2 != 0) {
+                System.out.println("Error: 1) ZK_HOST:ZK_PORT, 2)query1, " +
+                        "3) tourneyid 4) winnername [5) tourneyid 6) winnername ...]");
+                System.exit(-1);
+            }
+            // several pairs are answered as one batch
+            Map<String, List<String>> winnernames = new LinkedHashMap<>();
+            for (int i = 2; i < args.length; i += 2) {
+                if (!winnernames.containsKey(args[i])) {
+                    winnernames.put(args[i], new ArrayList<String>());
+                }
+                winnernames.get(args[i]).add(args[i + 1]);
+            }
+            long startTime = System.nanoTime();
+            Map<String, Map<String, List<String>>> opponents = hBaseScrabble.query1(winnernames);
+            double estimatedTime = (System.nanoTime() - startTime) / 1000000000.0;
+            for (Map.Entry<String, Map<String, List<String>>> tourney : opponents.entrySet()) {
+                for (Map.Entry<String, List<String>> winner : tourney.getValue().entrySet()) {
+                    System.out.println("The opponents of winner " + winner.getKey() + " in tourney " + tourney.getKey() + " are: " + winner.getValue());
+                }
+            }
+            System.out.println("Query took " + estimatedTime + " seconds.");
         } else if (args[1].toUpperCase().equals("QUERY1")) {
             if (args.length != 4) {
                 System.out.println("Error: 1) ZK_HOST:ZK_PORT, 2)query1, " +
-                        "3) tourneyid 4) winnername");
+                        "3) tourneyid 4) winnername [5) tourneyid 6) winnername ...]");
                 System.exit(-1);
             }
             long startTime = System.nanoTime();
@@ -442,10 +1500,19 @@ public class HBaseScrabble {
             System.out.println("There are " + playerNames.size() + " players that participates in more than one tourney between tourneyid " + args[2] + " and tourneyid " + args[3] + " .");
             System.out.println("The list of players is: " + Arrays.toString(playerNames.toArray(new String[playerNames.size()])));
             System.out.println("Query took " + estimatedTime + " seconds.");
+        } else if (args[1].toUpperCase().equals("QUERY3") && args.length > 3) {
+            // several tourneys are answered as one batch
+            long startTime = System.nanoTime();
+            Map<String, List<String>> games = hBaseScrabble.query3(Arrays.asList(args).subList(2, args.length));
+            double estimatedTime = (System.nanoTime() - startTime) / 1000000000.0;
+            for (Map.Entry<String, List<String>> tourney : games.entrySet()) {
+                System.out.println("The games that end in tie in tourneyid " + tourney.getKey() + " are: " + tourney.getValue());
+            }
+            System.out.println("Query took " + estimatedTime + " seconds.");
         } else if (args[1].toUpperCase().equals("QUERY3")) {
             if (args.length != 3) {
                 System.out.println("Error: 1) ZK_HOST:ZK_PORT, 2) query3, " +
-                        "3) tourneyid");
+                        "3) tourneyid [4) tourneyid ...]");
                 System.exit(-1);
             }
             long startTime = System.nanoTime();
@@ -454,15 +1521,34 @@ public class HBaseScrabble {
             System.out.println("There are " + games.size() + " that ends in tie in tourneyid " + args[2] + " .");
             System.out.println("The list of games is: " + Arrays.toString(games.toArray(new String[games.size()])));
             System.out.println("Query took " + estimatedTime + " seconds.");
+        } else if (args[1].toUpperCase().equals("EXPORTSNAPSHOT")) {
+            if (args.length != 3) {
+                System.out.println("Error: 1) ZK_HOST:ZK_PORT, 2) exportSnapshot, 3) snapshotFile");
+                System.exit(-1);
+            }
+            long startTime = System.nanoTime();
+            hBaseScrabble.exportSnapshot(args[2]);
+            double estimatedTime = (System.nanoTime() - startTime) / 1000000000.0;
+            System.out.println("Query took " + estimatedTime + " seconds.");
         } else if (args[1].toUpperCase().equals("COUNTRECORDS")) {
             // print total number of records
-            hBaseScrabble.countRecords();
+            System.out.println("Total rows in table: " + hBaseScrabble.countRecords());
+        } else if (args[1].toUpperCase().equals("SERVE")) {
+            // keeps running, the connection is closed when the process is stopped
+            hBaseScrabble.serve(args.length > 2 ? Integer.parseInt(args[2]) : 8080);
         } else {
-            System.out.println("Error: \n1)ZK_HOST:ZK_PORT, \n2)action [createTable, loadTable, query1, query2, query3], \n3)Extra parameters for loadTables and queries:\n" +
-                    "\ta) If loadTable: csvsFolder.\n " +
-                    "\tb) If query1: tourneyid winnername.\n  " +
-                    "\tc) If query2: firsttourneyid lasttourneyid.\n  " +
-                    "\td) If query3: tourneyid.\n  ");
+            System.out.println("Error: \n1)ZK_HOST:ZK_PORT, \n2)action [createTable, loadTable, bulkLoad, ingest, migrateKeys, applySchema, query1, query2, query3, countRecords, serve, exportSnapshot, snapshot], \n3)Extra parameters for loadTables and queries:\n" +
+                    "\ta) If createTable: [saltBuckets [regionsPerBucket csvsFolder]].\n " +
+                    "\tb) If loadTable: csvsFolder [parserThreads].\n " +
+                    "\tc) If bulkLoad: csvsFolder [hfileStagingDir].\n " +
+                    "\td) If query1: tourneyid winnername [tourneyid winnername ...].\n  " +
+                    "\te) If query2: firsttourneyid lasttourneyid.\n  " +
+                    "\tf) If query3: tourneyid [tourneyid ...].\n  " +
+                    "\tg) If serve: [port].\n  " +
+                    "\th) If applySchema: DEFAULT|SCAN|POINT_LOOKUP.\n  " +
+                    "\ti) If ingest: csvsFolder [once].\n  " +
+                    "\tj) If exportSnapshot: snapshotFile.\n  " +
+                    "\tk) If snapshot: snapshotFile query1|query2|query3|countRecords [parameters of the query].\n  ");
             System.exit(-1);
         }
 
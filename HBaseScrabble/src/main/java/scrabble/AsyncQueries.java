@@ -0,0 +1,189 @@
+package scrabble;
+
+import org.apache.hadoop.conf.Configuration;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the queries in the background, returning futures of their results.
+ *
+ * A caller with many queries to run submits them all, then waits for the futures, so the queries are in flight at
+ * the same time instead of one after the other. They run on a bounded pool of "scrabble.async.threads" threads; the
+ * queries submitted while all the threads are busy wait for one in the queue. Every thread blocks on its query,
+ * which runs its scans on the pool of the {@link ParallelScanner}, so the two pools together bound the load put on
+ * the region servers.
+ *
+ * The futures of failed queries complete exceptionally with a {@link CompletionException} wrapping the IOException.
+ * Closing cancels the futures of the queries not completed yet, so no caller is left waiting for a query that will
+ * never run. The queries submitted after the close are cancelled right away.
+ */
+public class AsyncQueries implements Closeable {
+    public static final String THREADS_KEY = "scrabble.async.threads";
+
+    /**
+     * A query to run in the background.
+     *
+     * @param <T> The type of the result.
+     */
+    private interface Query<T> {
+        T run() throws IOException;
+    }
+
+    private final ScrabbleQueries queries;
+    private final ExecutorService pool;
+    private final Set<CompletableFuture<?>> pending =
+            Collections.newSetFromMap(new ConcurrentHashMap<CompletableFuture<?>, Boolean>());
+    private volatile boolean closed = false;
+
+    /**
+     * @param config  The configuration of the pool.
+     * @param queries The queries to run. They are not closed with the pool.
+     */
+    public AsyncQueries(Configuration config, ScrabbleQueries queries) {
+        this.queries = queries;
+        this.pool = Executors.newFixedThreadPool(Math.max(1, config.getInt(THREADS_KEY, 8)), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "query-" + count.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * @see ScrabbleQueries#query1(String, String)
+     */
+    public CompletableFuture<List<String>> query1(final String tourneyid, final String winnername) {
+        return submit(new Query<List<String>>() {
+            @Override
+            public List<String> run() throws IOException {
+                return queries.query1(tourneyid, winnername);
+            }
+        });
+    }
+
+    /**
+     * @see ScrabbleQueries#query1(Map)
+     */
+    public CompletableFuture<Map<String, Map<String, List<String>>>> query1(
+            final Map<String, ? extends Collection<String>> winnernames) {
+        return submit(new Query<Map<String, Map<String, List<String>>>>() {
+            @Override
+            public Map<String, Map<String, List<String>>> run() throws IOException {
+                return queries.query1(winnernames);
+            }
+        });
+    }
+
+    /**
+     * @see ScrabbleQueries#query2(String, String)
+     */
+    public CompletableFuture<List<String>> query2(final String firsttourneyid, final String lasttourneyid) {
+        return submit(new Query<List<String>>() {
+            @Override
+            public List<String> run() throws IOException {
+                return queries.query2(firsttourneyid, lasttourneyid);
+            }
+        });
+    }
+
+    /**
+     * @see ScrabbleQueries#query3(String)
+     */
+    public CompletableFuture<List<String>> query3(final String tourneyid) {
+        return submit(new Query<List<String>>() {
+            @Override
+            public List<String> run() throws IOException {
+                return queries.query3(tourneyid);
+            }
+        });
+    }
+
+    /**
+     * @see ScrabbleQueries#query3(Collection)
+     */
+    public CompletableFuture<Map<String, List<String>>> query3(final Collection<String> tourneyids) {
+        return submit(new Query<Map<String, List<String>>>() {
+            @Override
+            public Map<String, List<String>> run() throws IOException {
+                return queries.query3(tourneyids);
+            }
+        });
+    }
+
+    /**
+     * @see ScrabbleQueries#countRecords()
+     */
+    public CompletableFuture<Long> countRecords() {
+        return submit(new Query<Long>() {
+            @Override
+            public Long run() throws IOException {
+                return queries.countRecords();
+            }
+        });
+    }
+
+    /**
+     * Stops the threads, interrupting the running queries, and cancels the futures of the queries not completed yet.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        pool.shutdownNow();
+        for (CompletableFuture<?> future : pending) {
+            future.cancel(true);
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(final Query<T> query) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        pending.add(future);
+        if (closed) {
+            // the close may have missed it
+            cancel(future);
+            return future;
+        }
+        try {
+            pool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (!future.isDone()) {
+                            future.complete(query.run());
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        future.completeExceptionally(new CompletionException(e));
+                    } finally {
+                        pending.remove(future);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // closed meanwhile
+            cancel(future);
+        }
+        return future;
+    }
+
+    private void cancel(CompletableFuture<?> future) {
+        future.cancel(true);
+        pending.remove(future);
+    }
+}
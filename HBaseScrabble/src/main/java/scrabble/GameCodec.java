@@ -0,0 +1,458 @@
+package scrabble;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.filter.BinaryPrefixComparator;
+import org.apache.hadoop.hbase.filter.CompareFilter;
+import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import static scrabble.ScrabbleSchema.*;
+
+/**
+ * Describes how the columns of a game are stored in the cells of the "ScrabbleGames" table, and encodes and
+ * decodes them.
+ *
+ * Two cell formats exist:
+ * - COLUMNS: one cell per column, holding the field of the csv line as a string. Used by tables created before the
+ *   packed format, and by default.
+ * - PACKED: one cell per family, with the qualifier "p", holding the columns of the family as typed values one
+ *   after the other. Every cell repeats the row key, the family, the qualifier and the timestamp, so the 3 cells
+ *   of a packed game take a fraction of the space of the 19 cells of the columns format, on disk, in the block
+ *   cache and in every scan.
+ *
+ * The packed values are:
+ * - int: 4 bytes, big endian. An empty field is stored as Integer.MIN_VALUE, which is therefore not a valid value.
+ * - boolean: 1 byte, 1 for "True" and 0 for "False", whatever their case.
+ * - string: its length in UTF-8 bytes as a varint, followed by the bytes.
+ * A line whose int or boolean field does not hold one is rejected with a NumberFormatException, so the loaders skip
+ * it like any malformed line.
+ *
+ * The first column of every family is the one the queries filter on, the winner name and the tie flag, so a value
+ * filter can match the beginning of the packed cell on the region servers, see {@link #equalFilter}.
+ *
+ * The format is stored in the table descriptor by createTable, so the loaders and queries pick it up from the table
+ * like the {@link KeyLayout}. New tables take it from the configuration key {@link #CELL_FORMAT_KEY}.
+ */
+public class GameCodec {
+    public static final String CELL_FORMAT_KEY = "scrabble.cell.format";
+
+    public enum CellFormat {
+        COLUMNS, PACKED
+    }
+
+    // Qualifier of the single cell of a family in the packed format
+    public static final byte[] PACKED = Bytes.toBytes("p");
+
+    private static final int INT = 0;
+    private static final int BOOLEAN = 1;
+    private static final int STRING = 2;
+
+    private static final int EMPTY_INT = Integer.MIN_VALUE;
+
+    /**
+     * A column of a family: its qualifier, its position in the csv line and its type when packed.
+     */
+    private static final class Field {
+        final byte[] qualifier;
+        final int csvColumn;
+        final int type;
+
+        Field(byte[] qualifier, int csvColumn, int type) {
+            this.qualifier = qualifier;
+            this.csvColumn = csvColumn;
+            this.type = type;
+        }
+    }
+
+    // The columns of every family, in their packed order
+    private static final Field[] GAME_FIELDS = {
+            new Field(TIE, COL_TIE, BOOLEAN),
+            new Field(GAMEID, COL_GAMEID, INT),
+            new Field(TOURNEYID, COL_TOURNEYID, INT),
+            new Field(ROUND, COL_ROUND, INT),
+            new Field(DIVISION, COL_DIVISION, STRING),
+            new Field(DATE, COL_DATE, STRING),
+            new Field(LEXICON, COL_LEXICON, STRING)};
+    private static final Field[] WINNER_FIELDS = {
+            new Field(NAME, COL_WINNER_NAME, STRING),
+            new Field(ID, COL_WINNER_ID, INT),
+            new Field(SCORE, COL_WINNER_SCORE, INT),
+            new Field(OLDRATING, COL_WINNER_OLDRATING, INT),
+            new Field(NEWRATING, COL_WINNER_NEWRATING, INT),
+            new Field(POS, COL_WINNER_POS, INT)};
+    private static final Field[] LOSER_FIELDS = {
+            new Field(NAME, COL_LOSER_NAME, STRING),
+            new Field(ID, COL_LOSER_ID, INT),
+            new Field(SCORE, COL_LOSER_SCORE, INT),
+            new Field(OLDRATING, COL_LOSER_OLDRATING, INT),
+            new Field(NEWRATING, COL_LOSER_NEWRATING, INT),
+            new Field(POS, COL_LOSER_POS, INT)};
+
+    private static final GameCodec COLUMNS_CODEC = new GameCodec(CellFormat.COLUMNS);
+    private static final GameCodec PACKED_CODEC = new GameCodec(CellFormat.PACKED);
+
+    private final CellFormat format;
+
+    private GameCodec(CellFormat format) {
+        this.format = format;
+    }
+
+    public static GameCodec of(CellFormat format) {
+        return format == CellFormat.PACKED ? PACKED_CODEC : COLUMNS_CODEC;
+    }
+
+    /**
+     * @return The codec stored in the descriptor of the table. Tables without a cell format have the columns one.
+     */
+    public static GameCodec of(HTableDescriptor descriptor) {
+        String format = descriptor.getValue(CELL_FORMAT_KEY);
+        return of(format == null ? CellFormat.COLUMNS : CellFormat.valueOf(format));
+    }
+
+    /**
+     * Stores the cell format in the descriptor of the table.
+     */
+    public void applyTo(HTableDescriptor descriptor) {
+        descriptor.setValue(CELL_FORMAT_KEY, format.name());
+    }
+
+    public CellFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Builds the Put holding all the 19 columns of a game.
+     *
+     * @param row    The row key of the game.
+     * @param values The fields of the csv line.
+     * @return The Put to be inserted in HBase
+     */
+    public Put toPut(byte[] row, String[] values) {
+        Put p = new Put(row);
+        if (format == CellFormat.PACKED) {
+            p.add(GAME, PACKED, pack(GAME_FIELDS, values));
+            p.add(WINNER, PACKED, pack(WINNER_FIELDS, values));
+            p.add(LOSER, PACKED, pack(LOSER_FIELDS, values));
+        } else {
+            addColumns(p, GAME, GAME_FIELDS, values);
+            addColumns(p, WINNER, WINNER_FIELDS, values);
+            addColumns(p, LOSER, LOSER_FIELDS, values);
+        }
+        return p;
+    }
+
+    /**
+     * @return The qualifier of the cell holding a column of a family. Columns of other tables are returned as is.
+     */
+    public byte[] qualifier(byte[] family, byte[] qualifier) {
+        if (format == CellFormat.PACKED && fields(family) != null) {
+            return PACKED;
+        }
+        return qualifier;
+    }
+
+    /**
+     * Builds a filter accepting the games whose column equals the value. In the packed format only the first column
+     * of a family can be filtered on, since the filter compares the beginning of the cell.
+     *
+     * @throws IllegalArgumentException If the column cannot be filtered on.
+     */
+    public SingleColumnValueFilter equalFilter(byte[] family, byte[] qualifier, String value) {
+        if (format == CellFormat.COLUMNS) {
+            return new SingleColumnValueFilter(family, qualifier, CompareFilter.CompareOp.EQUAL, Bytes.toBytes(value));
+        }
+        Field[] fields = fields(family);
+        if (fields == null || !Bytes.equals(fields[0].qualifier, qualifier)) {
+            throw new IllegalArgumentException("Cannot filter on the packed column " + Bytes.toString(family) + ":"
+                    + Bytes.toString(qualifier));
+        }
+        // A string is prefixed by its length, so the prefix only matches the exact value
+        Object encoded = encode(fields[0], value);
+        byte[] prefix = new byte[size(fields[0], encoded)];
+        write(fields[0], encoded, prefix, 0);
+        return new SingleColumnValueFilter(family, PACKED, CompareFilter.CompareOp.EQUAL,
+                                           new BinaryPrefixComparator(prefix));
+    }
+
+    /**
+     * @return Whether the cell holds the given column of its family.
+     */
+    public boolean contains(Cell cell, byte[] qualifier) {
+        if (format == CellFormat.COLUMNS) {
+            return Bytes.equals(cell.getQualifierArray(), cell.getQualifierOffset(), cell.getQualifierLength(),
+                                qualifier, 0, qualifier.length);
+        }
+        return Bytes.equals(cell.getQualifierArray(), cell.getQualifierOffset(), cell.getQualifierLength(),
+                            PACKED, 0, PACKED.length)
+                && indexOf(fields(cell), qualifier) >= 0;
+    }
+
+    /**
+     * Decodes an int column of a cell without allocating.
+     *
+     * @param cell      A cell holding the column, see {@link #contains(Cell, byte[])}.
+     * @param qualifier The qualifier of the column.
+     * @throws NumberFormatException If the column is empty or not an int.
+     */
+    public int getInt(Cell cell, byte[] qualifier) {
+        if (format == CellFormat.COLUMNS) {
+            return parseInt(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
+        }
+        Field[] fields = fields(cell);
+        int index = require(fields, qualifier);
+        if (fields[index].type != INT) {
+            throw new IllegalArgumentException("Not an int column: " + Bytes.toString(qualifier));
+        }
+        int value = Bytes.toInt(cell.getValueArray(), offsetOf(fields, index, cell));
+        if (value == EMPTY_INT) {
+            throw new NumberFormatException("Empty column " + Bytes.toString(qualifier));
+        }
+        return value;
+    }
+
+    /**
+     * Decodes a column of a cell into the string it was loaded from. Booleans come back as "True" or "False".
+     *
+     * @param cell      A cell holding the column, see {@link #contains(Cell, byte[])}.
+     * @param qualifier The qualifier of the column.
+     */
+    public String getString(Cell cell, byte[] qualifier) {
+        if (format == CellFormat.COLUMNS) {
+            return Bytes.toString(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
+        }
+        Field[] fields = fields(cell);
+        int index = require(fields, qualifier);
+        byte[] bytes = cell.getValueArray();
+        int offset = offsetOf(fields, index, cell);
+        switch (fields[index].type) {
+            case INT:
+                int value = Bytes.toInt(bytes, offset);
+                return value == EMPTY_INT ? "" : Integer.toString(value);
+            case BOOLEAN:
+                return bytes[offset] != 0 ? "True" : "False";
+            default:
+                long lengthAndSize = readVarint(bytes, offset);
+                int length = (int) lengthAndSize;
+                return Bytes.toString(bytes, offset + (int) (lengthAndSize >>> 32), length);
+        }
+    }
+
+    /**
+     * Decodes a column of a row read with the qualifier of {@link #qualifier(byte[], byte[])}.
+     *
+     * @return The value of the column, null if the row does not have it.
+     */
+    public String getString(Result result, byte[] family, byte[] qualifier) {
+        Cell cell = result.getColumnLatestCell(family, qualifier(family, qualifier));
+        return cell == null ? null : getString(cell, qualifier);
+    }
+
+    /**
+     * Parses a decimal int written in ASCII, like the ids of the players, without going through a String.
+     *
+     * @throws NumberFormatException If the bytes are not a decimal int.
+     */
+    static int parseInt(byte[] bytes, int offset, int length) {
+        if (length == 0) {
+            throw new NumberFormatException("Empty id");
+        }
+        boolean negative = bytes[offset] == '-';
+        int i = negative ? 1 : 0;
+        if (i == length) {
+            throw new NumberFormatException(Bytes.toString(bytes, offset, length));
+        }
+        // accumulated negatively, so Integer.MIN_VALUE fits
+        int value = 0;
+        for (; i < length; i++) {
+            int digit = bytes[offset + i] - '0';
+            if (digit < 0 || digit > 9 || value < (Integer.MIN_VALUE + digit) / 10) {
+                throw new NumberFormatException(Bytes.toString(bytes, offset, length));
+            }
+            value = value * 10 - digit;
+        }
+        if (!negative) {
+            if (value == Integer.MIN_VALUE) {
+                throw new NumberFormatException(Bytes.toString(bytes, offset, length));
+            }
+            value = -value;
+        }
+        return value;
+    }
+
+    private static void addColumns(Put p, byte[] family, Field[] fields, String[] values) {
+        for (Field field : fields) {
+            p.add(family, field.qualifier, Bytes.toBytes(values[field.csvColumn]));
+        }
+    }
+
+    private static byte[] pack(Field[] fields, String[] values) {
+        // every field is converted once, to size the cell and then to fill it
+        Object[] encoded = new Object[fields.length];
+        int length = 0;
+        for (int i = 0; i < fields.length; i++) {
+            encoded[i] = encode(fields[i], values[fields[i].csvColumn]);
+            length += size(fields[i], encoded[i]);
+        }
+        byte[] cell = new byte[length];
+        int offset = 0;
+        for (int i = 0; i < fields.length; i++) {
+            offset = write(fields[i], encoded[i], cell, offset);
+        }
+        return cell;
+    }
+
+    /**
+     * @return The Integer of an int, the Boolean of a boolean, the UTF-8 bytes of a string.
+     */
+    private static Object encode(Field field, String value) {
+        switch (field.type) {
+            case INT:
+                if (value.isEmpty()) {
+                    return EMPTY_INT;
+                }
+                int parsed = Integer.parseInt(value);
+                if (parsed == EMPTY_INT) {
+                    // it would be read back as an empty field
+                    throw new NumberFormatException("Out of range: " + value);
+                }
+                return parsed;
+            case BOOLEAN:
+                if (value.equalsIgnoreCase("True")) {
+                    return Boolean.TRUE;
+                } else if (value.equalsIgnoreCase("False")) {
+                    return Boolean.FALSE;
+                }
+                throw new NumberFormatException("Not a boolean: " + value);
+            default:
+                return Bytes.toBytes(value);
+        }
+    }
+
+    private static int size(Field field, Object encoded) {
+        switch (field.type) {
+            case INT:
+                return 4;
+            case BOOLEAN:
+                return 1;
+            default:
+                int length = ((byte[]) encoded).length;
+                return varintSize(length) + length;
+        }
+    }
+
+    private static int write(Field field, Object encoded, byte[] cell, int offset) {
+        switch (field.type) {
+            case INT:
+                return Bytes.putInt(cell, offset, (Integer) encoded);
+            case BOOLEAN:
+                cell[offset] = (byte) ((Boolean) encoded ? 1 : 0);
+                return offset + 1;
+            default:
+                byte[] bytes = (byte[]) encoded;
+                offset = writeVarint(bytes.length, cell, offset);
+                System.arraycopy(bytes, 0, cell, offset, bytes.length);
+                return offset + bytes.length;
+        }
+    }
+
+    private static Field[] fields(byte[] family) {
+        if (Bytes.equals(family, GAME)) {
+            return GAME_FIELDS;
+        } else if (Bytes.equals(family, WINNER)) {
+            return WINNER_FIELDS;
+        } else if (Bytes.equals(family, LOSER)) {
+            return LOSER_FIELDS;
+        }
+        return null;
+    }
+
+    private static Field[] fields(Cell cell) {
+        byte[] family = cell.getFamilyArray();
+        int offset = cell.getFamilyOffset();
+        int length = cell.getFamilyLength();
+        if (Bytes.equals(family, offset, length, GAME, 0, GAME.length)) {
+            return GAME_FIELDS;
+        } else if (Bytes.equals(family, offset, length, WINNER, 0, WINNER.length)) {
+            return WINNER_FIELDS;
+        } else if (Bytes.equals(family, offset, length, LOSER, 0, LOSER.length)) {
+            return LOSER_FIELDS;
+        }
+        return null;
+    }
+
+    private static int indexOf(Field[] fields, byte[] qualifier) {
+        if (fields != null) {
+            for (int i = 0; i < fields.length; i++) {
+                if (Bytes.equals(fields[i].qualifier, qualifier)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static int require(Field[] fields, byte[] qualifier) {
+        int index = indexOf(fields, qualifier);
+        if (index < 0) {
+            throw new IllegalArgumentException("The cell does not hold the column " + Bytes.toString(qualifier));
+        }
+        return index;
+    }
+
+    /**
+     * @return The offset of a field in the value of a packed cell, skipping the fields before it.
+     */
+    private static int offsetOf(Field[] fields, int index, Cell cell) {
+        byte[] bytes = cell.getValueArray();
+        int offset = cell.getValueOffset();
+        for (int i = 0; i < index; i++) {
+            switch (fields[i].type) {
+                case INT:
+                    offset += 4;
+                    break;
+                case BOOLEAN:
+                    offset += 1;
+                    break;
+                default:
+                    long lengthAndSize = readVarint(bytes, offset);
+                    offset += (int) (lengthAndSize >>> 32) + (int) lengthAndSize;
+            }
+        }
+        return offset;
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+
+    private static int writeVarint(int value, byte[] bytes, int offset) {
+        while ((value & ~0x7f) != 0) {
+            bytes[offset++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        bytes[offset++] = (byte) value;
+        return offset;
+    }
+
+    /**
+     * @return The value of the varint in the low 32 bits, and the number of bytes it takes in the high 32 bits.
+     */
+    private static long readVarint(byte[] bytes, int offset) {
+        int value = 0;
+        int size = 0;
+        byte b;
+        do {
+            b = bytes[offset + size];
+            value |= (b & 0x7f) << (7 * size);
+            size++;
+        } while ((b & 0x80) != 0);
+        return ((long) size << 32) | (value & 0xffffffffL);
+    }
+}
@@ -0,0 +1,112 @@
+package scrabble;
+
+import org.apache.hadoop.hbase.client.Put;
+
+import static scrabble.ScrabbleSchema.*;
+
+/**
+ * Turns one line of "scrabble_games.csv" into the Put that stores the game in the "ScrabbleGames" table,
+ * and into the Puts maintaining the tables derived from it.
+ *
+ * A mapper keeps no state between lines other than the tourneys touched by the {@link TourneyAggregates},
+ * which are tracked in a concurrent set, so a single instance can be shared by all the parser threads of a load.
+ */
+public class GameRowMapper {
+    private final KeyLayout layout;
+    private final GameCodec codec;
+    private final WinnerIndex winnerIndex;
+    private final TourneyAggregates aggregates;
+
+    /**
+     * A mapper writing one cell per column.
+     *
+     * @param layout      The layout of the row keys of the table the games are loaded into.
+     * @param winnerIndex The index to maintain, null if the table has none.
+     * @param aggregates  The aggregates to maintain, null if the table has none.
+     */
+    public GameRowMapper(KeyLayout layout, WinnerIndex winnerIndex, TourneyAggregates aggregates) {
+        this(layout, GameCodec.of(GameCodec.CellFormat.COLUMNS), winnerIndex, aggregates);
+    }
+
+    /**
+     * @param layout      The layout of the row keys of the table the games are loaded into.
+     * @param codec       The format of the cells of the table.
+     * @param winnerIndex The index to maintain, null if the table has none.
+     * @param aggregates  The aggregates to maintain, null if the table has none.
+     */
+    public GameRowMapper(KeyLayout layout, GameCodec codec, WinnerIndex winnerIndex, TourneyAggregates aggregates) {
+        this.layout = layout;
+        this.codec = codec;
+        this.winnerIndex = winnerIndex;
+        this.aggregates = aggregates;
+    }
+
+    /**
+     * Splits a csv line on ',' into the given array in a single pass.
+     *
+     * Unlike String.split this does not compile a pattern or allocate a list per line, and it keeps
+     * trailing empty fields.
+     *
+     * @param line   The csv line.
+     * @param fields The array receiving the fields. Fields beyond its length are ignored.
+     * @return The number of fields found in the line.
+     */
+    public static int split(String line, String[] fields) {
+        int count = 0;
+        int start = 0;
+        int end;
+        while ((end = line.indexOf(',', start)) >= 0) {
+            if (count < fields.length) {
+                fields[count] = line.substring(start, end);
+            }
+            count++;
+            start = end + 1;
+        }
+        if (count < fields.length) {
+            fields[count] = line.substring(start);
+        }
+        return count + 1;
+    }
+
+    /**
+     * This method generates the key, as described by the {@link KeyLayout} of the table.
+     *
+     * @param values The value of each column
+     * @return The encoded key to be inserted in HBase
+     */
+    public byte[] getKey(String[] values) {
+        return layout.rowKey(Integer.parseInt(values[COL_TOURNEYID]), Integer.parseInt(values[COL_GAMEID]));
+    }
+
+    /**
+     * Adds all the Puts of a game to the batch.
+     *
+     * @param values The fields of the csv line, as filled by {@link #split(String, String[])}.
+     * @param batch  The batch receiving the Puts.
+     */
+    public void map(String[] values, PutBatch batch) {
+        // build all the Puts first, so a malformed line does not leave some of them behind
+        Put game = toPut(values);
+        Put index = winnerIndex != null ? winnerIndex.toPut(values) : null;
+        Put appearances = aggregates != null ? aggregates.toPut(values) : null;
+
+        batch.add(TABLE_NAME, game);
+        if (index != null) {
+            batch.add(WinnerIndex.TABLE_NAME, index);
+        }
+        if (appearances != null) {
+            batch.add(TourneyAggregates.TABLE_NAME, appearances);
+        }
+        batch.addGame();
+    }
+
+    /**
+     * Builds the Put holding all the 19 columns of a game, in the cell format of the table.
+     *
+     * @param values The fields of the csv line, as filled by {@link #split(String, String[])}.
+     * @return The Put to be inserted in HBase
+     */
+    public Put toPut(String[] values) {
+        return codec.toPut(getKey(values), values);
+    }
+}
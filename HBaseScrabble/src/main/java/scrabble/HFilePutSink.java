@@ -0,0 +1,414 @@
+package scrabble;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.KeyValueUtil;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.io.hfile.CacheConfig;
+import org.apache.hadoop.hbase.io.hfile.HFileContextBuilder;
+import org.apache.hadoop.hbase.regionserver.BloomType;
+import org.apache.hadoop.hbase.regionserver.StoreFile;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Writes Puts into sorted HFiles instead of sending them to the region servers, so they can be handed to
+ * the tables in one step with LoadIncrementalHFiles.
+ *
+ * The cells are kept in memory until they take more than the configured number of bytes. Then every column family
+ * is sorted and spilled to a run: a temporary file of sorted cells in "outputDir/_runs/", so the memory needed does
+ * not grow with the size of the file. {@link #flush()} merges the runs of every family, and writes the merged cells
+ * to the HFiles of "outputDir/table/family/", starting a new HFile at every region boundary of the table. Every
+ * region therefore gets a single HFile per family and flush, whatever the number of runs, like with
+ * HFileOutputFormat and a TotalOrderPartitioner. Without the merge, every run would cover the whole key range, and
+ * LoadIncrementalHFiles would put one HFile per run in every region: past
+ * "hbase.mapreduce.bulkload.max.hfiles.perRegion.perFamily" the load fails, and below it the stores start blocked
+ * behind their compactions. When nothing was spilled, the cells are written from memory without a run.
+ *
+ * All the cells get the same timestamp, the time the sink was created.
+ *
+ * When the descriptors of the tables are given, the HFiles are written with the block size, compression, block
+ * encoding and bloom filter of their family, like the region servers would write them (see {@link SchemaProfile}).
+ * Otherwise they are written uncompressed, without encoding or blooms, until a compaction rewrites them.
+ */
+public class HFilePutSink implements PutSink {
+    public static final String CHUNK_BYTES_KEY = "scrabble.bulkload.chunk.bytes";
+    public static final String BLOCK_SIZE_KEY = "scrabble.bulkload.block.size";
+
+    private static final String RUNS_DIR = "_runs";
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    /**
+     * A spilled file of sorted cells.
+     */
+    private static final class Run {
+        private final Path path;
+        private final int cells;
+
+        private Run(Path path, int cells) {
+            this.path = path;
+            this.cells = cells;
+        }
+    }
+
+    /**
+     * Sorted cells, read one by one.
+     */
+    private interface SortedCells {
+        /**
+         * @return The next cell, null once there are no more.
+         */
+        KeyValue next() throws IOException;
+    }
+
+    private final Configuration config;
+    private final CacheConfig cacheConfig;
+    private final FileSystem fs;
+    private final Path outputDir;
+    private final byte[] timestamp;
+    private final long chunkBytes;
+    private final int blockSize;
+    private final Map<String, HTableDescriptor> descriptors = new HashMap<>();
+    private final Map<String, byte[][]> regionStartKeys = new HashMap<>();
+
+    private final Map<String, Map<byte[], List<KeyValue>>> chunk = new TreeMap<>();
+    private final Map<String, Map<byte[], List<Run>>> runs = new TreeMap<>();
+    private final Set<String> tables = new TreeSet<>();
+    private long chunkSize = 0;
+    private int runsWritten = 0;
+    private int filesWritten = 0;
+
+    /**
+     * @param config    The configuration, also used to resolve the file system of the output directory.
+     * @param outputDir The directory receiving one sub directory of HFiles per table and column family.
+     * @throws IOException
+     */
+    public HFilePutSink(Configuration config, Path outputDir) throws IOException {
+        this(config, outputDir, Collections.<HTableDescriptor>emptyList());
+    }
+
+    /**
+     * @param config      The configuration, also used to resolve the file system of the output directory.
+     * @param outputDir   The directory receiving one sub directory of HFiles per table and column family.
+     * @param descriptors The descriptors of the tables, whose family settings the HFiles are written with.
+     * @throws IOException
+     */
+    public HFilePutSink(Configuration config, Path outputDir, Collection<HTableDescriptor> descriptors)
+            throws IOException {
+        this(config, outputDir, descriptors, Collections.<String, byte[][]>emptyMap());
+    }
+
+    /**
+     * @param config          The configuration, also used to resolve the file system of the output directory.
+     * @param outputDir       The directory receiving one sub directory of HFiles per table and column family.
+     * @param descriptors     The descriptors of the tables, whose family settings the HFiles are written with.
+     * @param regionStartKeys The start keys of the regions of every table, where the HFiles are cut. The HFiles of
+     *                        a table without start keys cover its whole key range.
+     * @throws IOException
+     */
+    public HFilePutSink(Configuration config, Path outputDir, Collection<HTableDescriptor> descriptors,
+                        Map<String, byte[][]> regionStartKeys) throws IOException {
+        this.config = config;
+        this.outputDir = outputDir;
+        this.fs = outputDir.getFileSystem(config);
+        this.timestamp = Bytes.toBytes(System.currentTimeMillis());
+        this.chunkBytes = config.getLong(CHUNK_BYTES_KEY, 256L * 1024 * 1024);
+        this.blockSize = config.getInt(BLOCK_SIZE_KEY, HConstants.DEFAULT_BLOCKSIZE);
+
+        // the files are written once and never read back here, so there is no point in a block cache
+        Configuration noCache = new Configuration(config);
+        noCache.setFloat(HConstants.HFILE_BLOCK_CACHE_SIZE_KEY, 0.0f);
+        this.cacheConfig = new CacheConfig(noCache);
+
+        for (HTableDescriptor descriptor : descriptors) {
+            this.descriptors.put(descriptor.getTableName().getNameAsString(), descriptor);
+        }
+        for (Map.Entry<String, byte[][]> table : regionStartKeys.entrySet()) {
+            byte[][] keys = table.getValue().clone();
+            Arrays.sort(keys, Bytes.BYTES_COMPARATOR);
+            this.regionStartKeys.put(table.getKey(), keys);
+        }
+    }
+
+    @Override
+    public void write(String tableName, List<Put> puts) throws IOException {
+        Map<byte[], List<KeyValue>> families = chunk.get(tableName);
+        if (families == null) {
+            families = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+            chunk.put(tableName, families);
+        }
+        for (Put put : puts) {
+            for (Map.Entry<byte[], List<Cell>> family : put.getFamilyCellMap().entrySet()) {
+                List<KeyValue> kvs = families.get(family.getKey());
+                if (kvs == null) {
+                    kvs = new ArrayList<>();
+                    families.put(family.getKey(), kvs);
+                }
+                for (Cell cell : family.getValue()) {
+                    KeyValue kv = KeyValueUtil.ensureKeyValue(cell);
+                    // the region server is not there to replace LATEST_TIMESTAMP
+                    kv.updateLatestStamp(timestamp);
+                    kvs.add(kv);
+                    chunkSize += kv.heapSize();
+                }
+            }
+        }
+        if (chunkSize >= chunkBytes) {
+            spill();
+        }
+    }
+
+    /**
+     * Writes the HFiles of all the cells accepted so far, merging the runs spilled since the previous flush.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (runs.isEmpty()) {
+            // everything fits in memory
+            for (Map.Entry<String, Map<byte[], List<KeyValue>>> table : chunk.entrySet()) {
+                for (Map.Entry<byte[], List<KeyValue>> family : table.getValue().entrySet()) {
+                    if (!family.getValue().isEmpty()) {
+                        writeHFiles(table.getKey(), family.getKey(), sorted(family.getValue()));
+                    }
+                }
+            }
+            chunk.clear();
+            chunkSize = 0;
+            return;
+        }
+
+        spill();
+        for (Map.Entry<String, Map<byte[], List<Run>>> table : runs.entrySet()) {
+            for (Map.Entry<byte[], List<Run>> family : table.getValue().entrySet()) {
+                List<DataInputStream> inputs = new ArrayList<>();
+                try {
+                    writeHFiles(table.getKey(), family.getKey(), merged(family.getValue(), inputs));
+                } finally {
+                    for (DataInputStream input : inputs) {
+                        input.close();
+                    }
+                }
+            }
+        }
+        runs.clear();
+        fs.delete(new Path(outputDir, RUNS_DIR), true);
+    }
+
+    /**
+     * Drops the cells not flushed yet, and their runs.
+     */
+    @Override
+    public void close() throws IOException {
+        chunk.clear();
+        runs.clear();
+        fs.delete(new Path(outputDir, RUNS_DIR), true);
+    }
+
+    /**
+     * @return The number of HFiles written so far.
+     */
+    public int getFilesWritten() {
+        return filesWritten;
+    }
+
+    /**
+     * @return The number of runs spilled so far.
+     */
+    public int getRunsWritten() {
+        return runsWritten;
+    }
+
+    /**
+     * @return The tables HFiles have been written for so far.
+     */
+    public Set<String> getTables() {
+        return tables;
+    }
+
+    /**
+     * @return The directory holding the HFiles of a table, to be handed to LoadIncrementalHFiles.
+     */
+    public Path getTableDir(String tableName) {
+        return new Path(outputDir, tableName);
+    }
+
+    /**
+     * Sorts the cells of every family in memory and writes them to a new run.
+     */
+    private void spill() throws IOException {
+        for (Map.Entry<String, Map<byte[], List<KeyValue>>> table : chunk.entrySet()) {
+            for (Map.Entry<byte[], List<KeyValue>> family : table.getValue().entrySet()) {
+                if (!family.getValue().isEmpty()) {
+                    writeRun(table.getKey(), family.getKey(), family.getValue());
+                }
+            }
+        }
+        chunk.clear();
+        chunkSize = 0;
+    }
+
+    private void writeRun(String tableName, byte[] family, List<KeyValue> cells) throws IOException {
+        Path path = new Path(new Path(outputDir, RUNS_DIR),
+                             tableName + "." + Bytes.toString(family) + "." + runsWritten);
+        SortedCells sorted = sorted(cells);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fs.create(path, true), BUFFER_BYTES));
+        try {
+            for (KeyValue kv = sorted.next(); kv != null; kv = sorted.next()) {
+                KeyValue.write(kv, out);
+            }
+        } finally {
+            out.close();
+        }
+
+        Map<byte[], List<Run>> families = runs.get(tableName);
+        if (families == null) {
+            families = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+            runs.put(tableName, families);
+        }
+        List<Run> familyRuns = families.get(family);
+        if (familyRuns == null) {
+            familyRuns = new ArrayList<>();
+            families.put(family, familyRuns);
+        }
+        familyRuns.add(new Run(path, cells.size()));
+        runsWritten++;
+    }
+
+    private static SortedCells sorted(List<KeyValue> cells) {
+        final KeyValue[] kvs = cells.toArray(new KeyValue[cells.size()]);
+        Arrays.parallelSort(kvs, KeyValue.COMPARATOR);
+        return new SortedCells() {
+            private int next = 0;
+
+            @Override
+            public KeyValue next() {
+                return next < kvs.length ? kvs[next++] : null;
+            }
+        };
+    }
+
+    /**
+     * A k-way merge of sorted runs: the next cell is the smallest of the next cells of the runs.
+     *
+     * @param inputs Receives the streams opened on the runs, to be closed by the caller.
+     */
+    private SortedCells merged(List<Run> familyRuns, List<DataInputStream> inputs) throws IOException {
+        final DataInputStream[] streams = new DataInputStream[familyRuns.size()];
+        final int[] remaining = new int[familyRuns.size()];
+        final KeyValue[] heads = new KeyValue[familyRuns.size()];
+        final PriorityQueue<Integer> next = new PriorityQueue<>(Math.max(1, familyRuns.size()),
+                                                                new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int byKey = KeyValue.COMPARATOR.compare(heads[a], heads[b]);
+                // the cells of the same key stay in the order they were written in
+                return byKey != 0 ? byKey : Integer.compare(a, b);
+            }
+        });
+        for (int i = 0; i < streams.length; i++) {
+            Run run = familyRuns.get(i);
+            streams[i] = new DataInputStream(new BufferedInputStream(fs.open(run.path), BUFFER_BYTES));
+            inputs.add(streams[i]);
+            remaining[i] = run.cells;
+            if (remaining[i]-- > 0) {
+                heads[i] = KeyValue.create(streams[i]);
+                next.add(i);
+            }
+        }
+
+        return new SortedCells() {
+            @Override
+            public KeyValue next() throws IOException {
+                Integer run = next.poll();
+                if (run == null) {
+                    return null;
+                }
+                KeyValue kv = heads[run];
+                if (remaining[run]-- > 0) {
+                    heads[run] = KeyValue.create(streams[run]);
+                    next.add(run);
+                }
+                return kv;
+            }
+        };
+    }
+
+    /**
+     * Writes sorted cells to the HFiles of a family, one HFile per region of the table holding cells.
+     */
+    private void writeHFiles(String tableName, byte[] family, SortedCells cells) throws IOException {
+        byte[][] startKeys = regionStartKeys.get(tableName);
+        if (startKeys == null) {
+            startKeys = new byte[0][];
+        }
+        int nextRegion = 0;
+        StoreFile.Writer writer = null;
+        try {
+            for (KeyValue kv = cells.next(); kv != null; kv = cells.next()) {
+                // the first start key is empty, every other one starts a region and therefore an HFile
+                while (nextRegion < startKeys.length
+                        && Bytes.compareTo(kv.getRowArray(), kv.getRowOffset(), kv.getRowLength(),
+                                           startKeys[nextRegion], 0, startKeys[nextRegion].length) >= 0) {
+                    if (writer != null) {
+                        close(writer);
+                        writer = null;
+                    }
+                    nextRegion++;
+                }
+                if (writer == null) {
+                    writer = newWriter(tableName, family);
+                }
+                writer.append(kv);
+            }
+        } finally {
+            if (writer != null) {
+                close(writer);
+            }
+        }
+    }
+
+    private StoreFile.Writer newWriter(String tableName, byte[] family) throws IOException {
+        HFileContextBuilder context = new HFileContextBuilder().withBlockSize(blockSize);
+        BloomType bloom = BloomType.NONE;
+        HTableDescriptor descriptor = descriptors.get(tableName);
+        HColumnDescriptor settings = descriptor != null ? descriptor.getFamily(family) : null;
+        if (settings != null) {
+            context.withBlockSize(settings.getBlocksize())
+                   .withCompression(settings.getCompression())
+                   .withDataBlockEncoding(settings.getDataBlockEncoding());
+            bloom = settings.getBloomFilterType();
+        }
+
+        StoreFile.Writer writer = new StoreFile.WriterBuilder(config, cacheConfig, fs)
+                .withOutputDir(new Path(getTableDir(tableName), Bytes.toString(family)))
+                .withComparator(KeyValue.COMPARATOR)
+                .withBloomType(bloom)
+                .withFileContext(context.build())
+                .build();
+        tables.add(tableName);
+        filesWritten++;
+        return writer;
+    }
+
+    private static void close(StoreFile.Writer writer) throws IOException {
+        try {
+            writer.appendFileInfo(StoreFile.BULKLOAD_TIME_KEY, Bytes.toBytes(System.currentTimeMillis()));
+            writer.appendFileInfo(StoreFile.MAJOR_COMPACTION_KEY, Bytes.toBytes(false));
+            writer.appendTrackedTimestampsToMetadata();
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package scrabble;
+
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.HConnection;
+import org.apache.hadoop.hbase.client.HTableInterface;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.io.IOException;
+
+/**
+ * How far the csv files of a {@link StreamingIngest} have been written to the "ScrabbleGames" table.
+ *
+ * The checkpoint of a file is the byte offset of the first line not ingested yet. It is kept in the "ScrabbleMeta"
+ * table next to the {@link LoadEpoch}, one column per file name, so it survives the ingesting process and belongs
+ * to the table rather than to the machine the files are read on. The createTable command clears the checkpoints,
+ * since a new table holds none of the ingested games, while migrateKeys keeps them along with the games.
+ */
+public class IngestCheckpoint {
+    private static final byte[] ROW = Bytes.toBytes(ScrabbleSchema.TABLE_NAME + ":ingest");
+
+    private final HConnection connection;
+
+    public IngestCheckpoint(HConnection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * @param fileName The name of the csv file, without its directory.
+     * @return The offset the file is ingested up to, 0 if it never was.
+     * @throws IOException
+     */
+    public long read(String fileName) throws IOException {
+        Get get = new Get(ROW);
+        get.addColumn(LoadEpoch.META, Bytes.toBytes(fileName));
+
+        HTableInterface table = connection.getTable(LoadEpoch.TABLE_NAME);
+        try {
+            Result result = table.get(get);
+            byte[] value = result.getValue(LoadEpoch.META, Bytes.toBytes(fileName));
+            return value == null ? 0 : Bytes.toLong(value);
+        } finally {
+            table.close();
+        }
+    }
+
+    /**
+     * Records that a file is ingested up to the given offset. Only to be called once the games before the offset
+     * have been flushed to the region servers.
+     *
+     * @throws IOException
+     */
+    public void write(String fileName, long offset) throws IOException {
+        Put put = new Put(ROW);
+        put.add(LoadEpoch.META, Bytes.toBytes(fileName), Bytes.toBytes(offset));
+
+        HTableInterface table = connection.getTable(LoadEpoch.TABLE_NAME);
+        try {
+            table.put(put);
+        } finally {
+            table.close();
+        }
+    }
+
+    /**
+     * Forgets the checkpoints of all the files.
+     *
+     * @throws IOException
+     */
+    public void clear() throws IOException {
+        HTableInterface table = connection.getTable(LoadEpoch.TABLE_NAME);
+        try {
+            table.delete(new Delete(ROW));
+        } finally {
+            table.close();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package scrabble;
+
+import java.util.Arrays;
+
+/**
+ * Counts occurrences of int keys, without boxing them.
+ *
+ * The keys and their counts are kept in two parallel arrays, the slot of a key being found by open addressing with
+ * linear probing. A count of 0 marks a free slot. The table doubles when it is half full, and {@link #clear()} keeps
+ * it, so a counter reused for every tourney stops allocating once it has grown to the size of the largest one.
+ */
+public class IntCounter {
+    private int[] keys;
+    private int[] counts;
+    private int size;
+
+    public IntCounter() {
+        this(16);
+    }
+
+    /**
+     * @param expectedKeys The number of distinct keys expected.
+     */
+    public IntCounter(int expectedKeys) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedKeys * 2 - 1)) << 1;
+        keys = new int[capacity];
+        counts = new int[capacity];
+    }
+
+    /**
+     * Adds one occurrence of the key.
+     */
+    public void increment(int key) {
+        add(key, 1);
+    }
+
+    /**
+     * Adds occurrences of the key.
+     *
+     * @param count The number of occurrences, more than 0.
+     */
+    public void add(int key, int count) {
+        int slot = slot(key, keys.length - 1);
+        while (counts[slot] != 0) {
+            if (keys[slot] == key) {
+                counts[slot] += count;
+                return;
+            }
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        keys[slot] = key;
+        counts[slot] = count;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+    }
+
+    /**
+     * @return The occurrences of the key, 0 if it was never added.
+     */
+    public int get(int key) {
+        int slot = slot(key, keys.length - 1);
+        while (counts[slot] != 0) {
+            if (keys[slot] == key) {
+                return counts[slot];
+            }
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        return 0;
+    }
+
+    /**
+     * Adds all the occurrences counted by another counter.
+     */
+    public void addAll(IntCounter other) {
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.counts[i] != 0) {
+                add(other.keys[i], other.counts[i]);
+            }
+        }
+    }
+
+    /**
+     * @return The number of distinct keys.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The sorted keys occurring more than once.
+     */
+    public int[] repeated() {
+        int[] repeated = new int[size];
+        int count = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (counts[i] > 1) {
+                repeated[count++] = keys[i];
+            }
+        }
+        Arrays.sort(repeated, 0, count);
+        return Arrays.copyOf(repeated, count);
+    }
+
+    /**
+     * Forgets all the keys, keeping the memory.
+     */
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(counts, 0);
+            size = 0;
+        }
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new int[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldCounts[i] != 0) {
+                add(oldKeys[i], oldCounts[i]);
+            }
+        }
+    }
+
+    private static int slot(int key, int mask) {
+        // spreads consecutive ids over the table
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
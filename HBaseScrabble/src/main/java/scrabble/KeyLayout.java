@@ -0,0 +1,244 @@
+package scrabble;
+
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Describes how the row keys of the "ScrabbleGames" table are built, and computes the key ranges the
+ * queries have to scan.
+ *
+ * Two key formats exist:
+ * - BINARY: TourneyID and GameID as two 4 byte ints, see {@link RowKeyCodec}. Used by new tables.
+ * - ASCII: a 20 character string, where TourneyID and GameID are being padded with leading zeros to extend
+ *   them to 20 character length. For example, 00000421530000000123 would be Game 123 in Tourney 42153.
+ *   Tables created before the binary format have these keys, and can be converted with migrateKeys.
+ *
+ * Since tourney ids are increasing, these keys make all the writes of a load go to the same region. The
+ * table can therefore be salted: a one byte bucket, tourneyid modulo the number of buckets, is put in front
+ * of the key. All the games of a tourney stay in the same bucket, so a tourney is still read with a single
+ * scan, while consecutive tourneys are spread over all the buckets. Ranges of tourneys have to be scanned
+ * once per bucket.
+ *
+ * The layout is stored in the table descriptor by createTable, so the loaders and queries pick it up from
+ * the table instead of having to be told.
+ */
+public class KeyLayout {
+    public static final String SALT_BUCKETS_KEY = "scrabble.salt.buckets";
+    public static final String KEY_FORMAT_KEY = "scrabble.key.format";
+
+    public enum KeyFormat {
+        ASCII, BINARY
+    }
+
+    private static final int MAX_BUCKETS = 256;
+
+    private final int buckets;
+    private final KeyFormat format;
+
+    /**
+     * @param buckets The number of salt buckets. 0 or 1 means the keys are not salted.
+     * @param format  The format of the keys.
+     */
+    public KeyLayout(int buckets, KeyFormat format) {
+        if (buckets < 0 || buckets > MAX_BUCKETS) {
+            throw new IllegalArgumentException("The number of salt buckets must be between 0 and " + MAX_BUCKETS);
+        }
+        this.buckets = buckets > 1 ? buckets : 0;
+        this.format = format;
+    }
+
+    /**
+     * @return The layout stored in the descriptor of the table. Tables without a key format are ASCII.
+     */
+    public static KeyLayout of(HTableDescriptor descriptor) {
+        String buckets = descriptor.getValue(SALT_BUCKETS_KEY);
+        String format = descriptor.getValue(KEY_FORMAT_KEY);
+        return new KeyLayout(buckets == null ? 0 : Integer.parseInt(buckets),
+                format == null ? KeyFormat.ASCII : KeyFormat.valueOf(format));
+    }
+
+    /**
+     * Stores the layout in the descriptor of the table.
+     */
+    public void applyTo(HTableDescriptor descriptor) {
+        descriptor.setValue(SALT_BUCKETS_KEY, Integer.toString(buckets));
+        descriptor.setValue(KEY_FORMAT_KEY, format.name());
+    }
+
+    public boolean isSalted() {
+        return buckets > 0;
+    }
+
+    public KeyFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * @return The number of salt buckets, 1 if the keys are not salted.
+     */
+    public int getBuckets() {
+        return Math.max(1, buckets);
+    }
+
+    /**
+     * @return The bucket the games of the given tourney are stored in.
+     */
+    public int bucket(int tourneyId) {
+        return isSalted() ? (tourneyId & Integer.MAX_VALUE) % buckets : 0;
+    }
+
+    /**
+     * @return The row key of a game.
+     */
+    public byte[] rowKey(int tourneyId, int gameId) {
+        if (format == KeyFormat.BINARY) {
+            return binaryKey(bucket(tourneyId), tourneyId, gameId, 0);
+        }
+        return asciiKey(bucket(tourneyId), pad(tourneyId) + pad(gameId));
+    }
+
+    /**
+     * @return The first row key of the given tourney.
+     */
+    public byte[] tourneyStart(int tourneyId) {
+        if (format == KeyFormat.BINARY) {
+            return binaryKey(bucket(tourneyId), tourneyId, Integer.MIN_VALUE, 0);
+        }
+        return asciiKey(bucket(tourneyId), pad(tourneyId) + "0000000000");
+    }
+
+    /**
+     * @return The row key after the last game of the given tourney, to be used as the stop row of a scan.
+     */
+    public byte[] tourneyStop(int tourneyId) {
+        if (format == KeyFormat.BINARY) {
+            // one zero byte after the largest game id sorts after every key of the tourney
+            return binaryKey(bucket(tourneyId), tourneyId, Integer.MAX_VALUE, 1);
+        }
+        return asciiKey(bucket(tourneyId), pad(tourneyId) + "9999999999");
+    }
+
+    /**
+     * Computes the key ranges holding all the games of the tourneys from firstTourneyId (included)
+     * to lastTourneyId (excluded). There is one range per bucket.
+     *
+     * @return The ranges as {startRow, stopRow} pairs.
+     */
+    public List<byte[][]> tourneyRanges(int firstTourneyId, int lastTourneyId) {
+        List<byte[][]> ranges = new ArrayList<>(getBuckets());
+        for (int bucket = 0; bucket < getBuckets(); bucket++) {
+            if (format == KeyFormat.BINARY) {
+                ranges.add(new byte[][]{binaryKey(bucket, firstTourneyId, Integer.MIN_VALUE, 0),
+                                        binaryKey(bucket, lastTourneyId, Integer.MIN_VALUE, 0)});
+            } else {
+                ranges.add(new byte[][]{asciiKey(bucket, pad(firstTourneyId) + "0000000000"),
+                                        asciiKey(bucket, pad(lastTourneyId) + "0000000000")});
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Computes the key ranges holding all the games of the given tourneys, in as few ranges as possible.
+     *
+     * The tourneys of every bucket are sorted, and a tourney joins the range of the previous one when at most maxGap
+     * tourney ids of the bucket lie between them. With a gap of 0, only tourneys following each other in their
+     * bucket share a range, so the ranges hold the games of the given tourneys and nothing else. A larger gap makes
+     * fewer, longer scans, which read the games of the tourneys in the gaps as well.
+     *
+     * @param tourneyIds The ids of the tourneys, in any order. Duplicates are ignored.
+     * @param maxGap     The number of tourney ids a range may skip over.
+     * @return The ranges as {startRow, stopRow} pairs, in key order.
+     */
+    public List<byte[][]> tourneyRanges(Collection<Integer> tourneyIds, int maxGap) {
+        // the order of the keys: by bucket, then by tourney id
+        List<Integer> sorted = new ArrayList<>(new TreeSet<>(tourneyIds));
+        Collections.sort(sorted, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int byBucket = Integer.compare(bucket(a), bucket(b));
+                return byBucket != 0 ? byBucket : Integer.compare(a, b);
+            }
+        });
+
+        List<byte[][]> ranges = new ArrayList<>();
+        int i = 0;
+        while (i < sorted.size()) {
+            int first = sorted.get(i);
+            int last = first;
+            // the tourneys of a bucket are getBuckets() ids apart
+            while (i + 1 < sorted.size() && bucket(sorted.get(i + 1)) == bucket(first)
+                    && ((long) sorted.get(i + 1) - last) / getBuckets() - 1 <= maxGap) {
+                last = sorted.get(++i);
+            }
+            ranges.add(new byte[][]{tourneyStart(first), tourneyStop(last)});
+            i++;
+        }
+        return ranges;
+    }
+
+    /**
+     * @return The tourney id of a row key.
+     */
+    public int tourneyId(byte[] row) {
+        int offset = isSalted() ? 1 : 0;
+        if (format == KeyFormat.BINARY) {
+            return RowKeyCodec.decodeTourneyId(row, offset);
+        }
+        return Integer.parseInt(Bytes.toString(row, offset, 10));
+    }
+
+    /**
+     * @return The game id of a row key.
+     */
+    public int gameId(byte[] row) {
+        int offset = isSalted() ? 1 : 0;
+        if (format == KeyFormat.BINARY) {
+            return RowKeyCodec.decodeGameId(row, offset);
+        }
+        return Integer.parseInt(Bytes.toString(row, offset + 10, 10));
+    }
+
+    /**
+     * @return The split keys putting every bucket in its own region, empty if the keys are not salted.
+     */
+    public List<byte[]> bucketSplits() {
+        List<byte[]> splits = new ArrayList<>();
+        for (int bucket = 1; bucket < buckets; bucket++) {
+            splits.add(new byte[]{(byte) bucket});
+        }
+        return splits;
+    }
+
+    private byte[] binaryKey(int bucket, int tourneyId, int gameId, int padding) {
+        int offset = isSalted() ? 1 : 0;
+        byte[] key = new byte[offset + RowKeyCodec.KEY_LENGTH + padding];
+        if (isSalted()) {
+            key[0] = (byte) bucket;
+        }
+        RowKeyCodec.encode(tourneyId, gameId, key, offset);
+        return key;
+    }
+
+    private byte[] asciiKey(int bucket, String key) {
+        byte[] bytes = Bytes.toBytes(key);
+        if (!isSalted()) {
+            return bytes;
+        }
+        byte[] salted = new byte[bytes.length + 1];
+        salted[0] = (byte) bucket;
+        System.arraycopy(bytes, 0, salted, 1, bytes.length);
+        return salted;
+    }
+
+    private static String pad(int id) {
+        return String.format("%010d", id);
+    }
+}
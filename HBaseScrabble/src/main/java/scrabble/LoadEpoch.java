@@ -0,0 +1,85 @@
+package scrabble;
+
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.HBaseAdmin;
+import org.apache.hadoop.hbase.client.HConnection;
+import org.apache.hadoop.hbase.client.HTableInterface;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.io.IOException;
+
+/**
+ * A counter of the changes made to the content of the "ScrabbleGames" table, so the clients caching query results
+ * can tell when they are outdated.
+ *
+ * The counter is a cell of the "ScrabbleMeta" table, incremented atomically by createTable and by every load.
+ * Unlike the other tables, "ScrabbleMeta" is never dropped: recreating it would restart the counter, and a client
+ * could see the same value before and after a change.
+ */
+public class LoadEpoch {
+    public static final String TABLE_NAME = "ScrabbleMeta";
+
+    // Column families
+    public static final byte[] META = Bytes.toBytes("Meta");
+
+    // Meta qualifiers
+    public static final byte[] EPOCH = Bytes.toBytes("loadEpoch");
+
+    private static final byte[] ROW = Bytes.toBytes(ScrabbleSchema.TABLE_NAME);
+
+    private final HConnection connection;
+
+    public LoadEpoch(HConnection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Creates the "ScrabbleMeta" table, unless it exists already.
+     *
+     * @throws IOException
+     */
+    public static void createTable(HBaseAdmin admin) throws IOException {
+        if (!admin.tableExists(TABLE_NAME)) {
+            HTableDescriptor meta = new HTableDescriptor(TableName.valueOf(TABLE_NAME));
+            meta.addFamily(new HColumnDescriptor(META));
+            admin.createTable(meta);
+        }
+    }
+
+    /**
+     * @return The current epoch, 0 if the content never changed.
+     * @throws IOException
+     */
+    public long read() throws IOException {
+        Get get = new Get(ROW);
+        get.addColumn(META, EPOCH);
+
+        HTableInterface table = connection.getTable(TABLE_NAME);
+        try {
+            Result result = table.get(get);
+            byte[] value = result.getValue(META, EPOCH);
+            return value == null ? 0 : Bytes.toLong(value);
+        } finally {
+            table.close();
+        }
+    }
+
+    /**
+     * Records a change of the content.
+     *
+     * @return The new epoch.
+     * @throws IOException
+     */
+    public long bump() throws IOException {
+        HTableInterface table = connection.getTable(TABLE_NAME);
+        try {
+            return table.incrementColumnValue(ROW, META, EPOCH, 1);
+        } finally {
+            table.close();
+        }
+    }
+}
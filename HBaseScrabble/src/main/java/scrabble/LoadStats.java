@@ -0,0 +1,83 @@
+package scrabble;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of a load into HBase, updated concurrently by the stages of the loader.
+ *
+ * The throughput is computed from the moment the stats are created until {@link #finish()} is called.
+ */
+public class LoadStats {
+    private final long startTime = System.nanoTime();
+    private volatile long endTime = -1;
+
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong rowsParsed = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong rowsSkipped = new AtomicLong();
+
+    public void addBytesRead(long bytes) {
+        bytesRead.addAndGet(bytes);
+    }
+
+    public void addRowsParsed(long rows) {
+        rowsParsed.addAndGet(rows);
+    }
+
+    /**
+     * @return The total number of rows written after adding the given ones.
+     */
+    public long addRowsWritten(long rows) {
+        return rowsWritten.addAndGet(rows);
+    }
+
+    public void addRowSkipped() {
+        rowsSkipped.incrementAndGet();
+    }
+
+    public void finish() {
+        endTime = System.nanoTime();
+    }
+
+    public boolean isFinished() {
+        return endTime >= 0;
+    }
+
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    public long getRowsParsed() {
+        return rowsParsed.get();
+    }
+
+    public long getRowsWritten() {
+        return rowsWritten.get();
+    }
+
+    public long getRowsSkipped() {
+        return rowsSkipped.get();
+    }
+
+    public double getElapsedSeconds() {
+        long end = endTime < 0 ? System.nanoTime() : endTime;
+        return (end - startTime) / 1000000000.0;
+    }
+
+    public double getRowsPerSecond() {
+        double seconds = getElapsedSeconds();
+        return seconds > 0 ? getRowsWritten() / seconds : 0;
+    }
+
+    public double getMegabytesPerSecond() {
+        double seconds = getElapsedSeconds();
+        return seconds > 0 ? getBytesRead() / (1024.0 * 1024.0) / seconds : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Loaded %d records (%d skipped) from %.1f MB in %.2f seconds: %.0f rows/s, %.2f MB/s",
+                getRowsWritten(), getRowsSkipped(), getBytesRead() / (1024.0 * 1024.0), getElapsedSeconds(),
+                getRowsPerSecond(), getMegabytesPerSecond());
+    }
+}
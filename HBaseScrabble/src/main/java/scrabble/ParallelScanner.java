@@ -0,0 +1,272 @@
+package scrabble;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.HConnection;
+import org.apache.hadoop.hbase.client.HTableInterface;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+import scrabble.metrics.Timer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a scan over several key ranges at once.
+ *
+ * The ranges are cut at the region boundaries of the table, so every sub-scan talks to a single region, and the
+ * sub-scans run concurrently on a bounded pool of threads. Each sub-scan is consumed by a {@link RangeScan}, and
+ * the partial results are returned in the key order of the sub-ranges, whatever order they completed in. Merging
+ * them is therefore deterministic.
+ *
+ * The tables are taken from a shared connection, so the sub-scans reuse its region locations and its sockets.
+ *
+ * The start keys of the regions are cached for a while. Stale boundaries only make the split less even, every
+ * key of the requested ranges is still scanned exactly once.
+ *
+ * The time of every sub-scan is recorded in a timer, and the sub-scans slower than "scrabble.scan.slow.ms" are
+ * printed with the range they scanned, which points at slow regions.
+ */
+public class ParallelScanner implements Closeable {
+    public static final String THREADS_KEY = "scrabble.scan.threads";
+    public static final String REGIONS_TTL_KEY = "scrabble.scan.regions.ttl.ms";
+    public static final String SLOW_SCAN_KEY = "scrabble.scan.slow.ms";
+
+    /**
+     * Consumes the results of one sub-range.
+     *
+     * @param <T> The type of the partial result.
+     */
+    public interface RangeScan<T> {
+        T scan(ResultScanner scanner) throws IOException;
+    }
+
+    private final HConnection connection;
+    private final ExecutorService pool;
+    private final long regionsTtl;
+    private final long slowScanNanos;
+    private final Timer subScans;
+
+    private final Map<String, byte[][]> startKeys = new HashMap<>();
+    private final Map<String, Long> startKeysTime = new HashMap<>();
+
+    /**
+     * @param config     The configuration of the scanner.
+     * @param connection The connection the tables are taken from. It is not closed by the scanner.
+     */
+    public ParallelScanner(Configuration config, HConnection connection) {
+        this(config, connection, new Timer());
+    }
+
+    /**
+     * @param config     The configuration of the scanner.
+     * @param connection The connection the tables are taken from. It is not closed by the scanner.
+     * @param subScans   Receives the time of every sub-scan.
+     */
+    public ParallelScanner(Configuration config, HConnection connection, Timer subScans) {
+        this.connection = connection;
+        this.subScans = subScans;
+        this.slowScanNanos = TimeUnit.MILLISECONDS.toNanos(config.getLong(SLOW_SCAN_KEY, 1000));
+        this.regionsTtl = config.getLong(REGIONS_TTL_KEY, 60000);
+        this.pool = Executors.newFixedThreadPool(Math.max(1, config.getInt(THREADS_KEY, 8)), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "scanner-" + count.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Scans the given ranges of a table in parallel.
+     *
+     * @param tableName The table to scan.
+     * @param scan      The template of the sub-scans: columns, filter, caching... Its start and stop rows are ignored.
+     * @param ranges    The key ranges to scan as {startRow, stopRow} pairs. An empty stop row means the end of the table.
+     * @param rangeScan Consumes the results of every sub-range.
+     * @return The partial results of the sub-ranges, in key order.
+     * @throws IOException
+     */
+    public <T> List<T> scan(String tableName, Scan scan, List<byte[][]> ranges, RangeScan<T> rangeScan)
+            throws IOException {
+        return scan(tableName, scan, ranges, rangeScan, new AtomicLong());
+    }
+
+    /**
+     * Scans the given ranges of a table in parallel, and counts the rows read.
+     *
+     * @param rowsRead Incremented with the number of rows every sub-range handed to its {@link RangeScan}.
+     * @see #scan(String, Scan, List, RangeScan)
+     */
+    public <T> List<T> scan(final String tableName, Scan scan, List<byte[][]> ranges, final RangeScan<T> rangeScan,
+                            final AtomicLong rowsRead) throws IOException {
+        List<Future<T>> futures = new ArrayList<>();
+        for (final byte[][] range : split(tableName, ranges)) {
+            final Scan subScan = new Scan(scan);
+            subScan.setStartRow(range[0]);
+            subScan.setStopRow(range[1]);
+
+            futures.add(pool.submit(new Callable<T>() {
+                @Override
+                public T call() throws IOException {
+                    long start = System.nanoTime();
+                    CountingScanner rs;
+                    HTableInterface table = connection.getTable(tableName);
+                    try {
+                        rs = new CountingScanner(table.getScanner(subScan));
+                        try {
+                            return rangeScan.scan(rs);
+                        } finally {
+                            rs.close();
+                            rowsRead.addAndGet(rs.rows);
+                        }
+                    } finally {
+                        table.close();
+                        long elapsed = System.nanoTime() - start;
+                        subScans.record(elapsed);
+                        if (elapsed > slowScanNanos) {
+                            System.out.println("Slow scan of " + tableName + " from " + Bytes.toStringBinary(range[0])
+                                    + " to " + Bytes.toStringBinary(range[1]) + ": "
+                                    + TimeUnit.NANOSECONDS.toMillis(elapsed) + " ms");
+                        }
+                    }
+                }
+            }));
+        }
+
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            cancel(futures);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while scanning " + tableName);
+        } catch (ExecutionException e) {
+            cancel(futures);
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Scanning " + tableName + " failed", e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * @return The whole key space of a table, as a single range.
+     */
+    public static List<byte[][]> wholeTable() {
+        return Collections.singletonList(new byte[][]{HConstants.EMPTY_START_ROW, HConstants.EMPTY_END_ROW});
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Cuts the ranges at the start keys of the regions of the table.
+     */
+    List<byte[][]> split(String tableName, List<byte[][]> ranges) throws IOException {
+        byte[][] regions = regionStartKeys(tableName);
+
+        List<byte[][]> subRanges = new ArrayList<>();
+        for (byte[][] range : ranges) {
+            byte[] start = range[0];
+            byte[] stop = range[1];
+            for (byte[] regionStart : regions) {
+                if (regionStart.length > 0 && Bytes.compareTo(regionStart, start) > 0
+                        && (stop.length == 0 || Bytes.compareTo(regionStart, stop) < 0)) {
+                    subRanges.add(new byte[][]{start, regionStart});
+                    start = regionStart;
+                }
+            }
+            subRanges.add(new byte[][]{start, stop});
+        }
+        return subRanges;
+    }
+
+    private synchronized byte[][] regionStartKeys(String tableName) throws IOException {
+        Long time = startKeysTime.get(tableName);
+        if (time == null || System.currentTimeMillis() - time > regionsTtl) {
+            List<HRegionLocation> locations = connection.locateRegions(TableName.valueOf(tableName));
+            byte[][] keys = new byte[locations.size()][];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = locations.get(i).getRegionInfo().getStartKey();
+            }
+            Arrays.sort(keys, Bytes.BYTES_COMPARATOR);
+            startKeys.put(tableName, keys);
+            startKeysTime.put(tableName, System.currentTimeMillis());
+        }
+        return startKeys.get(tableName);
+    }
+
+    /**
+     * Counts the rows handed out by a scanner.
+     */
+    private static class CountingScanner implements ResultScanner {
+        private final ResultScanner scanner;
+        private long rows;
+
+        CountingScanner(ResultScanner scanner) {
+            this.scanner = scanner;
+        }
+
+        @Override
+        public Result next() throws IOException {
+            Result result = scanner.next();
+            if (result != null) {
+                rows++;
+            }
+            return result;
+        }
+
+        @Override
+        public Result[] next(int nbRows) throws IOException {
+            Result[] results = scanner.next(nbRows);
+            rows += results.length;
+            return results;
+        }
+
+        @Override
+        public void close() {
+            scanner.close();
+        }
+
+        @Override
+        public Iterator<Result> iterator() {
+            final Iterator<Result> results = scanner.iterator();
+            return new Iterator<Result>() {
+                @Override
+                public boolean hasNext() {
+                    return results.hasNext();
+                }
+
+                @Override
+                public Result next() {
+                    rows++;
+                    return results.next();
+                }
+            };
+        }
+    }
+
+    private static void cancel(List<? extends Future<?>> futures) {
+        for (Future<?> future : futures) {
+            future.cancel(true);
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package scrabble;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.client.Put;
+import scrabble.metrics.LoadMetrics;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Loads "scrabble_games.csv" into HBase with a three stage pipeline, so that reading, parsing and
+ * writing overlap instead of taking turns:
+ *
+ * 1. Reader: the calling thread reads the file and hands chunks of lines to the parsers.
+ * 2. Parsers: a pool of threads turns every line into Puts, see {@link GameRowMapper}.
+ * 3. Writer: a single thread hands the Puts to a {@link PutSink}, which either buffers them for the
+ *    region servers ({@link TablePutSink}) or sorts them into HFiles ({@link HFilePutSink}).
+ *
+ * Stages are connected by bounded queues. A stage blocks when the next one falls behind, so the heap
+ * only ever holds a few chunks of the file no matter how big it is.
+ *
+ * The time every chunk spends in each stage is recorded in the {@link LoadMetrics}.
+ */
+public class PipelinedLoader {
+    public static final String PARSERS_KEY = "scrabble.load.parsers";
+    public static final String CHUNK_LINES_KEY = "scrabble.load.chunk.lines";
+    public static final String QUEUE_CHUNKS_KEY = "scrabble.load.queue.chunks";
+
+    private static final long PROGRESS_INTERVAL = 100000;
+    private static final long POLL_MILLIS = 100;
+
+    // Markers telling the next stage that no more input will come. Compared by identity.
+    private static final List<String> END_OF_LINES = new ArrayList<>(0);
+    private static final PutBatch END_OF_PUTS = new PutBatch();
+
+    private final GameRowMapper mapper;
+    private final LoadMetrics metrics;
+
+    private final int parsers;
+    private final int chunkLines;
+    private final int queueChunks;
+
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    /**
+     * @param config The configuration the sizes of the pipeline are read from.
+     * @param mapper Turns the lines into Puts.
+     */
+    public PipelinedLoader(Configuration config, GameRowMapper mapper) {
+        this(config, mapper, new LoadMetrics());
+    }
+
+    /**
+     * @param config  The configuration the sizes of the pipeline are read from.
+     * @param mapper  Turns the lines into Puts.
+     * @param metrics Receives the timings of the stages and the counters of the loads.
+     */
+    public PipelinedLoader(Configuration config, GameRowMapper mapper, LoadMetrics metrics) {
+        this.mapper = mapper;
+        this.metrics = metrics;
+        this.parsers = Math.max(1, config.getInt(PARSERS_KEY, Runtime.getRuntime().availableProcessors()));
+        this.chunkLines = Math.max(1, config.getInt(CHUNK_LINES_KEY, 1000));
+        this.queueChunks = Math.max(1, config.getInt(QUEUE_CHUNKS_KEY, 4 * parsers));
+    }
+
+    /**
+     * Loads all the games of the given csv file. The first line is expected to be the header.
+     *
+     * The sink is flushed once all the games have been handed to it, but it is not closed.
+     *
+     * @param filePath The path of the csv file.
+     * @param sink     Where the Puts of the games are written to.
+     * @return The counters of the load.
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public LoadStats load(String filePath, final PutSink sink) throws IOException, InterruptedException {
+        failure.set(null);
+        final LoadStats stats = new LoadStats();
+        metrics.started(stats);
+        final BlockingQueue<List<String>> lines = new ArrayBlockingQueue<>(queueChunks);
+        final BlockingQueue<PutBatch> puts = new ArrayBlockingQueue<>(queueChunks);
+
+        ExecutorService pool = Executors.newFixedThreadPool(parsers + 1, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "loader-" + count.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+        try {
+            pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        write(puts, sink, stats);
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            });
+            for (int i = 0; i < parsers; i++) {
+                pool.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            parse(lines, puts, stats);
+                        } catch (Throwable t) {
+                            failure.compareAndSet(null, t);
+                        }
+                    }
+                });
+            }
+
+            try {
+                read(filePath, lines, stats);
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            }
+
+            pool.shutdown();
+            while (!pool.awaitTermination(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                // the stages stop by themselves once they see the end markers or a failure
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Throwable t = failure.get();
+        if (t instanceof IOException) {
+            throw (IOException) t;
+        } else if (t instanceof InterruptedException) {
+            throw (InterruptedException) t;
+        } else if (t != null) {
+            throw new IOException("Loading " + filePath + " failed", t);
+        }
+
+        stats.finish();
+        metrics.finished(stats);
+        return stats;
+    }
+
+    /**
+     * Reader stage: reads the file in chunks of lines and ends with one end marker per parser.
+     */
+    private void read(String filePath, BlockingQueue<List<String>> lines, LoadStats stats)
+            throws IOException, InterruptedException {
+        CountingInputStream in = new CountingInputStream(new FileInputStream(filePath));
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16)) {
+            // skip header
+            br.readLine();
+
+            List<String> chunk = new ArrayList<>(chunkLines);
+            String line;
+            while ((line = br.readLine()) != null) {
+                chunk.add(line);
+                if (chunk.size() == chunkLines) {
+                    handOver(lines, chunk);
+                    stats.addBytesRead(in.drain());
+                    chunk = new ArrayList<>(chunkLines);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                handOver(lines, chunk);
+            }
+            stats.addBytesRead(in.drain());
+        } finally {
+            for (int i = 0; i < parsers; i++) {
+                handOver(lines, END_OF_LINES);
+            }
+        }
+    }
+
+    /**
+     * Parser stage: turns chunks of lines into batches of Puts. Lines that do not hold a valid game are skipped.
+     */
+    private void parse(BlockingQueue<List<String>> lines, BlockingQueue<PutBatch> puts, LoadStats stats)
+            throws IOException, InterruptedException {
+        String[] fields = new String[ScrabbleSchema.CSV_COLUMNS];
+        try {
+            List<String> chunk;
+            while ((chunk = takeFrom(lines)) != END_OF_LINES) {
+                PutBatch batch = new PutBatch();
+                long parseNanos = 0;
+                long buildNanos = 0;
+                for (String line : chunk) {
+                    long start = System.nanoTime();
+                    int count = GameRowMapper.split(line, fields);
+                    long split = System.nanoTime();
+                    parseNanos += split - start;
+                    if (count < ScrabbleSchema.CSV_COLUMNS) {
+                        stats.addRowSkipped();
+                        continue;
+                    }
+                    try {
+                        mapper.map(fields, batch);
+                    } catch (NumberFormatException e) {
+                        stats.addRowSkipped();
+                    }
+                    buildNanos += System.nanoTime() - split;
+                }
+                metrics.getParse().record(parseNanos);
+                metrics.getBuild().record(buildNanos);
+                stats.addRowsParsed(batch.getGames());
+                if (!batch.isEmpty()) {
+                    handOver(puts, batch);
+                }
+            }
+        } finally {
+            handOver(puts, END_OF_PUTS);
+        }
+    }
+
+    /**
+     * Writer stage: hands the Puts to the sink until all parsers are done, then flushes it.
+     */
+    private void write(BlockingQueue<PutBatch> puts, PutSink sink, LoadStats stats)
+            throws IOException, InterruptedException {
+        int finishedParsers = 0;
+        while (finishedParsers < parsers) {
+            PutBatch batch = takeFrom(puts);
+            if (batch == END_OF_PUTS) {
+                finishedParsers++;
+                continue;
+            }
+            long start = System.nanoTime();
+            for (Map.Entry<String, List<Put>> table : batch.getPuts().entrySet()) {
+                sink.write(table.getKey(), table.getValue());
+            }
+            metrics.getFlush().recordSince(start);
+
+            long written = stats.addRowsWritten(batch.getGames());
+            if (written / PROGRESS_INTERVAL != (written - batch.getGames()) / PROGRESS_INTERVAL) {
+                System.out.println("Loaded " + (written / PROGRESS_INTERVAL * PROGRESS_INTERVAL) + " Records");
+            }
+        }
+        sink.flush();
+    }
+
+    /**
+     * Puts the item into the queue, waiting while it is full unless another stage failed in the meantime.
+     */
+    private <T> void handOver(BlockingQueue<T> queue, T item) throws IOException, InterruptedException {
+        while (!queue.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            checkFailure();
+        }
+    }
+
+    /**
+     * Takes the next item from the queue, waiting while it is empty unless another stage failed in the meantime.
+     */
+    private <T> T takeFrom(BlockingQueue<T> queue) throws IOException, InterruptedException {
+        T item;
+        while ((item = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+            checkFailure();
+        }
+        return item;
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure.get() != null) {
+            throw new IOException("Aborted because another stage of the load failed", failure.get());
+        }
+    }
+
+    /**
+     * Counts the bytes read from the file, so the throughput can be reported in MB/s.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        /**
+         * @return The bytes read since the last call.
+         */
+        long drain() {
+            long n = count;
+            count = 0;
+            return n;
+        }
+    }
+}
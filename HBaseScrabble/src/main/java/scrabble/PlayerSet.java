@@ -0,0 +1,120 @@
+package scrabble;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The running intersection of query2: the players repeated in every tourney seen so far.
+ *
+ * The first set retained seeds it, the following ones are intersected into it. The players are kept as a sorted
+ * array of ints and intersected in place by merging, so a retain allocates nothing and takes time proportional to the
+ * sizes of the two sets, whatever the range of the player ids. Once the intersection is empty every retain is
+ * free, and {@link #isEmpty()} tells the scans they can stop.
+ */
+public class PlayerSet {
+    private int[] players;
+    private int size;
+    private boolean seeded = false;
+
+    /**
+     * Intersects the set with sorted players.
+     *
+     * @param sorted The players, sorted.
+     * @param length The number of players in the array.
+     */
+    public void retain(int[] sorted, int length) {
+        if (!seeded) {
+            players = Arrays.copyOf(sorted, length);
+            size = length;
+            seeded = true;
+            return;
+        }
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size && j < length) {
+            if (players[i] < sorted[j]) {
+                i++;
+            } else if (players[i] > sorted[j]) {
+                j++;
+            } else {
+                players[count++] = players[i];
+                i++;
+                j++;
+            }
+        }
+        size = count;
+    }
+
+    /**
+     * Intersects the set with sorted players encoded as 4 byte ints, like the "repeated" column of the
+     * tourney aggregates.
+     */
+    public void retainEncoded(byte[] bytes, int offset, int length) {
+        int n = length / 4;
+        if (!seeded) {
+            players = new int[n];
+            for (int j = 0; j < n; j++) {
+                players[j] = RowKeyCodec.decodeInt(bytes, offset + j * 4);
+            }
+            size = n;
+            seeded = true;
+            return;
+        }
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size && j < n) {
+            int player = RowKeyCodec.decodeInt(bytes, offset + j * 4);
+            if (players[i] < player) {
+                i++;
+            } else if (players[i] > player) {
+                j++;
+            } else {
+                players[count++] = players[i];
+                i++;
+                j++;
+            }
+        }
+        size = count;
+    }
+
+    /**
+     * Intersects the set with another one. A set nothing was retained into does not change it.
+     */
+    public void retain(PlayerSet other) {
+        if (other.seeded) {
+            retain(other.players, other.size);
+        }
+    }
+
+    /**
+     * @return Whether a set has been retained yet. Until then the set holds no player.
+     */
+    public boolean isSeeded() {
+        return seeded;
+    }
+
+    /**
+     * @return Whether the intersection is known to be empty. No retain can change that.
+     */
+    public boolean isEmpty() {
+        return seeded && size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The players as strings, in increasing order.
+     */
+    public List<String> toStrings() {
+        List<String> ids = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ids.add(Integer.toString(players[i]));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,53 @@
+package scrabble;
+
+import org.apache.hadoop.hbase.client.Put;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The Puts produced for a chunk of games, grouped by the table they go to.
+ *
+ * Besides the "ScrabbleGames" table, a game can produce Puts for the tables that are derived from it,
+ * like the {@link WinnerIndex}.
+ */
+public class PutBatch {
+    private final Map<String, List<Put>> puts = new LinkedHashMap<>();
+    private int games = 0;
+
+    public void add(String tableName, Put put) {
+        List<Put> table = puts.get(tableName);
+        if (table == null) {
+            table = new ArrayList<>();
+            puts.put(tableName, table);
+        }
+        table.add(put);
+    }
+
+    /**
+     * Counts a game whose Puts have been added to the batch.
+     */
+    public void addGame() {
+        games++;
+    }
+
+    /**
+     * @return The number of games in the batch.
+     */
+    public int getGames() {
+        return games;
+    }
+
+    /**
+     * @return The Puts of every table.
+     */
+    public Map<String, List<Put>> getPuts() {
+        return puts;
+    }
+
+    public boolean isEmpty() {
+        return puts.isEmpty();
+    }
+}
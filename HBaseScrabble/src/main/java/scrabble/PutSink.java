@@ -0,0 +1,25 @@
+package scrabble;
+
+import org.apache.hadoop.hbase.client.Put;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Destination of the Puts produced by a {@link PipelinedLoader}, for any of the tables a load writes to.
+ *
+ * A sink is only ever used by the writer thread of the loader, so implementations do not need to be thread safe.
+ */
+public interface PutSink extends Closeable {
+
+    /**
+     * Accepts a batch of Puts for a table. Implementations are free to buffer them until {@link #flush()}.
+     */
+    void write(String tableName, List<Put> puts) throws IOException;
+
+    /**
+     * Makes sure every Put accepted so far has been written.
+     */
+    void flush() throws IOException;
+}
@@ -0,0 +1,253 @@
+package scrabble;
+
+import org.apache.hadoop.conf.Configuration;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the results of the queries in front of another implementation of them.
+ *
+ * The results only change when the table does, so they are kept until one of these happens:
+ * - The {@link LoadEpoch} changes. It is polled in the background, and the whole cache is dropped when a load or
+ *   createTable bumped it.
+ * - They are older than the time to live. This bounds how long a result can be served after a change of the table
+ *   that did not go through the loaders.
+ * - The cache is full, and they are the least recently used results.
+ *
+ * A query missing the cache runs against the table. Concurrent misses of the same query all run it, and a result
+ * computed while the epoch changed is not kept, since it may have been read from the old content.
+ *
+ * A change of the epoch may also come from a table recreated with another key layout or cell format, so a
+ * {@link Listener} is told of every invalidation, to drop whatever it read from the old table. With a capacity of 0
+ * entries no result is kept, but the epoch is still followed for the listener.
+ */
+public class QueryCache implements ScrabbleQueries, Closeable {
+    public static final String ENTRIES_KEY = "scrabble.cache.entries";
+    public static final String TTL_KEY = "scrabble.cache.ttl.ms";
+    public static final String EPOCH_POLL_KEY = "scrabble.cache.epoch.poll.ms";
+
+    /**
+     * Told when the cached results are dropped.
+     */
+    public interface Listener {
+        /**
+         * Called before the results are dropped, so the queries run afterwards see what the listener reset.
+         */
+        void invalidated();
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final long expires;
+
+        private Entry(Object value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+
+    private final ScrabbleQueries queries;
+    private final LoadEpoch epoch;
+    private final Listener listener;
+    private final int maxEntries;
+    private final long ttl;
+    private final LinkedHashMap<List<String>, Entry> entries;
+    private final ScheduledExecutorService poller;
+
+    // changed on every invalidation, so the results computed across one are not kept
+    private long generation = 0;
+    private long lastEpoch;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * @param config  The configuration of the cache.
+     * @param queries The queries whose results are cached.
+     * @param epoch   The epoch of the content of the table.
+     * @throws IOException If the epoch cannot be read.
+     */
+    public QueryCache(Configuration config, ScrabbleQueries queries, LoadEpoch epoch) throws IOException {
+        this(config, queries, epoch, null);
+    }
+
+    /**
+     * @param config   The configuration of the cache.
+     * @param queries  The queries whose results are cached.
+     * @param epoch    The epoch of the content of the table.
+     * @param listener Told of every invalidation, null if none.
+     * @throws IOException If the epoch cannot be read.
+     */
+    public QueryCache(Configuration config, ScrabbleQueries queries, LoadEpoch epoch, Listener listener)
+            throws IOException {
+        this.queries = queries;
+        this.epoch = epoch;
+        this.listener = listener;
+        this.ttl = config.getLong(TTL_KEY, 10 * 60 * 1000);
+        this.lastEpoch = epoch.read();
+
+        this.maxEntries = Math.max(0, config.getInt(ENTRIES_KEY, 10000));
+        // in access order, the eldest entry is the least recently used one
+        this.entries = new LinkedHashMap<List<String>, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<String>, Entry> eldest) {
+                if (size() > maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        this.poller = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "cache-epoch-poller");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        long pollInterval = Math.max(1, config.getLong(EPOCH_POLL_KEY, 1000));
+        poller.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                pollEpoch();
+            }
+        }, pollInterval, pollInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public List<String> query1(final String tourneyid, final String winnername) throws IOException {
+        return get(Arrays.asList("query1", tourneyid, winnername), new Query<List<String>>() {
+            @Override
+            public List<String> run() throws IOException {
+                return Collections.unmodifiableList(queries.query1(tourneyid, winnername));
+            }
+        });
+    }
+
+    @Override
+    public List<String> query2(final String firsttourneyid, final String lasttourneyid) throws IOException {
+        return get(Arrays.asList("query2", firsttourneyid, lasttourneyid), new Query<List<String>>() {
+            @Override
+            public List<String> run() throws IOException {
+                return Collections.unmodifiableList(queries.query2(firsttourneyid, lasttourneyid));
+            }
+        });
+    }
+
+    @Override
+    public List<String> query3(final String tourneyid) throws IOException {
+        return get(Arrays.asList("query3", tourneyid), new Query<List<String>>() {
+            @Override
+            public List<String> run() throws IOException {
+                return Collections.unmodifiableList(queries.query3(tourneyid));
+            }
+        });
+    }
+
+    @Override
+    public long countRecords() throws IOException {
+        return get(Collections.singletonList("countRecords"), new Query<Long>() {
+            @Override
+            public Long run() throws IOException {
+                return queries.countRecords();
+            }
+        });
+    }
+
+    /**
+     * Drops all the cached results.
+     */
+    public synchronized void invalidate() {
+        if (listener != null) {
+            listener.invalidated();
+        }
+        entries.clear();
+        generation++;
+        invalidations.incrementAndGet();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public String toString() {
+        long h = hits.get();
+        long m = misses.get();
+        return String.format("%d cached results, %d hits, %d misses (%.1f%% hits), %d evictions, %d invalidations",
+                             size(), h, m, h + m == 0 ? 0.0 : 100.0 * h / (h + m), evictions.get(),
+                             invalidations.get());
+    }
+
+    @Override
+    public void close() {
+        poller.shutdownNow();
+    }
+
+    private interface Query<T> {
+        T run() throws IOException;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T get(List<String> key, Query<T> query) throws IOException {
+        long startGeneration;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expires > System.currentTimeMillis()) {
+                hits.incrementAndGet();
+                return (T) entry.value;
+            }
+            startGeneration = generation;
+        }
+
+        misses.incrementAndGet();
+        T value = query.run();
+
+        synchronized (this) {
+            if (generation == startGeneration && maxEntries > 0) {
+                entries.put(key, new Entry(value, System.currentTimeMillis() + ttl));
+            }
+        }
+        return value;
+    }
+
+    private void pollEpoch() {
+        try {
+            long current = epoch.read();
+            if (current != lastEpoch) {
+                lastEpoch = current;
+                invalidate();
+            }
+        } catch (IOException e) {
+            // the cached results are still bounded by their time to live
+            System.out.println("Could not read the load epoch: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package scrabble;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.hadoop.conf.Configuration;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the queries over HTTP, so a client pays for the connection to the cluster once instead of on every call.
+ *
+ * Endpoints, answered with one id per line in text/plain:
+ * - GET /query1?tourneyid=...&winnername=...
+ * - GET /query2?firsttourneyid=...&lasttourneyid=...
+ * - GET /query3?tourneyid=...
+ * - GET /countRecords
+ * - GET /cacheStats, the metrics of the {@link QueryCache} when the queries are cached
+ *
+ * Missing or malformed parameters are answered with 400, failed queries with 500. The requests are handled
+ * concurrently by a fixed pool of threads.
+ */
+public class QueryServer {
+    public static final String THREADS_KEY = "scrabble.serve.threads";
+
+    private final ScrabbleQueries queries;
+    private final int threads;
+    private HttpServer server;
+    private ExecutorService pool;
+
+    public QueryServer(Configuration config, ScrabbleQueries queries) {
+        this.queries = queries;
+        this.threads = Math.max(1, config.getInt(THREADS_KEY, 16));
+    }
+
+    /**
+     * Starts serving on the given port, on all the interfaces.
+     *
+     * @throws IOException If the port cannot be bound.
+     */
+    public void start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/query1", new QueryHandler() {
+            @Override
+            Object answer(Map<String, String> params) throws IOException {
+                return queries.query1(param(params, "tourneyid"), param(params, "winnername"));
+            }
+        });
+        server.createContext("/query2", new QueryHandler() {
+            @Override
+            Object answer(Map<String, String> params) throws IOException {
+                return queries.query2(param(params, "firsttourneyid"), param(params, "lasttourneyid"));
+            }
+        });
+        server.createContext("/query3", new QueryHandler() {
+            @Override
+            Object answer(Map<String, String> params) throws IOException {
+                return queries.query3(param(params, "tourneyid"));
+            }
+        });
+        server.createContext("/countRecords", new QueryHandler() {
+            @Override
+            Object answer(Map<String, String> params) throws IOException {
+                return queries.countRecords();
+            }
+        });
+        if (queries instanceof QueryCache) {
+            server.createContext("/cacheStats", new QueryHandler() {
+                @Override
+                Object answer(Map<String, String> params) {
+                    return queries;
+                }
+            });
+        }
+
+        pool = Executors.newFixedThreadPool(threads);
+        server.setExecutor(pool);
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests, and waits up to a second for the running ones.
+     */
+    public void stop() {
+        if (server != null) {
+            server.stop(1);
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Answers a query, or the error it failed with.
+     */
+    private abstract static class QueryHandler implements HttpHandler {
+
+        /**
+         * @return A list of ids, or a single value.
+         */
+        abstract Object answer(Map<String, String> params) throws IOException;
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            int status = 200;
+            StringBuilder body = new StringBuilder();
+            try {
+                if (!"GET".equals(exchange.getRequestMethod())) {
+                    status = 405;
+                    body.append("Only GET is supported\n");
+                } else {
+                    Object answer = answer(parse(exchange.getRequestURI().getRawQuery()));
+                    if (answer instanceof List) {
+                        for (Object id : (List<?>) answer) {
+                            body.append(id).append('\n');
+                        }
+                    } else {
+                        body.append(answer).append('\n');
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                // missing parameters, and ids which are not numbers
+                status = 400;
+                body.append(e.getMessage()).append('\n');
+            } catch (IOException e) {
+                status = 500;
+                body.append(e.getMessage()).append('\n');
+            } catch (RuntimeException e) {
+                // the client gets the error instead of a connection left hanging, and the server keeps serving
+                status = 500;
+                body.append(e).append('\n');
+            }
+
+            try {
+                byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+                exchange.sendResponseHeaders(status, bytes.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+
+    private static String param(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Missing parameter " + name);
+        }
+        return value;
+    }
+
+    private static Map<String, String> parse(String query) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<>();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"),
+                           URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+            }
+        }
+        return params;
+    }
+}
@@ -0,0 +1,133 @@
+package scrabble;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Computes query2 from the games themselves, as a reduce over the sub-ranges of a {@link ParallelScanner}.
+ *
+ * Every sub-range is folded into a {@link Partial}. The tourneys entirely inside the sub-range are complete, so
+ * their repeated players are intersected right away. The first and the last tourney of the sub-range may continue
+ * in the neighbouring sub-ranges though, when a region boundary falls in the middle of a tourney. For these only
+ * the number of games of every player is kept, and {@link #reduce(List)} adds up the counts of the same tourney
+ * before intersecting it with the rest.
+ *
+ * The player ids are decoded from the bytes of the cells and counted in an {@link IntCounter}, which is reused from
+ * one tourney to the next, so folding the games allocates nothing per game.
+ */
+public final class RepeatedPlayers {
+
+    /**
+     * The players of the games of one sub-range.
+     */
+    public static final class Partial {
+        // intersection of the repeated players of the inner tourneys
+        private final PlayerSet inner = new PlayerSet();
+        private int firstTourney;
+        private IntCounter first;
+        private int lastTourney;
+        private IntCounter last;
+    }
+
+    private RepeatedPlayers() {
+    }
+
+    /**
+     * Folds the games returned by a scanner into a partial result.
+     *
+     * The scanner has to return only the id columns of the players, see {@link ScanProfile#QUERY2_GAMES}. It is not
+     * read to the end once the inner tourneys have no player in common, since the result is then known to be empty.
+     *
+     * @param rs     The scanner over one sub-range of the games.
+     * @param layout The layout of the row keys, to read the tourney ids from.
+     * @param codec  The format of the cells, to read the player ids from.
+     * @return The partial result of the sub-range.
+     * @throws IOException
+     */
+    public static Partial scan(ResultScanner rs, KeyLayout layout, GameCodec codec) throws IOException {
+        Partial partial = new Partial();
+        IntCounter current = new IntCounter();
+        int currentTourney = 0;
+        int tourneys = 0;
+
+        for (Result result : rs) {
+            // The tourney id is decoded from the row key, no need to read the Game:tourneyid cell
+            int tourney = layout.tourneyId(result.getRow());
+            if (tourneys == 0 || tourney != currentTourney) {
+                if (tourneys == 1) {
+                    // kept for the reduce, the next tourneys get a counter of their own
+                    partial.firstTourney = currentTourney;
+                    partial.first = current;
+                    current = new IntCounter();
+                } else if (tourneys > 1) {
+                    // neither the first nor the last tourney of the sub-range, so it is complete
+                    int[] repeated = current.repeated();
+                    partial.inner.retain(repeated, repeated.length);
+                    current.clear();
+                    if (partial.inner.isEmpty()) {
+                        return partial;
+                    }
+                }
+                currentTourney = tourney;
+                tourneys++;
+            }
+            for (Cell cell : result.rawCells()) {
+                if (codec.contains(cell, ScrabbleSchema.ID)) {
+                    current.increment(codec.getInt(cell, ScrabbleSchema.ID));
+                }
+            }
+        }
+
+        if (tourneys == 1) {
+            partial.firstTourney = currentTourney;
+            partial.first = current;
+        } else if (tourneys > 1) {
+            partial.lastTourney = currentTourney;
+            partial.last = current;
+        }
+        return partial;
+    }
+
+    /**
+     * Merges the partial results of all the sub-ranges.
+     *
+     * @return The players repeated in every tourney. It is not seeded if no tourney was seen.
+     */
+    public static PlayerSet reduce(List<Partial> partials) {
+        PlayerSet result = new PlayerSet();
+
+        // the tourneys cut by a region boundary are only complete once their counts are added up
+        Map<Integer, IntCounter> edges = new TreeMap<>();
+        for (Partial partial : partials) {
+            result.retain(partial.inner);
+            merge(edges, partial.firstTourney, partial.first);
+            merge(edges, partial.lastTourney, partial.last);
+        }
+        for (IntCounter counts : edges.values()) {
+            if (result.isEmpty()) {
+                break;
+            }
+            int[] repeated = counts.repeated();
+            result.retain(repeated, repeated.length);
+        }
+        return result;
+    }
+
+    private static void merge(Map<Integer, IntCounter> edges, int tourney, IntCounter counts) {
+        if (counts == null) {
+            return;
+        }
+        IntCounter merged = edges.get(tourney);
+        if (merged == null) {
+            edges.put(tourney, counts);
+        } else {
+            merged.addAll(counts);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package scrabble;
+
+/**
+ * Encodes the (tourneyid, gameid) pair of a game into an 8 byte row key and back.
+ *
+ * Both ids are written as fixed width big-endian ints with the sign bit flipped, so the unsigned byte
+ * order HBase sorts row keys by is the same as the numeric order of the ids, negative ones included.
+ * Compared to the 20 character ASCII key every cell stores 12 bytes less, which shrinks the block cache
+ * footprint, the block indexes and what is sent over the network.
+ *
+ * The methods work on caller supplied buffers and do not allocate.
+ */
+public final class RowKeyCodec {
+    public static final int KEY_LENGTH = 8;
+
+    private RowKeyCodec() {
+    }
+
+    /**
+     * Writes the key of a game into the buffer.
+     *
+     * @param tourneyId The id of the tournament.
+     * @param gameId    The id of the game.
+     * @param buffer    The buffer receiving the key.
+     * @param offset    Where the key starts in the buffer. KEY_LENGTH bytes are written from there.
+     */
+    public static void encode(int tourneyId, int gameId, byte[] buffer, int offset) {
+        encodeInt(tourneyId, buffer, offset);
+        encodeInt(gameId, buffer, offset + 4);
+    }
+
+    /**
+     * @return The tourney id of the key starting at the given offset.
+     */
+    public static int decodeTourneyId(byte[] buffer, int offset) {
+        return decodeInt(buffer, offset);
+    }
+
+    /**
+     * @return The game id of the key starting at the given offset.
+     */
+    public static int decodeGameId(byte[] buffer, int offset) {
+        return decodeInt(buffer, offset + 4);
+    }
+
+    /**
+     * Writes a single id in 4 bytes, with the same sort order preserving encoding as the keys.
+     */
+    public static void encodeInt(int value, byte[] buffer, int offset) {
+        int flipped = value ^ Integer.MIN_VALUE;
+        buffer[offset] = (byte) (flipped >>> 24);
+        buffer[offset + 1] = (byte) (flipped >>> 16);
+        buffer[offset + 2] = (byte) (flipped >>> 8);
+        buffer[offset + 3] = (byte) flipped;
+    }
+
+    /**
+     * @return The id written by {@link #encodeInt(int, byte[], int)} at the given offset.
+     */
+    public static int decodeInt(byte[] buffer, int offset) {
+        int flipped = (buffer[offset] & 0xff) << 24
+                | (buffer[offset + 1] & 0xff) << 16
+                | (buffer[offset + 2] & 0xff) << 8
+                | (buffer[offset + 3] & 0xff);
+        return flipped ^ Integer.MIN_VALUE;
+    }
+}
@@ -0,0 +1,162 @@
+package scrabble;
+
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.FirstKeyOnlyFilter;
+import org.apache.hadoop.hbase.filter.KeyOnlyFilter;
+import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.util.List;
+
+/**
+ * The scans run by the queries, each one declaring what it reads and how.
+ *
+ * A profile lists the only columns its query needs, so the region servers do not send the other cells of the rows.
+ * The columns of the games are mapped to the cells holding them in the format of the table, see {@link GameCodec}.
+ * When a query filters on the value of a column, that column has to be one of them: a SingleColumnValueFilter only
+ * sees the columns selected by the scan, and rows missing the column are dropped instead of being let through.
+ *
+ * The caching is the number of rows fetched per RPC, sized from the width of the projected rows. The block cache is
+ * only populated by the scans of hot, small ranges. Long scans read their blocks once and would evict the blocks the
+ * point queries need.
+ */
+public enum ScanProfile {
+    /**
+     * Counts the rows: only the first key of every row is returned, without its value.
+     */
+    COUNT(5000, false, false),
+
+    /**
+     * Query 1 on tables without the winner index: the opponents of a winner, filtered on the winner name.
+     */
+    QUERY1(1000, true, true,
+           new byte[][]{ScrabbleSchema.WINNER, ScrabbleSchema.NAME},
+           new byte[][]{ScrabbleSchema.LOSER, ScrabbleSchema.ID}),
+
+    /**
+     * Query 2 on tables without aggregates: the two players of every game of a range of tourneys.
+     */
+    QUERY2_GAMES(5000, false, false,
+                 new byte[][]{ScrabbleSchema.WINNER, ScrabbleSchema.ID},
+                 new byte[][]{ScrabbleSchema.LOSER, ScrabbleSchema.ID}),
+
+    /**
+     * Query 2: the repeated players of every tourney of a range. The first appearance of every tourney is read as
+     * well, so the tourneys whose repeated players have not been computed yet are returned too, without the column.
+     */
+    QUERY2_AGGREGATES(1000, true, false,
+                      new byte[][]{TourneyAggregates.STATS, TourneyAggregates.REPEATED}),
+
+    /**
+     * Query 3: the games of a tourney, filtered on the tie column.
+     */
+    QUERY3(1000, true, true,
+           new byte[][]{ScrabbleSchema.GAME, ScrabbleSchema.TIE},
+           new byte[][]{ScrabbleSchema.GAME, ScrabbleSchema.GAMEID}),
+
+    /**
+     * Copies whole rows, read once.
+     */
+    FULL_ROWS(1000, false, false);
+
+    private final int caching;
+    private final boolean cacheBlocks;
+    private final boolean filterIfMissing;
+    private final byte[][][] columns;
+
+    /**
+     * @param caching         The number of rows fetched per RPC.
+     * @param cacheBlocks     Whether the blocks read are put in the block cache.
+     * @param filterIfMissing Whether a value filter drops the rows missing its column.
+     * @param columns         The {family, qualifier} pairs read. None means every column.
+     */
+    ScanProfile(int caching, boolean cacheBlocks, boolean filterIfMissing, byte[][]... columns) {
+        this.caching = caching;
+        this.cacheBlocks = cacheBlocks;
+        this.filterIfMissing = filterIfMissing;
+        this.columns = columns;
+    }
+
+    /**
+     * @return A scan of the whole table with this profile, on a table with one cell per column.
+     */
+    public Scan newScan() {
+        return newScan(GameCodec.of(GameCodec.CellFormat.COLUMNS));
+    }
+
+    /**
+     * @param codec The format of the cells of the table.
+     * @return A scan of the whole table with this profile.
+     */
+    public Scan newScan(GameCodec codec) {
+        Scan scan = new Scan();
+        for (byte[][] column : columns) {
+            scan.addColumn(column[0], codec.qualifier(column[0], column[1]));
+        }
+        scan.setCaching(caching);
+        scan.setCacheBlocks(cacheBlocks);
+        if (this == COUNT) {
+            scan.setFilter(new FilterList(FilterList.Operator.MUST_PASS_ALL,
+                                          new FirstKeyOnlyFilter(), new KeyOnlyFilter()));
+        } else if (this == QUERY2_AGGREGATES) {
+            scan.addFamily(TourneyAggregates.APPEARANCES);
+            scan.setMaxResultsPerColumnFamily(1);
+        }
+        return scan;
+    }
+
+    /**
+     * @param filter A filter on the value of one of the columns of the profile.
+     * @return A scan of the whole table with this profile, returning the rows accepted by the filter.
+     */
+    public Scan newScan(SingleColumnValueFilter filter) {
+        return newScan(GameCodec.of(GameCodec.CellFormat.COLUMNS), filter);
+    }
+
+    /**
+     * @param codec  The format of the cells of the table.
+     * @param filter A filter on the value of one of the columns of the profile, see
+     *               {@link GameCodec#equalFilter(byte[], byte[], String)}.
+     * @return A scan of the whole table with this profile, returning the rows accepted by the filter.
+     */
+    public Scan newScan(GameCodec codec, SingleColumnValueFilter filter) {
+        Scan scan = newScan(codec);
+        scan.setFilter(prepare(codec, filter));
+        return scan;
+    }
+
+    /**
+     * @param codec   The format of the cells of the table.
+     * @param filters Filters on the values of the columns of the profile.
+     * @return A scan of the whole table with this profile, returning the rows accepted by any of the filters.
+     */
+    public Scan newScan(GameCodec codec, List<SingleColumnValueFilter> filters) {
+        FilterList anyOf = new FilterList(FilterList.Operator.MUST_PASS_ONE);
+        for (SingleColumnValueFilter filter : filters) {
+            anyOf.addFilter(prepare(codec, filter));
+        }
+        Scan scan = newScan(codec);
+        scan.setFilter(anyOf);
+        return scan;
+    }
+
+    private SingleColumnValueFilter prepare(GameCodec codec, SingleColumnValueFilter filter) {
+        if (!reads(codec, filter.getFamily(), filter.getQualifier())) {
+            throw new IllegalArgumentException("The scan profile " + this + " does not read the column "
+                    + Bytes.toString(filter.getFamily()) + ":" + Bytes.toString(filter.getQualifier()));
+        }
+        filter.setFilterIfMissing(filterIfMissing);
+        filter.setLatestVersionOnly(true);
+        return filter;
+    }
+
+    private boolean reads(GameCodec codec, byte[] family, byte[] qualifier) {
+        for (byte[][] column : columns) {
+            if (Bytes.equals(column[0], family) && Bytes.equals(codec.qualifier(column[0], column[1]), qualifier)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
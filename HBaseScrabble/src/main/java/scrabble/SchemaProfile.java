@@ -0,0 +1,93 @@
+package scrabble;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.io.compress.Compression;
+import org.apache.hadoop.hbase.io.encoding.DataBlockEncoding;
+import org.apache.hadoop.hbase.regionserver.BloomType;
+
+/**
+ * The storage settings of the column families of the "ScrabbleGames" table, tuned for how the table is read.
+ *
+ * The games are read by tourney, as ranges of consecutive keys sharing the salt bucket and the tourney id. Such keys
+ * compress well with a block encoding that only stores how a key differs from the previous one, and a range scan
+ * reads fewer blocks when they are larger and compressed. Gets of single rows want the opposite: small blocks, so
+ * a lookup does not read and decompress much more than the row, and a bloom filter to skip the HFiles that do not
+ * hold the row.
+ *
+ * Every profile sets all the settings, so applying one to an existing table replaces the settings of the previous
+ * one, see applySchemaProfile. The HFiles already written keep their settings until they are compacted.
+ *
+ * The compression needs its native codec on the region servers. On a cluster without it, the codec of the profile
+ * can be replaced by setting {@link #COMPRESSION_KEY} to another one, e.g. GZ or NONE.
+ */
+public enum SchemaProfile {
+    /**
+     * The defaults of HBase: no encoding or compression, row blooms and 64 KB blocks.
+     */
+    DEFAULT(DataBlockEncoding.NONE, Compression.Algorithm.NONE, BloomType.ROW, HColumnDescriptor.DEFAULT_BLOCKSIZE,
+            false),
+
+    /**
+     * Range scans by tourney: FAST_DIFF keys, Snappy compressed 128 KB blocks. Blooms are not consulted by scans, so
+     * none are written.
+     */
+    SCAN(DataBlockEncoding.FAST_DIFF, Compression.Algorithm.SNAPPY, BloomType.NONE, 128 * 1024, false),
+
+    /**
+     * Reads of single tourneys and Gets of single games: PREFIX keys, which are cheaper to seek into than FAST_DIFF
+     * ones, Snappy compressed 16 KB blocks, row blooms for the Gets, and the blocks kept in the in-memory part of the
+     * block cache.
+     */
+    POINT_LOOKUP(DataBlockEncoding.PREFIX, Compression.Algorithm.SNAPPY, BloomType.ROW, 16 * 1024, true);
+
+    public static final String PROFILE_KEY = "scrabble.schema.profile";
+    public static final String COMPRESSION_KEY = "scrabble.schema.compression";
+
+    private final DataBlockEncoding encoding;
+    private final Compression.Algorithm compression;
+    private final BloomType bloom;
+    private final int blockSize;
+    private final boolean inMemory;
+
+    SchemaProfile(DataBlockEncoding encoding, Compression.Algorithm compression, BloomType bloom, int blockSize,
+                  boolean inMemory) {
+        this.encoding = encoding;
+        this.compression = compression;
+        this.bloom = bloom;
+        this.blockSize = blockSize;
+        this.inMemory = inMemory;
+    }
+
+    /**
+     * @return The profile stored in the descriptor of the table. Tables without one have the default profile.
+     */
+    public static SchemaProfile of(HTableDescriptor descriptor) {
+        String profile = descriptor.getValue(PROFILE_KEY);
+        return profile == null ? DEFAULT : valueOf(profile);
+    }
+
+    /**
+     * Sets the storage settings of the families of the games, and stores the profile in the descriptor of the table.
+     *
+     * @param descriptor The descriptor of the "ScrabbleGames" table, with its families.
+     * @param config     The configuration, which may override the compression.
+     */
+    public void applyTo(HTableDescriptor descriptor, Configuration config) {
+        Compression.Algorithm codec = compression;
+        String override = config.get(COMPRESSION_KEY);
+        if (override != null) {
+            codec = Compression.Algorithm.valueOf(override.toUpperCase());
+        }
+        for (byte[] family : new byte[][]{ScrabbleSchema.GAME, ScrabbleSchema.WINNER, ScrabbleSchema.LOSER}) {
+            HColumnDescriptor columnFamily = descriptor.getFamily(family);
+            columnFamily.setDataBlockEncoding(encoding);
+            columnFamily.setCompressionType(codec);
+            columnFamily.setBloomFilterType(bloom);
+            columnFamily.setBlocksize(blockSize);
+            columnFamily.setInMemory(inMemory);
+        }
+        descriptor.setValue(PROFILE_KEY, name());
+    }
+}
@@ -0,0 +1,88 @@
+package scrabble;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The queries answered on the "ScrabbleGames" table. Implementations must be safe to call from several threads.
+ *
+ * Query 1 and query 3 come in a batch version as well, answering the query for many tourneys at once. By default a
+ * batch runs the single queries one after the other; implementations reading the table override it to share scans
+ * and round trips between the tourneys.
+ */
+public interface ScrabbleQueries {
+
+    /**
+     * Query 1: Returns all the opponents of a given Winner name in a tournament.
+     *
+     * @param tourneyid  The id of the tournament.
+     * @param winnername The name of the winner.
+     * @return The ids of the opponents.
+     * @throws IOException
+     */
+    List<String> query1(String tourneyid, String winnername) throws IOException;
+
+    /**
+     * Query 1 for many (tourney, winner) pairs.
+     *
+     * @param winnernames The names of the winners, by tourney id.
+     * @return The ids of the opponents, by tourney id and winner name, in the order of the arguments.
+     * @throws IOException
+     */
+    default Map<String, Map<String, List<String>>> query1(Map<String, ? extends Collection<String>> winnernames)
+            throws IOException {
+        Map<String, Map<String, List<String>>> results = new LinkedHashMap<>();
+        for (Map.Entry<String, ? extends Collection<String>> tourney : winnernames.entrySet()) {
+            Map<String, List<String>> opponents = new LinkedHashMap<>();
+            for (String winnername : tourney.getValue()) {
+                opponents.put(winnername, query1(tourney.getKey(), winnername));
+            }
+            results.put(tourney.getKey(), opponents);
+        }
+        return results;
+    }
+
+    /**
+     * Query 2: Returns the ids of the players that have participated more than once in all the tournaments
+     * between two given Tourneyids.
+     *
+     * @param firsttourneyid The id of the first tournament.
+     * @param lasttourneyid  The id of the last tournament (excluded).
+     * @return The ids of the players.
+     * @throws IOException
+     */
+    List<String> query2(String firsttourneyid, String lasttourneyid) throws IOException;
+
+    /**
+     * Query 3: Returns the ids of the games of a tournament that have finished in tie.
+     *
+     * @param tourneyid The id of the tournament.
+     * @return The ids of the games.
+     * @throws IOException
+     */
+    List<String> query3(String tourneyid) throws IOException;
+
+    /**
+     * Query 3 for many tourneys.
+     *
+     * @param tourneyids The ids of the tournaments.
+     * @return The ids of the games finished in tie, by tourney id, in the order of the arguments.
+     * @throws IOException
+     */
+    default Map<String, List<String>> query3(Collection<String> tourneyids) throws IOException {
+        Map<String, List<String>> results = new LinkedHashMap<>();
+        for (String tourneyid : tourneyids) {
+            results.put(tourneyid, query3(tourneyid));
+        }
+        return results;
+    }
+
+    /**
+     * @return The number of games in the table.
+     * @throws IOException
+     */
+    long countRecords() throws IOException;
+}
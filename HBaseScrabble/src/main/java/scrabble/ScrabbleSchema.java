@@ -0,0 +1,63 @@
+package scrabble;
+
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * Names of the "ScrabbleGames" table, its column families and qualifiers, and the position of every
+ * field in a line of "scrabble_games.csv".
+ *
+ * Keeping them in one place avoids re-encoding the same strings with Bytes.toBytes for every cell
+ * that is written or read.
+ */
+public final class ScrabbleSchema {
+
+    public static final String TABLE_NAME = "ScrabbleGames";
+
+    // Column families
+    public static final byte[] GAME = Bytes.toBytes("Game");
+    public static final byte[] WINNER = Bytes.toBytes("Winner");
+    public static final byte[] LOSER = Bytes.toBytes("Loser");
+
+    // Game qualifiers
+    public static final byte[] GAMEID = Bytes.toBytes("gameid");
+    public static final byte[] TOURNEYID = Bytes.toBytes("tourneyid");
+    public static final byte[] TIE = Bytes.toBytes("tie");
+    public static final byte[] ROUND = Bytes.toBytes("round");
+    public static final byte[] DIVISION = Bytes.toBytes("division");
+    public static final byte[] DATE = Bytes.toBytes("date");
+    public static final byte[] LEXICON = Bytes.toBytes("lexicon");
+
+    // Player qualifiers, shared by the Winner and Loser families
+    public static final byte[] ID = Bytes.toBytes("id");
+    public static final byte[] NAME = Bytes.toBytes("name");
+    public static final byte[] SCORE = Bytes.toBytes("score");
+    public static final byte[] OLDRATING = Bytes.toBytes("oldrating");
+    public static final byte[] NEWRATING = Bytes.toBytes("newrating");
+    public static final byte[] POS = Bytes.toBytes("pos");
+
+    // Positions of the fields in a csv line
+    public static final int COL_GAMEID = 0;
+    public static final int COL_TOURNEYID = 1;
+    public static final int COL_TIE = 2;
+    public static final int COL_WINNER_ID = 3;
+    public static final int COL_WINNER_NAME = 4;
+    public static final int COL_WINNER_SCORE = 5;
+    public static final int COL_WINNER_OLDRATING = 6;
+    public static final int COL_WINNER_NEWRATING = 7;
+    public static final int COL_WINNER_POS = 8;
+    public static final int COL_LOSER_ID = 9;
+    public static final int COL_LOSER_NAME = 10;
+    public static final int COL_LOSER_SCORE = 11;
+    public static final int COL_LOSER_OLDRATING = 12;
+    public static final int COL_LOSER_NEWRATING = 13;
+    public static final int COL_LOSER_POS = 14;
+    public static final int COL_ROUND = 15;
+    public static final int COL_DIVISION = 16;
+    public static final int COL_DATE = 17;
+    public static final int COL_LEXICON = 18;
+
+    public static final int CSV_COLUMNS = 19;
+
+    private ScrabbleSchema() {
+    }
+}
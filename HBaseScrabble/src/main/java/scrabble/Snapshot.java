@@ -0,0 +1,233 @@
+package scrabble;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A local, read-only copy of the "ScrabbleGames" table stored column by column, for analytical queries that should
+ * not load the region servers. It is written by {@link SnapshotWriter} and queried by {@link SnapshotQueries}.
+ *
+ * The games are sorted by tourney id, then game id, the order of the unsalted row keys (see
+ * {@link GameRowMapper#getKey(String[])}), so the games of a tourney or of a range of tourneys are consecutive rows,
+ * found by a binary search on the tourney column.
+ *
+ * Every {@link Column} holds one 4 byte int per game. The names of the players are replaced by their code in a
+ * dictionary of the distinct names, the tie flag is 1 or 0, and the fields that were empty or not numbers hold
+ * {@link #NULL}. The division, date and lexicon are not exported, no query reads them.
+ *
+ * The file is laid out as follows, all the numbers being big endian:
+ * - header: the magic "SCRBSNAP", the version, the number of games, of columns and of names (ints), and the offset
+ *   of the dictionary (long), 32 bytes in all.
+ * - the columns, one after the other in the order of {@link Column}, each one the ints of all the games.
+ * - the dictionary: the end offset of every name in the bytes that follow (ints), then the UTF-8 bytes of the names.
+ *
+ * Opening a snapshot maps every column into memory, and the queries read the ints straight from the page cache: no
+ * copy, and nothing is read from the disk until a query touches it. Only the dictionary is decoded on opening.
+ */
+public final class Snapshot {
+    static final long MAGIC = 0x53435242534e4150L;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+
+    /**
+     * The value of the empty fields.
+     */
+    public static final int NULL = Integer.MIN_VALUE;
+
+    /**
+     * The columns of the snapshot, in the order they are stored.
+     */
+    public enum Column {
+        TOURNEY_ID(ScrabbleSchema.GAME, ScrabbleSchema.TOURNEYID, ScrabbleSchema.COL_TOURNEYID, Kind.INT),
+        GAME_ID(ScrabbleSchema.GAME, ScrabbleSchema.GAMEID, ScrabbleSchema.COL_GAMEID, Kind.INT),
+        ROUND(ScrabbleSchema.GAME, ScrabbleSchema.ROUND, ScrabbleSchema.COL_ROUND, Kind.INT),
+        TIE(ScrabbleSchema.GAME, ScrabbleSchema.TIE, ScrabbleSchema.COL_TIE, Kind.BOOLEAN),
+        WINNER_ID(ScrabbleSchema.WINNER, ScrabbleSchema.ID, ScrabbleSchema.COL_WINNER_ID, Kind.INT),
+        WINNER_NAME(ScrabbleSchema.WINNER, ScrabbleSchema.NAME, ScrabbleSchema.COL_WINNER_NAME, Kind.NAME),
+        WINNER_SCORE(ScrabbleSchema.WINNER, ScrabbleSchema.SCORE, ScrabbleSchema.COL_WINNER_SCORE, Kind.INT),
+        WINNER_OLDRATING(ScrabbleSchema.WINNER, ScrabbleSchema.OLDRATING, ScrabbleSchema.COL_WINNER_OLDRATING,
+                         Kind.INT),
+        WINNER_NEWRATING(ScrabbleSchema.WINNER, ScrabbleSchema.NEWRATING, ScrabbleSchema.COL_WINNER_NEWRATING,
+                         Kind.INT),
+        WINNER_POS(ScrabbleSchema.WINNER, ScrabbleSchema.POS, ScrabbleSchema.COL_WINNER_POS, Kind.INT),
+        LOSER_ID(ScrabbleSchema.LOSER, ScrabbleSchema.ID, ScrabbleSchema.COL_LOSER_ID, Kind.INT),
+        LOSER_NAME(ScrabbleSchema.LOSER, ScrabbleSchema.NAME, ScrabbleSchema.COL_LOSER_NAME, Kind.NAME),
+        LOSER_SCORE(ScrabbleSchema.LOSER, ScrabbleSchema.SCORE, ScrabbleSchema.COL_LOSER_SCORE, Kind.INT),
+        LOSER_OLDRATING(ScrabbleSchema.LOSER, ScrabbleSchema.OLDRATING, ScrabbleSchema.COL_LOSER_OLDRATING, Kind.INT),
+        LOSER_NEWRATING(ScrabbleSchema.LOSER, ScrabbleSchema.NEWRATING, ScrabbleSchema.COL_LOSER_NEWRATING, Kind.INT),
+        LOSER_POS(ScrabbleSchema.LOSER, ScrabbleSchema.POS, ScrabbleSchema.COL_LOSER_POS, Kind.INT);
+
+        enum Kind {
+            INT, BOOLEAN, NAME
+        }
+
+        private final byte[] family;
+        private final byte[] qualifier;
+        private final int csvColumn;
+        private final Kind kind;
+
+        Column(byte[] family, byte[] qualifier, int csvColumn, Kind kind) {
+            this.family = family;
+            this.qualifier = qualifier;
+            this.csvColumn = csvColumn;
+            this.kind = kind;
+        }
+
+        public byte[] getFamily() {
+            return family;
+        }
+
+        public byte[] getQualifier() {
+            return qualifier;
+        }
+
+        /**
+         * @return The position of the field in a csv line, see {@link ScrabbleSchema}.
+         */
+        public int getCsvColumn() {
+            return csvColumn;
+        }
+
+        Kind getKind() {
+            return kind;
+        }
+    }
+
+    private final int rows;
+    private final IntBuffer[] columns;
+    private final String[] names;
+    private final Map<String, Integer> codes;
+
+    private Snapshot(int rows, IntBuffer[] columns, String[] names) {
+        this.rows = rows;
+        this.columns = columns;
+        this.names = names;
+        this.codes = new HashMap<>(names.length * 2);
+        for (int i = 0; i < names.length; i++) {
+            codes.put(names[i], i);
+        }
+    }
+
+    /**
+     * Maps a snapshot file into memory.
+     *
+     * @throws IOException If the file cannot be read or is not a snapshot.
+     */
+    public static Snapshot open(File file) throws IOException {
+        // the mappings stay valid once the channel is closed
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException(file + " is not a snapshot");
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getLong() != MAGIC) {
+                throw new IOException(file + " is not a snapshot");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported version " + version + " of snapshot " + file);
+            }
+            int rows = header.getInt();
+            int nColumns = header.getInt();
+            int nNames = header.getInt();
+            long dictionaryOffset = header.getLong();
+            if (nColumns != Column.values().length
+                    || dictionaryOffset != HEADER_BYTES + (long) nColumns * rows * 4
+                    || dictionaryOffset + (long) nNames * 4 > channel.size()) {
+                throw new IOException("Snapshot " + file + " is truncated or corrupted");
+            }
+
+            IntBuffer[] columns = new IntBuffer[nColumns];
+            for (int i = 0; i < nColumns; i++) {
+                columns[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + (long) i * rows * 4,
+                                         (long) rows * 4).asIntBuffer();
+            }
+
+            ByteBuffer dictionary = channel.map(FileChannel.MapMode.READ_ONLY, dictionaryOffset,
+                                                channel.size() - dictionaryOffset);
+            int[] ends = new int[nNames];
+            dictionary.asIntBuffer().get(ends);
+            byte[] bytes = new byte[dictionary.capacity() - nNames * 4];
+            dictionary.position(nNames * 4);
+            dictionary.get(bytes);
+            String[] names = new String[nNames];
+            int start = 0;
+            for (int i = 0; i < nNames; i++) {
+                names[i] = new String(bytes, start, ends[i] - start, StandardCharsets.UTF_8);
+                start = ends[i];
+            }
+            return new Snapshot(rows, columns, names);
+        }
+    }
+
+    /**
+     * @return The number of games.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return The values of a column, one per game. The buffer is shared by the callers, read it with absolute gets.
+     */
+    public IntBuffer column(Column column) {
+        return columns[column.ordinal()];
+    }
+
+    /**
+     * @return The name of a code of the {@link Column#WINNER_NAME} or {@link Column#LOSER_NAME} columns.
+     */
+    public String name(int code) {
+        return code == NULL ? null : names[code];
+    }
+
+    /**
+     * @return The code of a name, {@link #NULL} if no game has it.
+     */
+    public int code(String name) {
+        Integer code = codes.get(name);
+        return code == null ? NULL : code;
+    }
+
+    /**
+     * @return The first game of the tourney, or of the first tourney after it if it has no game.
+     */
+    public int firstRow(int tourneyId) {
+        return search(tourneyId, false);
+    }
+
+    /**
+     * @return The game following the last game of the tourney, or the first game of the first tourney after it.
+     */
+    public int endRow(int tourneyId) {
+        return search(tourneyId, true);
+    }
+
+    /**
+     * Binary search of the tourney column.
+     *
+     * @param after Whether to skip the games of the tourney.
+     */
+    private int search(int tourneyId, boolean after) {
+        IntBuffer tourneys = column(Column.TOURNEY_ID);
+        int low = 0;
+        int high = rows;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int value = tourneys.get(mid);
+            if (value < tourneyId || (after && value == tourneyId)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
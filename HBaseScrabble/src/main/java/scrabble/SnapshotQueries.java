@@ -0,0 +1,192 @@
+package scrabble;
+
+import org.apache.hadoop.conf.Configuration;
+import scrabble.Snapshot.Column;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Answers the queries from a local {@link Snapshot} instead of the cluster.
+ *
+ * Query 1 and query 3 read the games of one tourney, found by a binary search, from the columns they need. Query 2
+ * reads the two id columns of a range of tourneys, and is the one worth spreading over the cores: the range is cut
+ * into chunks of whole tourneys, every chunk is folded into the intersection of the repeated players of its
+ * tourneys on a pool of "scrabble.snapshot.threads" threads, and the intersections of the chunks are intersected.
+ * Like {@link RepeatedPlayers}, the ids are counted in an {@link IntCounter} and intersected in a {@link PlayerSet},
+ * and a chunk stops as soon as its intersection is empty.
+ *
+ * The results are the same as the ones of the table the snapshot was exported from, at the time of the export.
+ */
+public class SnapshotQueries implements ScrabbleQueries, Closeable {
+    public static final String THREADS_KEY = "scrabble.snapshot.threads";
+
+    // a chunk smaller than this is not worth a task of its own
+    private static final int MIN_CHUNK_ROWS = 64 * 1024;
+
+    private final Snapshot snapshot;
+    private final int threads;
+    private final ExecutorService pool;
+
+    /**
+     * @param config   The configuration of the pool.
+     * @param snapshot The snapshot to query.
+     */
+    public SnapshotQueries(Configuration config, Snapshot snapshot) {
+        this.snapshot = snapshot;
+        this.threads = Math.max(1, config.getInt(THREADS_KEY, Runtime.getRuntime().availableProcessors()));
+        this.pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "snapshot-" + count.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    @Override
+    public List<String> query1(String tourneyid, String winnername) {
+        int tourneyId = Integer.parseInt(tourneyid);
+        List<String> opponents = new ArrayList<>();
+        int winner = snapshot.code(winnername);
+        if (winner == Snapshot.NULL) {
+            return opponents;
+        }
+
+        IntBuffer winners = snapshot.column(Column.WINNER_NAME);
+        IntBuffer losers = snapshot.column(Column.LOSER_ID);
+        for (int row = snapshot.firstRow(tourneyId), end = snapshot.endRow(tourneyId); row < end; row++) {
+            if (winners.get(row) == winner) {
+                opponents.add(toString(losers.get(row)));
+            }
+        }
+        return opponents;
+    }
+
+    @Override
+    public List<String> query2(String firsttourneyid, String lasttourneyid) throws IOException {
+        final int from = snapshot.firstRow(Integer.parseInt(firsttourneyid));
+        final int to = Math.max(from, snapshot.firstRow(Integer.parseInt(lasttourneyid)));
+
+        // The chunks end at tourney boundaries, so every tourney is counted by a single chunk
+        List<int[]> chunks = new ArrayList<>();
+        int nChunks = (int) Math.max(1, Math.min(threads, ((long) to - from) / MIN_CHUNK_ROWS));
+        IntBuffer tourneys = snapshot.column(Column.TOURNEY_ID);
+        int start = from;
+        for (int i = 1; i <= nChunks && start < to; i++) {
+            int end = i == nChunks ? to : from + (int) (((long) to - from) * i / nChunks);
+            if (end > start) {
+                end = Math.min(to, snapshot.endRow(tourneys.get(end - 1)));
+                chunks.add(new int[]{start, end});
+                start = end;
+            }
+        }
+
+        List<Future<PlayerSet>> futures = new ArrayList<>(chunks.size());
+        for (final int[] chunk : chunks) {
+            futures.add(pool.submit(new Callable<PlayerSet>() {
+                @Override
+                public PlayerSet call() {
+                    return repeatedPlayers(chunk[0], chunk[1]);
+                }
+            }));
+        }
+
+        PlayerSet result = new PlayerSet();
+        try {
+            for (Future<PlayerSet> future : futures) {
+                result.retain(future.get());
+            }
+        } catch (InterruptedException e) {
+            cancel(futures);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading the snapshot");
+        } catch (ExecutionException e) {
+            cancel(futures);
+            throw new IOException("Reading the snapshot failed", e.getCause());
+        }
+        return result.toStrings();
+    }
+
+    @Override
+    public List<String> query3(String tourneyid) {
+        int tourneyId = Integer.parseInt(tourneyid);
+        IntBuffer ties = snapshot.column(Column.TIE);
+        IntBuffer games = snapshot.column(Column.GAME_ID);
+        List<String> tied = new ArrayList<>();
+        for (int row = snapshot.firstRow(tourneyId), end = snapshot.endRow(tourneyId); row < end; row++) {
+            if (ties.get(row) == 1) {
+                tied.add(toString(games.get(row)));
+            }
+        }
+        return tied;
+    }
+
+    @Override
+    public long countRecords() {
+        return snapshot.getRows();
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Intersects the repeated players of the tourneys of the rows, which hold whole tourneys.
+     *
+     * @return The intersection. It is not seeded if there are no rows.
+     */
+    private PlayerSet repeatedPlayers(int from, int to) {
+        IntBuffer tourneys = snapshot.column(Column.TOURNEY_ID);
+        IntBuffer winners = snapshot.column(Column.WINNER_ID);
+        IntBuffer losers = snapshot.column(Column.LOSER_ID);
+
+        PlayerSet partial = new PlayerSet();
+        IntCounter counts = new IntCounter();
+        for (int row = from; row < to; row++) {
+            int winner = winners.get(row);
+            if (winner != Snapshot.NULL) {
+                counts.increment(winner);
+            }
+            int loser = losers.get(row);
+            if (loser != Snapshot.NULL) {
+                counts.increment(loser);
+            }
+            if (row + 1 == to || tourneys.get(row + 1) != tourneys.get(row)) {
+                // last game of the tourney
+                int[] repeated = counts.repeated();
+                partial.retain(repeated, repeated.length);
+                counts.clear();
+                if (partial.isEmpty()) {
+                    break;
+                }
+            }
+        }
+        return partial;
+    }
+
+    private static String toString(int value) {
+        return value == Snapshot.NULL ? "" : Integer.toString(value);
+    }
+
+    private static void cancel(List<? extends Future<?>> futures) {
+        for (Future<?> future : futures) {
+            future.cancel(true);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package scrabble;
+
+import scrabble.Snapshot.Column;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a {@link Snapshot} file, game by game.
+ *
+ * The number of games is only known at the end, so every column is first streamed to a temporary file of its own
+ * next to the snapshot. Committing the writer concatenates them behind the header, appends the dictionary of the
+ * names, and renames the result to the snapshot file. A snapshot being replaced is therefore never seen half written
+ * by the processes reading it. Closing a writer that was not committed, e.g. because the export failed, only deletes
+ * the temporary files and leaves the existing snapshot as it was.
+ */
+public class SnapshotWriter implements Closeable {
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final File file;
+    private final File[] columnFiles;
+    private final DataOutputStream[] columns;
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+
+    private int rows = 0;
+    private int lastTourney;
+    private int lastGame;
+    private boolean closed = false;
+
+    /**
+     * @param file The snapshot file to write. An existing file is replaced once the new one is complete.
+     * @throws IOException
+     */
+    public SnapshotWriter(File file) throws IOException {
+        this.file = file.getAbsoluteFile();
+        Column[] all = Column.values();
+        this.columnFiles = new File[all.length];
+        this.columns = new DataOutputStream[all.length];
+        try {
+            for (Column column : all) {
+                File columnFile = File.createTempFile(this.file.getName() + "." + column + ".", ".tmp",
+                                                      this.file.getParentFile());
+                columnFiles[column.ordinal()] = columnFile;
+                columns[column.ordinal()] = new DataOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(columnFile), BUFFER_BYTES));
+            }
+        } catch (IOException e) {
+            discard();
+            throw e;
+        }
+    }
+
+    /**
+     * Appends a game. The games have to be appended sorted by tourney id, then game id.
+     *
+     * @param values The fields of the game, at their position in a csv line, see {@link ScrabbleSchema}.
+     * @throws IOException
+     * @throws IllegalArgumentException If the game does not follow the previous one, or has no ids.
+     */
+    public void append(String[] values) throws IOException {
+        int tourney = parseInt(values[ScrabbleSchema.COL_TOURNEYID]);
+        int game = parseInt(values[ScrabbleSchema.COL_GAMEID]);
+        if (tourney == Snapshot.NULL || game == Snapshot.NULL) {
+            throw new IllegalArgumentException("Game without ids: tourney " + values[ScrabbleSchema.COL_TOURNEYID]
+                    + ", game " + values[ScrabbleSchema.COL_GAMEID]);
+        }
+        if (rows > 0 && (tourney < lastTourney || (tourney == lastTourney && game <= lastGame))) {
+            throw new IllegalArgumentException("Game " + game + " of tourney " + tourney
+                    + " does not follow game " + lastGame + " of tourney " + lastTourney);
+        }
+        if (closed) {
+            throw new IllegalStateException("The snapshot writer of " + file + " is closed");
+        }
+        if (rows == Integer.MAX_VALUE) {
+            throw new IllegalStateException("A snapshot holds at most " + Integer.MAX_VALUE + " games");
+        }
+
+        for (Column column : Column.values()) {
+            String value = values[column.getCsvColumn()];
+            int encoded;
+            switch (column.getKind()) {
+                case BOOLEAN:
+                    encoded = "True".equalsIgnoreCase(value) ? 1 : 0;
+                    break;
+                case NAME:
+                    encoded = value == null ? Snapshot.NULL : code(value);
+                    break;
+                default:
+                    encoded = parseInt(value);
+            }
+            columns[column.ordinal()].writeInt(encoded);
+        }
+        lastTourney = tourney;
+        lastGame = game;
+        rows++;
+    }
+
+    /**
+     * @return The number of games appended so far.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Writes the snapshot file, replacing the existing one. Nothing can be appended afterwards.
+     *
+     * @throws IOException
+     */
+    public void commit() throws IOException {
+        if (closed) {
+            throw new IllegalStateException("The snapshot writer of " + file + " is closed");
+        }
+        closed = true;
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            for (DataOutputStream column : columns) {
+                column.close();
+            }
+            write(tmp);
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            discard();
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Deletes the temporary files, without writing the snapshot file if it was not committed.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        discard();
+    }
+
+    private void write(File tmp) throws IOException {
+        long dictionaryOffset = Snapshot.HEADER_BYTES + (long) columns.length * rows * 4;
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            FileChannel channel = out.getChannel();
+
+            ByteBuffer header = ByteBuffer.allocate(Snapshot.HEADER_BYTES);
+            header.putLong(Snapshot.MAGIC);
+            header.putInt(Snapshot.VERSION);
+            header.putInt(rows);
+            header.putInt(columns.length);
+            header.putInt(names.size());
+            header.putLong(dictionaryOffset);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+
+            for (File columnFile : columnFiles) {
+                try (FileChannel column = new FileInputStream(columnFile).getChannel()) {
+                    long position = 0;
+                    while (position < column.size()) {
+                        position += column.transferTo(position, column.size() - position, channel);
+                    }
+                }
+            }
+
+            // the stream writes at the position the channel was left at
+            DataOutputStream dictionary = new DataOutputStream(new BufferedOutputStream(out, BUFFER_BYTES));
+            List<byte[]> encoded = new ArrayList<>(names.size());
+            int end = 0;
+            for (String name : names) {
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                encoded.add(bytes);
+                end += bytes.length;
+                dictionary.writeInt(end);
+            }
+            for (byte[] bytes : encoded) {
+                dictionary.write(bytes);
+            }
+            dictionary.flush();
+        }
+    }
+
+    /**
+     * Deletes the temporary files of the columns.
+     */
+    private void discard() {
+        for (int i = 0; i < columnFiles.length; i++) {
+            if (columns[i] != null) {
+                try {
+                    columns[i].close();
+                } catch (IOException e) {
+                    // the file is deleted anyway
+                }
+            }
+            if (columnFiles[i] != null) {
+                columnFiles[i].delete();
+            }
+        }
+    }
+
+    private int code(String name) {
+        Integer code = codes.get(name);
+        if (code == null) {
+            code = names.size();
+            codes.put(name, code);
+            names.add(name);
+        }
+        return code;
+    }
+
+    /**
+     * @return The int, {@link Snapshot#NULL} if the field is empty or not an int.
+     */
+    private static int parseInt(String value) {
+        if (value == null || value.isEmpty()) {
+            return Snapshot.NULL;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return Snapshot.NULL;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package scrabble;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Computes the split keys "ScrabbleGames" is created with, so the load is spread over all the region
+ * servers from the first Put on instead of waiting for the single initial region to split.
+ *
+ * The split points are taken from the distribution of the games over the tourneys, sampled from the csv
+ * file: every bucket of the {@link KeyLayout} is cut into regions holding about the same number of games.
+ * Splits are only ever placed at the first key of a tourney, so a tourney is never spread over two regions.
+ */
+public class SplitPlanner {
+    public static final String SAMPLE_EVERY_KEY = "scrabble.split.sample.every";
+
+    private final KeyLayout layout;
+    private final int sampleEvery;
+
+    public SplitPlanner(Configuration config, KeyLayout layout) {
+        this.layout = layout;
+        this.sampleEvery = Math.max(1, config.getInt(SAMPLE_EVERY_KEY, 10));
+    }
+
+    /**
+     * @return The split keys of the buckets alone, without sampling any data.
+     */
+    public byte[][] bucketSplits() {
+        return toArray(layout.bucketSplits());
+    }
+
+    /**
+     * Samples the tourney ids of the csv file and computes the split keys.
+     *
+     * @param filePath         The path of the csv file.
+     * @param regionsPerBucket The number of regions every bucket is cut into.
+     * @return The sorted split keys, including the ones between the buckets.
+     * @throws IOException
+     */
+    public byte[][] sampledSplits(String filePath, int regionsPerBucket) throws IOException {
+        List<SortedMap<Integer, Long>> gamesPerTourney = sample(filePath);
+
+        List<byte[]> splits = new ArrayList<>(layout.bucketSplits());
+        for (SortedMap<Integer, Long> bucket : gamesPerTourney) {
+            long total = 0;
+            for (long games : bucket.values()) {
+                total += games;
+            }
+
+            long seen = 0;
+            int region = 1;
+            for (Map.Entry<Integer, Long> tourney : bucket.entrySet()) {
+                if (region >= regionsPerBucket) {
+                    break;
+                }
+                // start a new region at this tourney once the previous ones hold their share of the games
+                if (seen > 0 && seen >= total * region / regionsPerBucket) {
+                    splits.add(layout.tourneyStart(tourney.getKey()));
+                    region++;
+                }
+                seen += tourney.getValue();
+            }
+        }
+
+        Collections.sort(splits, Bytes.BYTES_COMPARATOR);
+        return toArray(splits);
+    }
+
+    /**
+     * Counts the games of every tourney in every sampled line, grouped by bucket.
+     */
+    private List<SortedMap<Integer, Long>> sample(String filePath) throws IOException {
+        List<SortedMap<Integer, Long>> gamesPerTourney = new ArrayList<>(layout.getBuckets());
+        for (int bucket = 0; bucket < layout.getBuckets(); bucket++) {
+            gamesPerTourney.add(new TreeMap<Integer, Long>());
+        }
+
+        String[] fields = new String[ScrabbleSchema.COL_TOURNEYID + 1];
+        try (BufferedReader br = new BufferedReader(
+                new InputStreamReader(new FileInputStream(filePath), StandardCharsets.UTF_8), 1 << 16)) {
+            // skip header
+            br.readLine();
+
+            long lineNumber = 0;
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (lineNumber++ % sampleEvery != 0) {
+                    continue;
+                }
+                if (GameRowMapper.split(line, fields) < ScrabbleSchema.CSV_COLUMNS) {
+                    continue;
+                }
+                int tourneyId;
+                try {
+                    tourneyId = Integer.parseInt(fields[ScrabbleSchema.COL_TOURNEYID]);
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                SortedMap<Integer, Long> bucket = gamesPerTourney.get(layout.bucket(tourneyId));
+                Long games = bucket.get(tourneyId);
+                bucket.put(tourneyId, games == null ? 1 : games + 1);
+            }
+        }
+        return gamesPerTourney;
+    }
+
+    private static byte[][] toArray(List<byte[]> splits) {
+        return splits.toArray(new byte[splits.size()][]);
+    }
+}
@@ -0,0 +1,245 @@
+package scrabble;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.client.HConnection;
+import org.apache.hadoop.hbase.client.Put;
+import scrabble.metrics.LoadMetrics;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ingests the games of the csv files of a directory as they are written, in micro-batches, so new games can be
+ * queried seconds after they are appended instead of after a full reload.
+ *
+ * Every csv file of the directory is read from its {@link IngestCheckpoint}, in the order of the file names. Only
+ * complete lines are read, so a line being written is picked up once its newline is there. A micro-batch of lines
+ * goes through the following steps, each one only started once the previous one succeeded:
+ *
+ * 1. The Puts of the games, the winner index and the tourney aggregates are written and flushed.
+ * 2. The repeated players of the tourneys touched are refreshed, see {@link TourneyAggregates}.
+ * 3. The checkpoint of the file moves past the lines of the batch.
+ * 4. The {@link LoadEpoch} is bumped, so the caches of the query servers drop their results.
+ *
+ * A process stopped or failing at any point restarts from the last checkpoint and writes some games again. This is
+ * harmless: the row key of a game is made of its ids (see {@link GameRowMapper#getKey(String[])}), and the cells of
+ * the index and the aggregates are keyed by game as well, so a replayed game overwrites itself.
+ *
+ * A file smaller than its checkpoint has been replaced, and is ingested again from the start. The first line of
+ * every file is expected to be the header.
+ */
+public class StreamingIngest {
+    public static final String BATCH_LINES_KEY = "scrabble.ingest.batch.lines";
+    public static final String POLL_MILLIS_KEY = "scrabble.ingest.poll.ms";
+
+    private static final int BUFFER_BYTES = 1024 * 1024;
+
+    private final HConnection connection;
+    private final GameRowMapper mapper;
+    private final TourneyAggregates aggregates;
+    private final IngestCheckpoint checkpoints;
+    private final LoadEpoch epoch;
+    private final LoadMetrics metrics;
+
+    private final int batchLines;
+    private final long pollMillis;
+
+    // the checkpoints read or written so far, so they are only read from the table once
+    private final Map<String, Long> offsets = new HashMap<>();
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+    private volatile boolean stopped = false;
+
+    /**
+     * @param config      The configuration the sizes of the batches are read from.
+     * @param connection  The connection the aggregates are refreshed on.
+     * @param mapper      Turns the lines into Puts.
+     * @param aggregates  The aggregates the mapper maintains, null if the table has none.
+     * @param checkpoints Where the progress in every file is kept.
+     * @param epoch       Bumped after every batch.
+     * @param metrics     Receives the timings of the batches and the counters of the ingest.
+     */
+    public StreamingIngest(Configuration config, HConnection connection, GameRowMapper mapper,
+                           TourneyAggregates aggregates, IngestCheckpoint checkpoints, LoadEpoch epoch,
+                           LoadMetrics metrics) {
+        this.connection = connection;
+        this.mapper = mapper;
+        this.aggregates = aggregates;
+        this.checkpoints = checkpoints;
+        this.epoch = epoch;
+        this.metrics = metrics;
+        this.batchLines = Math.max(1, config.getInt(BATCH_LINES_KEY, 1000));
+        this.pollMillis = Math.max(1, config.getLong(POLL_MILLIS_KEY, 1000));
+    }
+
+    /**
+     * Ingests the csv files of the directory.
+     *
+     * @param folder The directory of the csv files.
+     * @param follow Whether to keep waiting for new lines and files until {@link #stop()} is called, instead of
+     *               returning once all the files have been ingested.
+     * @param sink   Where the Puts of the games are written to. It is flushed after every batch.
+     * @return The counters of the ingest.
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public LoadStats ingest(File folder, boolean follow, PutSink sink) throws IOException, InterruptedException {
+        LoadStats stats = new LoadStats();
+        metrics.started(stats);
+        try {
+            while (!stopped) {
+                long games = stats.getRowsWritten();
+                for (File file : csvFiles(folder)) {
+                    ingestFile(file, sink, stats);
+                    if (stopped) {
+                        break;
+                    }
+                }
+                if (!follow || stopped) {
+                    break;
+                }
+                if (stats.getRowsWritten() == games) {
+                    Thread.sleep(pollMillis);
+                }
+            }
+        } finally {
+            stats.finish();
+            metrics.finished(stats);
+        }
+        return stats;
+    }
+
+    /**
+     * Makes {@link #ingest} return once the batch being written is checkpointed.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Ingests the complete lines of a file written since its checkpoint, batch by batch.
+     */
+    private void ingestFile(File file, PutSink sink, LoadStats stats) throws IOException {
+        String name = file.getName();
+        Long checkpoint = offsets.get(name);
+        long offset = checkpoint != null ? checkpoint : checkpoints.read(name);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < offset) {
+                System.out.println("File " + name + " is smaller than its checkpoint, ingesting it from the start");
+                offset = 0;
+            }
+            List<String> lines = new ArrayList<>(batchLines);
+            String[] fields = new String[ScrabbleSchema.CSV_COLUMNS];
+            while (!stopped) {
+                long next = readLines(channel, offset, lines);
+                if (next == offset) {
+                    return;
+                }
+                if (offset == 0) {
+                    // skip header
+                    lines.remove(0);
+                }
+
+                long start = System.nanoTime();
+                PutBatch batch = new PutBatch();
+                for (String line : lines) {
+                    if (GameRowMapper.split(line, fields) < ScrabbleSchema.CSV_COLUMNS) {
+                        stats.addRowSkipped();
+                        continue;
+                    }
+                    try {
+                        mapper.map(fields, batch);
+                    } catch (NumberFormatException e) {
+                        stats.addRowSkipped();
+                    }
+                }
+                metrics.getBuild().recordSince(start);
+                stats.addRowsParsed(batch.getGames());
+
+                if (!batch.isEmpty()) {
+                    start = System.nanoTime();
+                    for (Map.Entry<String, List<Put>> table : batch.getPuts().entrySet()) {
+                        sink.write(table.getKey(), table.getValue());
+                    }
+                    sink.flush();
+                    metrics.getFlush().recordSince(start);
+
+                    if (aggregates != null) {
+                        aggregates.refresh(connection);
+                    }
+                }
+                checkpoints.write(name, next);
+                offsets.put(name, next);
+                if (!batch.isEmpty()) {
+                    epoch.bump();
+                    System.out.println("Ingested " + batch.getGames() + " games of " + name + " up to byte " + next);
+                }
+
+                stats.addBytesRead(next - offset);
+                stats.addRowsWritten(batch.getGames());
+                offset = next;
+            }
+        }
+    }
+
+    /**
+     * Reads the complete lines following the offset, at most one batch of them.
+     *
+     * @param lines Receives the lines, without their line terminator.
+     * @return The offset following the last line read, the given one if no complete line follows it.
+     */
+    private long readLines(FileChannel channel, long offset, List<String> lines) throws IOException {
+        lines.clear();
+        long position = offset;
+        while (lines.size() < batchLines) {
+            buffer.clear();
+            int n = channel.read(buffer, position);
+            if (n <= 0) {
+                break;
+            }
+            byte[] bytes = buffer.array();
+            int start = 0;
+            for (int i = 0; i < n && lines.size() < batchLines; i++) {
+                if (bytes[i] == '\n') {
+                    int end = i > start && bytes[i - 1] == '\r' ? i - 1 : i;
+                    lines.add(new String(bytes, start, end - start, StandardCharsets.UTF_8));
+                    start = i + 1;
+                }
+            }
+            if (start == 0) {
+                if (n < buffer.capacity()) {
+                    // the last line is still being written
+                    break;
+                }
+                // a line longer than the buffer
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+                continue;
+            }
+            position += start;
+        }
+        return position;
+    }
+
+    private static File[] csvFiles(File folder) throws IOException {
+        File[] files = folder.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".csv");
+            }
+        });
+        if (files == null) {
+            throw new IOException("Cannot list the files of " + folder);
+        }
+        Arrays.sort(files);
+        return files;
+    }
+}
@@ -0,0 +1,86 @@
+package scrabble;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.client.Put;
+import scrabble.metrics.Timer;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes Puts to HBase tables through the regular write path.
+ *
+ * Auto flush is disabled, so the Puts are buffered on the client and only sent to the region servers
+ * whenever the buffer of a table grows beyond the configured number of bytes. The time of every call
+ * to the tables is recorded in a timer.
+ */
+public class TablePutSink implements PutSink {
+    public static final String FLUSH_BYTES_KEY = "scrabble.load.flush.bytes";
+
+    private final Configuration config;
+    private final long flushBytes;
+    private final Timer rpc;
+    private final Map<String, HTable> tables = new LinkedHashMap<>();
+
+    public TablePutSink(Configuration config) {
+        this(config, new Timer());
+    }
+
+    /**
+     * @param config The configuration of the tables.
+     * @param rpc    Receives the time of the puts and flushes.
+     */
+    public TablePutSink(Configuration config, Timer rpc) {
+        this.config = config;
+        this.flushBytes = config.getLong(FLUSH_BYTES_KEY, 8 * 1024 * 1024);
+        this.rpc = rpc;
+    }
+
+    @Override
+    public void write(String tableName, List<Put> puts) throws IOException {
+        HTable table = table(tableName);
+        long start = System.nanoTime();
+        // only sends the Puts when the write buffer is full
+        table.put(puts);
+        rpc.recordSince(start);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        for (HTable table : tables.values()) {
+            long start = System.nanoTime();
+            table.flushCommits();
+            rpc.recordSince(start);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (HTable table : tables.values()) {
+            try {
+                table.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        tables.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private HTable table(String tableName) throws IOException {
+        HTable table = tables.get(tableName);
+        if (table == null) {
+            table = new HTable(config, tableName);
+            table.setAutoFlush(false, true);
+            table.setWriteBufferSize(flushBytes);
+            tables.put(tableName, table);
+        }
+        return table;
+    }
+}
@@ -0,0 +1,197 @@
+package scrabble;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.HConnection;
+import org.apache.hadoop.hbase.client.HTableInterface;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per tourney aggregates of the games, so query2 reads one small row per tourney instead of every game.
+ *
+ * Every tourney is one row of the "ScrabbleTourneyStats" table, keyed by its id encoded like in
+ * {@link RowKeyCodec}. The row has two families:
+ * - Appearances: one empty cell per (player, game) pair, the qualifier being both ids encoded in 8 bytes.
+ *   Writing a game twice writes the same cells again, so reloading data is harmless, and since these are
+ *   plain Puts they can be bulk loaded as well.
+ * - Stats: the column "repeated" holds the sorted ids of the players that appeared in more than one game
+ *   of the tourney, as 4 byte ints. It is always written, empty if there are no such players.
+ *
+ * The Appearances are written by the loaders along with the games. The loaders only remember which tourneys
+ * they touched, and {@link #refresh(HConnection)} recomputes the "repeated" column of those tourneys
+ * from their Appearances once the load is done.
+ */
+public class TourneyAggregates {
+    public static final String TABLE_NAME = "ScrabbleTourneyStats";
+
+    // Column families
+    public static final byte[] APPEARANCES = Bytes.toBytes("Appearances");
+    public static final byte[] STATS = Bytes.toBytes("Stats");
+
+    // Stats qualifiers
+    public static final byte[] REPEATED = Bytes.toBytes("repeated");
+
+    private static final int REFRESH_BATCH = 100;
+
+    private final Set<Integer> touched = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+
+    /**
+     * @return The row key of a tourney.
+     */
+    public static byte[] rowKey(int tourneyId) {
+        byte[] key = new byte[4];
+        RowKeyCodec.encodeInt(tourneyId, key, 0);
+        return key;
+    }
+
+    /**
+     * Builds the appearances of the two players of a game, and remembers that its tourney has to be refreshed.
+     *
+     * @param values The fields of the csv line of the game.
+     * @return The Put adding the appearances to the row of the tourney.
+     */
+    public Put toPut(String[] values) {
+        return toPut(Integer.parseInt(values[ScrabbleSchema.COL_TOURNEYID]),
+                     Integer.parseInt(values[ScrabbleSchema.COL_GAMEID]),
+                     Integer.parseInt(values[ScrabbleSchema.COL_WINNER_ID]),
+                     Integer.parseInt(values[ScrabbleSchema.COL_LOSER_ID]));
+    }
+
+    /**
+     * Builds the appearances of the two players of a game, and remembers that its tourney has to be refreshed.
+     *
+     * @return The Put adding the appearances to the row of the tourney.
+     */
+    public Put toPut(int tourneyId, int gameId, int winnerId, int loserId) {
+        Put p = new Put(rowKey(tourneyId));
+        p.add(APPEARANCES, appearance(winnerId, gameId), Bytes.EMPTY_BYTE_ARRAY);
+        p.add(APPEARANCES, appearance(loserId, gameId), Bytes.EMPTY_BYTE_ARRAY);
+        touched.add(tourneyId);
+        return p;
+    }
+
+    /**
+     * @return The number of tourneys touched since the last refresh.
+     */
+    public int getTouched() {
+        return touched.size();
+    }
+
+    /**
+     * Recomputes the repeated players of every tourney touched since the last refresh.
+     *
+     * @param connection The connection the table is taken from.
+     * @throws IOException
+     */
+    public void refresh(HConnection connection) throws IOException {
+        List<Integer> tourneys = new ArrayList<>(touched);
+        Collections.sort(tourneys);
+
+        HTableInterface table = connection.getTable(TABLE_NAME);
+        try {
+            for (int from = 0; from < tourneys.size(); from += REFRESH_BATCH) {
+                List<Integer> batch = tourneys.subList(from, Math.min(from + REFRESH_BATCH, tourneys.size()));
+
+                List<Get> gets = new ArrayList<>(batch.size());
+                for (int tourneyId : batch) {
+                    Get get = new Get(rowKey(tourneyId));
+                    get.addFamily(APPEARANCES);
+                    gets.add(get);
+                }
+
+                List<Put> puts = new ArrayList<>(batch.size());
+                for (Result result : table.get(gets)) {
+                    if (result.isEmpty()) {
+                        continue;
+                    }
+                    Put p = new Put(result.getRow());
+                    p.add(STATS, REPEATED, encode(repeatedPlayers(result)));
+                    puts.add(p);
+                }
+                table.put(puts);
+            }
+        } finally {
+            table.close();
+        }
+        touched.removeAll(tourneys);
+    }
+
+    /**
+     * Computes the repeated players of tourneys from their Appearances, for the tourneys whose "repeated" column has
+     * not been written yet: the load of their games stopped before the refresh, or a refresh is still to come.
+     *
+     * @param connection The connection the table is taken from.
+     * @param rows       The row keys of the tourneys.
+     * @return The sorted ids of the repeated players of every tourney that has appearances.
+     * @throws IOException
+     */
+    public static List<int[]> repeatedPlayers(HConnection connection, List<byte[]> rows) throws IOException {
+        List<int[]> repeated = new ArrayList<>(rows.size());
+        HTableInterface table = connection.getTable(TABLE_NAME);
+        try {
+            for (int from = 0; from < rows.size(); from += REFRESH_BATCH) {
+                List<Get> gets = new ArrayList<>();
+                for (byte[] row : rows.subList(from, Math.min(from + REFRESH_BATCH, rows.size()))) {
+                    Get get = new Get(row);
+                    get.addFamily(APPEARANCES);
+                    gets.add(get);
+                }
+                for (Result result : table.get(gets)) {
+                    if (!result.isEmpty()) {
+                        repeated.add(repeatedPlayers(result));
+                    }
+                }
+            }
+        } finally {
+            table.close();
+        }
+        return repeated;
+    }
+
+    /**
+     * @param appearances The Appearances family of a tourney.
+     * @return The sorted ids of the players appearing in more than one game.
+     */
+    static int[] repeatedPlayers(Result appearances) {
+        // the qualifiers are sorted by player first, so the games of a player are next to each other
+        int[] players = new int[appearances.size()];
+        int count = 0;
+        int games = 0;
+        int previous = 0;
+        for (Cell cell : appearances.rawCells()) {
+            int player = RowKeyCodec.decodeInt(cell.getQualifierArray(), cell.getQualifierOffset());
+            if (games > 0 && player == previous) {
+                if (++games == 2) {
+                    players[count++] = player;
+                }
+            } else {
+                previous = player;
+                games = 1;
+            }
+        }
+        return Arrays.copyOf(players, count);
+    }
+
+    /**
+     * @return The players of the "repeated" column as 4 byte ints.
+     */
+    public static byte[] encode(int[] players) {
+        byte[] bytes = new byte[players.length * 4];
+        for (int i = 0; i < players.length; i++) {
+            RowKeyCodec.encodeInt(players[i], bytes, i * 4);
+        }
+        return bytes;
+    }
+
+    private static byte[] appearance(int playerId, int gameId) {
+        byte[] qualifier = new byte[RowKeyCodec.KEY_LENGTH];
+        RowKeyCodec.encode(playerId, gameId, qualifier, 0);
+        return qualifier;
+    }
+}
@@ -0,0 +1,75 @@
+package scrabble;
+
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * Secondary index of the games by tournament and winner name, so query1 is answered with a single Get
+ * instead of a scan of the whole tournament.
+ *
+ * Every (tourney, winner name) pair is one row of the "ScrabbleWinnerIndex" table. Its key is the tourney
+ * id encoded like in {@link RowKeyCodec}, followed by the name in UTF-8. Since the name always ends the key,
+ * no separator is needed. If the games table is salted, the index key gets the same bucket prefix.
+ *
+ * The row holds one column per game the player won in the tournament: the qualifier is the 8 byte key of
+ * the game and the value is the id of the loser. The columns therefore come back in the order of the games.
+ */
+public class WinnerIndex {
+    public static final String TABLE_NAME = "ScrabbleWinnerIndex";
+
+    // Column family
+    public static final byte[] GAMES = Bytes.toBytes("Games");
+
+    private final KeyLayout layout;
+
+    /**
+     * @param layout The layout of the games table, whose salt buckets are used for the index as well.
+     */
+    public WinnerIndex(KeyLayout layout) {
+        this.layout = layout;
+    }
+
+    /**
+     * @return The row key of the index entry of a winner in a tournament.
+     */
+    public byte[] rowKey(int tourneyId, String winnerName) {
+        byte[] name = Bytes.toBytes(winnerName);
+        int offset = layout.isSalted() ? 1 : 0;
+
+        byte[] key = new byte[offset + 4 + name.length];
+        if (layout.isSalted()) {
+            key[0] = (byte) layout.bucket(tourneyId);
+        }
+        RowKeyCodec.encodeInt(tourneyId, key, offset);
+        System.arraycopy(name, 0, key, offset + 4, name.length);
+        return key;
+    }
+
+    /**
+     * Builds the index entry of a game.
+     *
+     * @param values The fields of the csv line of the game.
+     * @return The Put adding the game to the row of its winner.
+     */
+    public Put toPut(String[] values) {
+        int tourneyId = Integer.parseInt(values[ScrabbleSchema.COL_TOURNEYID]);
+        int gameId = Integer.parseInt(values[ScrabbleSchema.COL_GAMEID]);
+        return toPut(tourneyId, gameId, values[ScrabbleSchema.COL_WINNER_NAME],
+                     Bytes.toBytes(values[ScrabbleSchema.COL_LOSER_ID]));
+    }
+
+    /**
+     * Builds the index entry of a game.
+     *
+     * @param loserId The id of the loser, as stored in the Loser:id column.
+     * @return The Put adding the game to the row of its winner.
+     */
+    public Put toPut(int tourneyId, int gameId, String winnerName, byte[] loserId) {
+        byte[] gameKey = new byte[RowKeyCodec.KEY_LENGTH];
+        RowKeyCodec.encode(tourneyId, gameId, gameKey, 0);
+
+        Put p = new Put(rowKey(tourneyId, winnerName));
+        p.add(GAMES, gameKey, loserId);
+        return p;
+    }
+}
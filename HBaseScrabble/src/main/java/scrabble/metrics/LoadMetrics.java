@@ -0,0 +1,96 @@
+package scrabble.metrics;
+
+import scrabble.LoadStats;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Where the time of the loads goes, as timers of the stages of the loader:
+ * - parse: splitting a chunk of csv lines into fields.
+ * - build: turning the fields of a chunk into Puts.
+ * - flush: handing the Puts of a chunk to the sink.
+ * - rpc: the calls of the sink to the tables. Most only buffer the Puts, the ones sending the write buffer to the
+ *   region servers make the tail of the histogram.
+ *
+ * The rows and bytes are counted over all the loads, and the rates are the ones of the running or last load.
+ */
+public class LoadMetrics implements LoadMetricsMXBean {
+    private final Timer parse = new Timer();
+    private final Timer build = new Timer();
+    private final Timer flush = new Timer();
+    private final Timer rpc = new Timer();
+
+    private final AtomicLong rowsLoaded = new AtomicLong();
+    private final AtomicLong bytesLoaded = new AtomicLong();
+    private final AtomicLong rowsSkipped = new AtomicLong();
+    private volatile LoadStats current;
+
+    public Timer getParse() {
+        return parse;
+    }
+
+    public Timer getBuild() {
+        return build;
+    }
+
+    public Timer getFlush() {
+        return flush;
+    }
+
+    public Timer getRpc() {
+        return rpc;
+    }
+
+    /**
+     * Starts following a load.
+     */
+    public void started(LoadStats stats) {
+        current = stats;
+    }
+
+    /**
+     * Adds the counters of a finished load to the totals.
+     */
+    public void finished(LoadStats stats) {
+        rowsLoaded.addAndGet(stats.getRowsWritten());
+        bytesLoaded.addAndGet(stats.getBytesRead());
+        rowsSkipped.addAndGet(stats.getRowsSkipped());
+    }
+
+    @Override
+    public long getRowsLoaded() {
+        LoadStats stats = current;
+        // the running load is not in the totals yet
+        return rowsLoaded.get() + (stats != null && !stats.isFinished() ? stats.getRowsWritten() : 0);
+    }
+
+    @Override
+    public long getBytesLoaded() {
+        LoadStats stats = current;
+        return bytesLoaded.get() + (stats != null && !stats.isFinished() ? stats.getBytesRead() : 0);
+    }
+
+    @Override
+    public long getRowsSkipped() {
+        LoadStats stats = current;
+        return rowsSkipped.get() + (stats != null && !stats.isFinished() ? stats.getRowsSkipped() : 0);
+    }
+
+    @Override
+    public double getRowsPerSecond() {
+        LoadStats stats = current;
+        return stats == null ? 0 : stats.getRowsPerSecond();
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        LoadStats stats = current;
+        return stats == null ? 0 : stats.getMegabytesPerSecond() * 1024 * 1024;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("rows=%d bytes=%d skipped=%d rows/s=%.0f bytes/s=%.0f", getRowsLoaded(),
+                             getBytesLoaded(), getRowsSkipped(), getRowsPerSecond(), getBytesPerSecond());
+    }
+}
@@ -0,0 +1,17 @@
+package scrabble.metrics;
+
+/**
+ * The JMX view of a {@link LoadMetrics}.
+ */
+public interface LoadMetricsMXBean {
+
+    long getRowsLoaded();
+
+    long getBytesLoaded();
+
+    long getRowsSkipped();
+
+    double getRowsPerSecond();
+
+    double getBytesPerSecond();
+}
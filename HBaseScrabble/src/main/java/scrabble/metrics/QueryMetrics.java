@@ -0,0 +1,73 @@
+package scrabble.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The latency of a query, and how many rows it read from HBase compared to how many it returned.
+ *
+ * The rows read are the rows the region servers sent back to the client, after their filters: the 0.98 client is
+ * not told how many rows a filter of the region servers examined. The selectivity therefore only shows the filtering
+ * done by the client, e.g. the tourneys of query2 reduced to their common players or the tourneys read in the gaps
+ * of a batch. For the scans filtered on the region servers, query3 and query1 without the winner index, it stays
+ * close to 1 however selective the filter is.
+ *
+ * The failed runs are timed like the others, so a query failing after a long wait shows in the percentiles, and
+ * counted apart. Their rows are not counted, the selectivity is the one of the runs that succeeded.
+ */
+public class QueryMetrics extends Timer implements QueryMetricsMXBean {
+    /**
+     * The size of the result of a run that failed.
+     */
+    public static final long FAILED = -1;
+
+    private final AtomicLong rowsRead = new AtomicLong();
+    private final AtomicLong rowsReturned = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * Records one run of the query.
+     *
+     * @param startNanos   The value of System.nanoTime() when the query started.
+     * @param rowsRead     The rows read from HBase.
+     * @param rowsReturned The size of the result, {@link #FAILED} if the query failed.
+     */
+    public void record(long startNanos, long rowsRead, long rowsReturned) {
+        recordSince(startNanos);
+        if (rowsReturned == FAILED) {
+            failures.incrementAndGet();
+            return;
+        }
+        this.rowsRead.addAndGet(rowsRead);
+        this.rowsReturned.addAndGet(rowsReturned);
+    }
+
+    @Override
+    public long getRowsRead() {
+        return rowsRead.get();
+    }
+
+    @Override
+    public long getRowsReturned() {
+        return rowsReturned.get();
+    }
+
+    @Override
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * @return The rows returned per row sent back by the region servers, see the limitation above.
+     */
+    @Override
+    public double getSelectivity() {
+        long read = rowsRead.get();
+        return read == 0 ? 0 : rowsReturned.get() / (double) read;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s rowsRead=%d rowsReturned=%d failures=%d", super.toString(), getRowsRead(),
+                             getRowsReturned(), getFailures());
+    }
+}
@@ -0,0 +1,15 @@
+package scrabble.metrics;
+
+/**
+ * The JMX view of a {@link QueryMetrics}.
+ */
+public interface QueryMetricsMXBean extends TimerMXBean {
+
+    long getRowsRead();
+
+    long getRowsReturned();
+
+    long getFailures();
+
+    double getSelectivity();
+}
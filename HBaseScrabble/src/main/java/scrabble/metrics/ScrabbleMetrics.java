@@ -0,0 +1,152 @@
+package scrabble.metrics;
+
+import org.apache.hadoop.conf.Configuration;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * All the metrics of a client: the loads, every query, and the scans of the regions.
+ *
+ * The metrics are registered as MXBeans in the platform MBean server, so they can be read with jconsole or any JMX
+ * client, under these names:
+ * - scrabble:type=Load
+ * - scrabble:type=LoadStage,name=parse|build|flush|rpc
+ * - scrabble:type=Query,name=query1|query2|query3|countRecords
+ * - scrabble:type=Scan,name=region, the time of every sub-scan of a parallel scan
+ *
+ * They can also be printed periodically, see {@link #REPORT_SECONDS_KEY}.
+ */
+public class ScrabbleMetrics implements Closeable {
+    public static final String JMX_KEY = "scrabble.metrics.jmx";
+    public static final String REPORT_SECONDS_KEY = "scrabble.metrics.report.seconds";
+
+    private static final String[] QUERIES = {"query1", "query2", "query3", "query1Batch", "query3Batch",
+                                             "countRecords"};
+
+    private final LoadMetrics load = new LoadMetrics();
+    private final Map<String, QueryMetrics> queries = new LinkedHashMap<>();
+    private final Timer regionScans = new Timer();
+
+    private final List<ObjectName> registered = new ArrayList<>();
+    private ScheduledExecutorService reporter;
+
+    public ScrabbleMetrics() {
+        for (String query : QUERIES) {
+            queries.put(query, new QueryMetrics());
+        }
+    }
+
+    /**
+     * Registers the metrics in JMX and starts the periodic report, as configured.
+     */
+    public void start(Configuration config) {
+        if (config.getBoolean(JMX_KEY, true)) {
+            registerMBeans();
+        }
+        long seconds = config.getLong(REPORT_SECONDS_KEY, 0);
+        if (seconds > 0) {
+            startReporter(seconds);
+        }
+    }
+
+    public LoadMetrics getLoad() {
+        return load;
+    }
+
+    /**
+     * @param name One of query1, query2, query3, query1Batch, query3Batch or countRecords.
+     */
+    public QueryMetrics getQuery(String name) {
+        QueryMetrics metrics = queries.get(name);
+        if (metrics == null) {
+            throw new IllegalArgumentException("Unknown query " + name);
+        }
+        return metrics;
+    }
+
+    public Timer getRegionScans() {
+        return regionScans;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder("Metrics:");
+        report.append("\n  load: ").append(load);
+        report.append("\n  load.parse: ").append(load.getParse());
+        report.append("\n  load.build: ").append(load.getBuild());
+        report.append("\n  load.flush: ").append(load.getFlush());
+        report.append("\n  load.rpc: ").append(load.getRpc());
+        for (Map.Entry<String, QueryMetrics> query : queries.entrySet()) {
+            report.append("\n  ").append(query.getKey()).append(": ").append(query.getValue());
+        }
+        report.append("\n  scan.region: ").append(regionScans);
+        return report.toString();
+    }
+
+    /**
+     * Stops the report and unregisters the MXBeans.
+     */
+    @Override
+    public void close() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registered) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                // already gone
+            }
+        }
+        registered.clear();
+    }
+
+    private void registerMBeans() {
+        register("scrabble:type=Load", load);
+        register("scrabble:type=LoadStage,name=parse", load.getParse());
+        register("scrabble:type=LoadStage,name=build", load.getBuild());
+        register("scrabble:type=LoadStage,name=flush", load.getFlush());
+        register("scrabble:type=LoadStage,name=rpc", load.getRpc());
+        for (Map.Entry<String, QueryMetrics> query : queries.entrySet()) {
+            register("scrabble:type=Query,name=" + query.getKey(), query.getValue());
+        }
+        register("scrabble:type=Scan,name=region", regionScans);
+    }
+
+    private void register(String name, Object mbean) {
+        try {
+            ObjectName objectName = new ObjectName(name);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(mbean, objectName);
+                registered.add(objectName);
+            }
+        } catch (JMException e) {
+            System.out.println("Could not register " + name + " in JMX: " + e.getMessage());
+        }
+    }
+
+    private void startReporter(long seconds) {
+        reporter = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "metrics-reporter");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        reporter.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                System.out.println(ScrabbleMetrics.this);
+            }
+        }, seconds, seconds, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,135 @@
+package scrabble.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations, safe to update from several threads without locking.
+ *
+ * The durations are counted in buckets whose width grows with the duration: up to 32 nanoseconds every value has its
+ * own bucket, above that every power of two is cut into 16 buckets. A percentile is therefore off by at most 1/16 of
+ * its value, and the histogram takes a fixed 8 KB whatever the number and the range of the durations.
+ *
+ * The histogram counts every duration since it was created.
+ */
+public class Timer implements TimerMXBean {
+    private static final int LINEAR = 32;
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = LINEAR + (63 - 5) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos The duration in nanoseconds.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets.incrementAndGet(bucket(nanos));
+        count.incrementAndGet();
+        total.addAndGet(nanos);
+        long current;
+        while (nanos > (current = max.get()) && !max.compareAndSet(current, nanos)) {
+            // another thread raised the max in the meantime, check again
+        }
+    }
+
+    /**
+     * Records the time elapsed since the given start.
+     *
+     * @param startNanos A value of System.nanoTime().
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @param percentile The percentile, between 0 and 100.
+     * @return The duration in nanoseconds below which the given percentage of the durations are, 0 if none was recorded.
+     */
+    public long percentileNanos(double percentile) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(n * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(max.get(), upperBound(i));
+            }
+        }
+        return max.get();
+    }
+
+    @Override
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getTotalNanos() {
+        return total.get();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        long n = count.get();
+        return n == 0 ? 0 : total.get() / (double) n / 1000000.0;
+    }
+
+    @Override
+    public double getP50Millis() {
+        return percentileNanos(50) / 1000000.0;
+    }
+
+    @Override
+    public double getP99Millis() {
+        return percentileNanos(99) / 1000000.0;
+    }
+
+    @Override
+    public double getP999Millis() {
+        return percentileNanos(99.9) / 1000000.0;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return max.get() / 1000000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.3fms p50=%.3fms p99=%.3fms p999=%.3fms max=%.3fms", getCount(),
+                             getMeanMillis(), getP50Millis(), getP99Millis(), getP999Millis(), getMaxMillis());
+    }
+
+    private static int bucket(long nanos) {
+        if (nanos < LINEAR) {
+            return (int) nanos;
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(nanos);
+        int shift = msb - SUB_BUCKET_BITS;
+        return LINEAR + (msb - 5) * SUB_BUCKETS + (int) ((nanos >>> shift) - SUB_BUCKETS);
+    }
+
+    /**
+     * @return The largest duration counted in the bucket.
+     */
+    private static long upperBound(int bucket) {
+        if (bucket < LINEAR) {
+            return bucket;
+        }
+        int msb = 5 + (bucket - LINEAR) / SUB_BUCKETS;
+        int shift = msb - SUB_BUCKET_BITS;
+        long subBucket = SUB_BUCKETS + (bucket - LINEAR) % SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,19 @@
+package scrabble.metrics;
+
+/**
+ * The JMX view of a {@link Timer}. The durations are in milliseconds.
+ */
+public interface TimerMXBean {
+
+    long getCount();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP99Millis();
+
+    double getP999Millis();
+
+    double getMaxMillis();
+}
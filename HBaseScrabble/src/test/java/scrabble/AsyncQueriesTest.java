@@ -0,0 +1,105 @@
+package scrabble;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AsyncQueriesTest {
+
+    /**
+     * Answers query3 with its tourney id, once the latch is released, and fails query2.
+     */
+    private static final class LatchedQueries implements ScrabbleQueries {
+        private final CountDownLatch latch;
+
+        LatchedQueries(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public List<String> query1(String tourneyid, String winnername) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<String> query2(String firsttourneyid, String lasttourneyid) throws IOException {
+            throw new IOException("Region server down");
+        }
+
+        @Override
+        public List<String> query3(String tourneyid) throws IOException {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            return Collections.singletonList(tourneyid);
+        }
+
+        @Override
+        public long countRecords() {
+            return 0;
+        }
+    }
+
+    private static Configuration config(int threads) {
+        Configuration config = new Configuration();
+        config.setInt(AsyncQueries.THREADS_KEY, threads);
+        return config;
+    }
+
+    @Test
+    public void queriesCompleteWithTheirResults() throws Exception {
+        try (AsyncQueries async = new AsyncQueries(config(2), new LatchedQueries(new CountDownLatch(0)))) {
+            List<CompletableFuture<List<String>>> futures = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                futures.add(async.query3(Integer.toString(i)));
+            }
+            for (int i = 0; i < 10; i++) {
+                assertEquals(Collections.singletonList(Integer.toString(i)), futures.get(i).get(10, TimeUnit.SECONDS));
+            }
+        }
+    }
+
+    @Test
+    public void failedQueryCompletesExceptionally() throws Exception {
+        try (AsyncQueries async = new AsyncQueries(config(1), new LatchedQueries(new CountDownLatch(0)))) {
+            async.query2("1", "2").get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void closeCompletesTheQueriesNotRunYet() throws Exception {
+        CountDownLatch never = new CountDownLatch(1);
+        AsyncQueries async = new AsyncQueries(config(1), new LatchedQueries(never));
+        List<CompletableFuture<List<String>>> futures = new ArrayList<>();
+        // the first one blocks the thread, the others wait in the queue
+        for (int i = 0; i < 20; i++) {
+            futures.add(async.query3(Integer.toString(i)));
+        }
+        async.close();
+        for (CompletableFuture<List<String>> future : futures) {
+            assertTrue(future.isDone());
+            assertTrue(future.isCompletedExceptionally());
+        }
+
+        CompletableFuture<List<String>> late = async.query3("21");
+        assertTrue(late.isCancelled());
+    }
+}
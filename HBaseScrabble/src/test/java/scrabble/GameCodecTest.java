@@ -0,0 +1,283 @@
+package scrabble;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+import scrabble.GameCodec.CellFormat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static scrabble.ScrabbleSchema.*;
+
+public class GameCodecTest {
+    private static final byte[] ROW = {0, 1, 2, 3, 4, 5, 6, 7};
+
+    // family, qualifier and csv column of every column of a game
+    private static final Object[][] COLUMNS = {
+            {GAME, GAMEID, COL_GAMEID}, {GAME, TOURNEYID, COL_TOURNEYID}, {GAME, TIE, COL_TIE},
+            {GAME, ROUND, COL_ROUND}, {GAME, DIVISION, COL_DIVISION}, {GAME, DATE, COL_DATE},
+            {GAME, LEXICON, COL_LEXICON},
+            {WINNER, ID, COL_WINNER_ID}, {WINNER, NAME, COL_WINNER_NAME}, {WINNER, SCORE, COL_WINNER_SCORE},
+            {WINNER, OLDRATING, COL_WINNER_OLDRATING}, {WINNER, NEWRATING, COL_WINNER_NEWRATING},
+            {WINNER, POS, COL_WINNER_POS},
+            {LOSER, ID, COL_LOSER_ID}, {LOSER, NAME, COL_LOSER_NAME}, {LOSER, SCORE, COL_LOSER_SCORE},
+            {LOSER, OLDRATING, COL_LOSER_OLDRATING}, {LOSER, NEWRATING, COL_LOSER_NEWRATING},
+            {LOSER, POS, COL_LOSER_POS}};
+
+    private static final int[] INT_COLUMNS = {COL_GAMEID, COL_TOURNEYID, COL_ROUND, COL_WINNER_ID, COL_WINNER_SCORE,
+                                              COL_WINNER_OLDRATING, COL_WINNER_NEWRATING, COL_WINNER_POS, COL_LOSER_ID,
+                                              COL_LOSER_SCORE, COL_LOSER_OLDRATING, COL_LOSER_NEWRATING, COL_LOSER_POS};
+
+    private static String[] game() {
+        String[] values = new String[CSV_COLUMNS];
+        values[COL_GAMEID] = "123";
+        values[COL_TOURNEYID] = "42153";
+        values[COL_TIE] = "False";
+        values[COL_WINNER_ID] = "7";
+        values[COL_WINNER_NAME] = "Alice";
+        values[COL_WINNER_SCORE] = "412";
+        values[COL_WINNER_OLDRATING] = "1500";
+        values[COL_WINNER_NEWRATING] = "1512";
+        values[COL_WINNER_POS] = "1";
+        values[COL_LOSER_ID] = "8";
+        values[COL_LOSER_NAME] = "Bob";
+        values[COL_LOSER_SCORE] = "377";
+        values[COL_LOSER_OLDRATING] = "1490";
+        values[COL_LOSER_NEWRATING] = "1478";
+        values[COL_LOSER_POS] = "2";
+        values[COL_ROUND] = "3";
+        values[COL_DIVISION] = "A";
+        values[COL_DATE] = "2004-06-19";
+        values[COL_LEXICON] = "TWL";
+        return values;
+    }
+
+    private static Result result(Put put) {
+        List<Cell> cells = new ArrayList<>();
+        for (List<Cell> family : put.getFamilyCellMap().values()) {
+            cells.addAll(family);
+        }
+        return Result.create(cells);
+    }
+
+    private static void assertRoundTrip(GameCodec codec, String[] values) {
+        Result result = result(codec.toPut(ROW, values));
+        for (Object[] column : COLUMNS) {
+            byte[] family = (byte[]) column[0];
+            byte[] qualifier = (byte[]) column[1];
+            String expected = values[(Integer) column[2]];
+            assertEquals(codec.getFormat() + " " + Bytes.toString(qualifier), expected,
+                         codec.getString(result, family, qualifier));
+
+            Cell cell = result.getColumnLatestCell(family, codec.qualifier(family, qualifier));
+            assertTrue(codec.contains(cell, qualifier));
+            if (!expected.isEmpty() && isInt((Integer) column[2])) {
+                assertEquals(Integer.parseInt(expected), codec.getInt(cell, qualifier));
+            }
+        }
+    }
+
+    private static boolean isInt(int csvColumn) {
+        for (int column : INT_COLUMNS) {
+            if (column == csvColumn) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void roundTrip() {
+        for (CellFormat format : CellFormat.values()) {
+            assertRoundTrip(GameCodec.of(format), game());
+        }
+    }
+
+    @Test
+    public void edgeInts() {
+        for (CellFormat format : CellFormat.values()) {
+            for (String value : new String[]{"0", "-1", "1", "-2147483647", "2147483647", "-42153"}) {
+                String[] values = game();
+                for (int column : INT_COLUMNS) {
+                    values[column] = value;
+                }
+                assertRoundTrip(GameCodec.of(format), values);
+            }
+        }
+    }
+
+    @Test
+    public void minValueIsStoredAsColumnOnly() {
+        String[] values = game();
+        values[COL_WINNER_SCORE] = "-2147483648";
+        assertRoundTrip(GameCodec.of(CellFormat.COLUMNS), values);
+        try {
+            // the packed format would read it back as an empty field
+            GameCodec.of(CellFormat.PACKED).toPut(ROW, values);
+            fail();
+        } catch (NumberFormatException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void emptyFields() {
+        for (CellFormat format : CellFormat.values()) {
+            GameCodec codec = GameCodec.of(format);
+            String[] values = game();
+            values[COL_WINNER_NAME] = "";
+            values[COL_DIVISION] = "";
+            values[COL_LOSER_SCORE] = "";
+            values[COL_ROUND] = "";
+            assertRoundTrip(codec, values);
+
+            Result result = result(codec.toPut(ROW, values));
+            Cell cell = result.getColumnLatestCell(LOSER, codec.qualifier(LOSER, SCORE));
+            try {
+                codec.getInt(cell, SCORE);
+                fail(format + " read an int from an empty field");
+            } catch (NumberFormatException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void missingFamily() {
+        for (CellFormat format : CellFormat.values()) {
+            GameCodec codec = GameCodec.of(format);
+            List<Cell> cells = new ArrayList<>();
+            for (Cell cell : result(codec.toPut(ROW, game())).rawCells()) {
+                if (!Bytes.equals(cell.getFamilyArray(), cell.getFamilyOffset(), cell.getFamilyLength(),
+                                  LOSER, 0, LOSER.length)) {
+                    cells.add(cell);
+                }
+            }
+            Result result = Result.create(cells);
+            assertNull(codec.getString(result, LOSER, ID));
+            assertEquals("7", codec.getString(result, WINNER, ID));
+        }
+    }
+
+    @Test
+    public void booleans() {
+        for (CellFormat format : CellFormat.values()) {
+            for (String value : new String[]{"True", "False"}) {
+                String[] values = game();
+                values[COL_TIE] = value;
+                assertRoundTrip(GameCodec.of(format), values);
+            }
+        }
+        // the packed format normalizes the case
+        String[] values = game();
+        values[COL_TIE] = "true";
+        GameCodec packed = GameCodec.of(CellFormat.PACKED);
+        assertEquals("True", packed.getString(result(packed.toPut(ROW, values)), GAME, TIE));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void packedRejectsNonBooleans() {
+        String[] values = game();
+        values[COL_TIE] = "maybe";
+        GameCodec.of(CellFormat.PACKED).toPut(ROW, values);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void packedRejectsNonInts() {
+        String[] values = game();
+        values[COL_WINNER_ID] = "seven";
+        GameCodec.of(CellFormat.PACKED).toPut(ROW, values);
+    }
+
+    @Test
+    public void varintLengths() {
+        GameCodec packed = GameCodec.of(CellFormat.PACKED);
+        // 1, 2 and 3 byte varints, and a name longer in UTF-8 bytes than in chars
+        for (int length : new int[]{0, 1, 127, 128, 16383, 16384, 100000}) {
+            StringBuilder name = new StringBuilder();
+            for (int i = 0; i < length; i++) {
+                name.append((char) ('a' + i % 26));
+            }
+            String[] values = game();
+            values[COL_WINNER_NAME] = name.toString();
+            values[COL_DIVISION] = name.toString();
+            assertRoundTrip(packed, values);
+
+            Result result = result(packed.toPut(ROW, values));
+            Cell winner = result.getColumnLatestCell(WINNER, GameCodec.PACKED);
+            int varint = length < 128 ? 1 : length < 16384 ? 2 : 3;
+            assertEquals(varint + length + 5 * 4, winner.getValueLength());
+        }
+        String[] values = game();
+        values[COL_WINNER_NAME] = "Zoë Ünal 鈴木";
+        assertRoundTrip(packed, values);
+    }
+
+    @Test
+    public void packedStoresOneCellPerFamily() {
+        Put put = GameCodec.of(CellFormat.PACKED).toPut(ROW, game());
+        assertEquals(3, put.size());
+        for (Cell cell : result(put).rawCells()) {
+            assertArrayEquals(GameCodec.PACKED, Bytes.copy(cell.getQualifierArray(), cell.getQualifierOffset(),
+                                                           cell.getQualifierLength()));
+        }
+        assertEquals(CSV_COLUMNS, GameCodec.of(CellFormat.COLUMNS).toPut(ROW, game()).size());
+    }
+
+    @Test
+    public void qualifiers() {
+        GameCodec packed = GameCodec.of(CellFormat.PACKED);
+        GameCodec columns = GameCodec.of(CellFormat.COLUMNS);
+        assertArrayEquals(GameCodec.PACKED, packed.qualifier(WINNER, NAME));
+        assertArrayEquals(NAME, columns.qualifier(WINNER, NAME));
+        // the families of other tables are not packed
+        assertArrayEquals(NAME, packed.qualifier(Bytes.toBytes("Stats"), NAME));
+
+        Result result = result(packed.toPut(ROW, game()));
+        Cell winner = result.getColumnLatestCell(WINNER, GameCodec.PACKED);
+        assertTrue(packed.contains(winner, SCORE));
+        assertFalse(packed.contains(winner, TIE));
+    }
+
+    @Test
+    public void getStringAgreesAcrossFormats() {
+        String[] values = game();
+        values[COL_TIE] = "True";
+        values[COL_LOSER_NAME] = "";
+        values[COL_LOSER_POS] = "";
+        Result packed = result(GameCodec.of(CellFormat.PACKED).toPut(ROW, values));
+        Result columns = result(GameCodec.of(CellFormat.COLUMNS).toPut(ROW, values));
+        for (Object[] column : COLUMNS) {
+            byte[] family = (byte[]) column[0];
+            byte[] qualifier = (byte[]) column[1];
+            assertEquals(GameCodec.of(CellFormat.COLUMNS).getString(columns, family, qualifier),
+                         GameCodec.of(CellFormat.PACKED).getString(packed, family, qualifier));
+        }
+    }
+
+    @Test
+    public void parseInt() {
+        for (String value : new String[]{"0", "-0", "7", "-7", "2147483647", "-2147483648", "0042153"}) {
+            byte[] bytes = Bytes.toBytes("x" + value + "x");
+            assertEquals(Integer.parseInt(value), GameCodec.parseInt(bytes, 1, bytes.length - 2));
+        }
+        for (String value : new String[]{"", "-", "2147483648", "-2147483649", "12a", "+1", " 1"}) {
+            byte[] bytes = Bytes.toBytes(value);
+            try {
+                GameCodec.parseInt(bytes, 0, bytes.length);
+                fail(value);
+            } catch (NumberFormatException e) {
+                // expected
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package scrabble;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.io.hfile.CacheConfig;
+import org.apache.hadoop.hbase.io.hfile.HFile;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HFilePutSinkTest {
+    private static final String TABLE = "ScrabbleGames";
+    private static final int TOURNEYS = 200;
+    private static final int GAMES = 50;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writesOneHFilePerRegionAndFamily() throws Exception {
+        Configuration config = new Configuration();
+        // small enough for the games to be spilled to many runs
+        config.setLong(HFilePutSink.CHUNK_BYTES_KEY, 64 * 1024);
+        FileSystem fs = FileSystem.getLocal(config);
+        Path outputDir = new Path(folder.getRoot().getAbsolutePath(), "hfiles");
+
+        KeyLayout layout = new KeyLayout(4, KeyLayout.KeyFormat.BINARY);
+        List<byte[]> startKeys = new ArrayList<>();
+        startKeys.add(HConstants.EMPTY_START_ROW);
+        startKeys.addAll(layout.bucketSplits());
+        byte[][] regions = startKeys.toArray(new byte[startKeys.size()][]);
+
+        int cells = 0;
+        try (HFilePutSink sink = new HFilePutSink(config, outputDir, Collections.emptyList(),
+                                                  Collections.singletonMap(TABLE, regions))) {
+            // the tourneys are written in order, so every run covers the key range of all the regions
+            for (int tourneyId = 0; tourneyId < TOURNEYS; tourneyId++) {
+                List<Put> puts = new ArrayList<>();
+                for (int gameId = 0; gameId < GAMES; gameId++) {
+                    Put put = new Put(layout.rowKey(tourneyId, gameId));
+                    put.add(ScrabbleSchema.GAME, ScrabbleSchema.ROUND, Bytes.toBytes(gameId));
+                    put.add(ScrabbleSchema.WINNER, ScrabbleSchema.NAME, Bytes.toBytes("player" + gameId));
+                    puts.add(put);
+                }
+                sink.write(TABLE, puts);
+                cells += GAMES;
+            }
+            sink.flush();
+
+            assertTrue("expected several runs, got " + sink.getRunsWritten(), sink.getRunsWritten() > 1);
+            assertEquals(2 * regions.length, sink.getFilesWritten());
+        }
+
+        CacheConfig cacheConfig = new CacheConfig(config);
+        for (byte[] family : new byte[][]{ScrabbleSchema.GAME, ScrabbleSchema.WINNER}) {
+            FileStatus[] files = fs.listStatus(new Path(new Path(outputDir, TABLE), Bytes.toString(family)));
+            assertEquals(regions.length, files.length);
+
+            boolean[] covered = new boolean[regions.length];
+            long entries = 0;
+            for (FileStatus file : files) {
+                HFile.Reader reader = HFile.createReader(fs, file.getPath(), cacheConfig, config);
+                try {
+                    reader.loadFileInfo();
+                    int region = layout.bucket(layout.tourneyId(reader.getFirstRowKey()));
+                    assertEquals(region, layout.bucket(layout.tourneyId(reader.getLastRowKey())));
+                    assertFalse("two HFiles in region " + region, covered[region]);
+                    covered[region] = true;
+                    entries += reader.getEntries();
+                } finally {
+                    reader.close();
+                }
+            }
+            assertEquals(cells, entries);
+        }
+        assertFalse(fs.exists(new Path(outputDir, "_runs")));
+    }
+}
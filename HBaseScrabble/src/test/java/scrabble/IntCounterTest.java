@@ -0,0 +1,114 @@
+package scrabble;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class IntCounterTest {
+
+    private static int[] repeated(Map<Integer, Integer> counts) {
+        List<Integer> keys = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> entry : counts.entrySet()) {
+            if (entry.getValue() > 1) {
+                keys.add(entry.getKey());
+            }
+        }
+        Collections.sort(keys);
+        int[] repeated = new int[keys.size()];
+        for (int i = 0; i < repeated.length; i++) {
+            repeated[i] = keys.get(i);
+        }
+        return repeated;
+    }
+
+    @Test
+    public void counts() {
+        IntCounter counter = new IntCounter();
+        counter.increment(0);
+        counter.increment(-5);
+        counter.increment(-5);
+        counter.add(Integer.MIN_VALUE, 3);
+        counter.increment(Integer.MAX_VALUE);
+
+        assertEquals(4, counter.size());
+        assertEquals(1, counter.get(0));
+        assertEquals(2, counter.get(-5));
+        assertEquals(3, counter.get(Integer.MIN_VALUE));
+        assertEquals(1, counter.get(Integer.MAX_VALUE));
+        assertEquals(0, counter.get(42));
+        assertArrayEquals(new int[]{Integer.MIN_VALUE, -5}, counter.repeated());
+    }
+
+    @Test
+    public void growsPastItsCapacity() {
+        // far more keys than the initial 4 slots, so the table is rehashed many times
+        IntCounter counter = new IntCounter(1);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            int key = random.nextInt(20000) - 10000;
+            counter.increment(key);
+            Integer count = expected.get(key);
+            expected.put(key, count == null ? 1 : count + 1);
+        }
+        assertEquals(expected.size(), counter.size());
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertEquals((int) entry.getValue(), counter.get(entry.getKey()));
+        }
+        assertArrayEquals(repeated(expected), counter.repeated());
+    }
+
+    @Test
+    public void clearForgetsTheKeys() {
+        IntCounter counter = new IntCounter(2);
+        for (int key = 0; key < 1000; key++) {
+            counter.add(key, 2);
+        }
+        counter.clear();
+        assertEquals(0, counter.size());
+        assertEquals(0, counter.get(7));
+        assertArrayEquals(new int[0], counter.repeated());
+
+        // reused after the clear, in the grown table
+        counter.increment(7);
+        counter.increment(3);
+        counter.increment(7);
+        assertEquals(2, counter.size());
+        assertArrayEquals(new int[]{7}, counter.repeated());
+
+        // and rehashed again
+        for (int key = 1000; key < 5000; key++) {
+            counter.increment(key);
+        }
+        assertEquals(2, counter.get(7));
+        assertEquals(1, counter.get(3));
+        assertArrayEquals(new int[]{7}, counter.repeated());
+    }
+
+    @Test
+    public void addAll() {
+        IntCounter a = new IntCounter();
+        IntCounter b = new IntCounter();
+        a.increment(1);
+        a.increment(2);
+        b.increment(2);
+        b.increment(3);
+        b.add(4, 5);
+        a.addAll(b);
+        assertEquals(4, a.size());
+        assertEquals(2, a.get(2));
+        assertEquals(5, a.get(4));
+        assertArrayEquals(new int[]{2, 4}, a.repeated());
+        // the other counter is not changed
+        assertEquals(3, b.size());
+        assertEquals(1, b.get(2));
+    }
+}
@@ -0,0 +1,167 @@
+package scrabble;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+import scrabble.KeyLayout.KeyFormat;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class KeyLayoutTest {
+    private static final int[] IDS = {0, 1, 7, 8, 9, 255, 256, 42153, 1234567, Integer.MAX_VALUE};
+    private static final int[] SIGNED_IDS = {Integer.MIN_VALUE, -42153, -1, 0, 1, 42153, Integer.MAX_VALUE};
+
+    @Test
+    public void binaryRoundTrip() {
+        for (KeyLayout layout : new KeyLayout[]{new KeyLayout(0, KeyFormat.BINARY),
+                                                new KeyLayout(8, KeyFormat.BINARY)}) {
+            for (int tourneyId : SIGNED_IDS) {
+                for (int gameId : SIGNED_IDS) {
+                    byte[] key = layout.rowKey(tourneyId, gameId);
+                    assertEquals(RowKeyCodec.KEY_LENGTH + (layout.isSalted() ? 1 : 0), key.length);
+                    assertEquals(tourneyId, layout.tourneyId(key));
+                    assertEquals(gameId, layout.gameId(key));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void asciiRoundTrip() {
+        for (KeyLayout layout : new KeyLayout[]{new KeyLayout(0, KeyFormat.ASCII),
+                                                new KeyLayout(8, KeyFormat.ASCII)}) {
+            for (int tourneyId : IDS) {
+                for (int gameId : IDS) {
+                    byte[] key = layout.rowKey(tourneyId, gameId);
+                    assertEquals(20 + (layout.isSalted() ? 1 : 0), key.length);
+                    assertEquals(tourneyId, layout.tourneyId(key));
+                    assertEquals(gameId, layout.gameId(key));
+                }
+            }
+        }
+        assertEquals("00000421530000000123", Bytes.toString(new KeyLayout(0, KeyFormat.ASCII).rowKey(42153, 123)));
+    }
+
+    @Test
+    public void asciiAndBinaryKeysSortAlike() {
+        for (int buckets : new int[]{0, 8}) {
+            KeyLayout ascii = new KeyLayout(buckets, KeyFormat.ASCII);
+            KeyLayout binary = new KeyLayout(buckets, KeyFormat.BINARY);
+            for (int t1 : IDS) {
+                for (int g1 : IDS) {
+                    for (int t2 : IDS) {
+                        int g2 = g1 == 0 ? 1 : g1 - 1;
+                        assertEquals(Integer.signum(Bytes.compareTo(ascii.rowKey(t1, g1), ascii.rowKey(t2, g2))),
+                                     Integer.signum(Bytes.compareTo(binary.rowKey(t1, g1), binary.rowKey(t2, g2))));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void unsaltedLayouts() {
+        assertFalse(new KeyLayout(0, KeyFormat.BINARY).isSalted());
+        assertFalse(new KeyLayout(1, KeyFormat.BINARY).isSalted());
+        assertEquals(1, new KeyLayout(1, KeyFormat.BINARY).getBuckets());
+        assertEquals(0, new KeyLayout(0, KeyFormat.BINARY).bucket(42153));
+        assertTrue(new KeyLayout(0, KeyFormat.BINARY).bucketSplits().isEmpty());
+        assertEquals(1, new KeyLayout(0, KeyFormat.BINARY).tourneyRanges(0, 10).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooManyBuckets() {
+        new KeyLayout(257, KeyFormat.BINARY);
+    }
+
+    @Test
+    public void bucketsAndSplits() {
+        KeyLayout layout = new KeyLayout(8, KeyFormat.BINARY);
+        List<byte[]> splits = layout.bucketSplits();
+        assertEquals(7, splits.size());
+        for (int i = 0; i < splits.size(); i++) {
+            assertArrayEquals(new byte[]{(byte) (i + 1)}, splits.get(i));
+        }
+
+        for (int tourneyId : SIGNED_IDS) {
+            int bucket = layout.bucket(tourneyId);
+            assertTrue(bucket >= 0 && bucket < 8);
+            byte[] key = layout.rowKey(tourneyId, 1);
+            assertEquals(bucket, key[0]);
+            // the key falls in the region of its bucket
+            if (bucket > 0) {
+                assertTrue(Bytes.compareTo(key, splits.get(bucket - 1)) >= 0);
+            }
+            if (bucket < splits.size()) {
+                assertTrue(Bytes.compareTo(key, splits.get(bucket)) < 0);
+            }
+        }
+        // consecutive tourneys are spread over all the buckets
+        for (int tourneyId = 0; tourneyId < 8; tourneyId++) {
+            assertEquals(tourneyId, layout.bucket(tourneyId));
+        }
+    }
+
+    @Test
+    public void tourneyStartAndStop() {
+        for (KeyLayout layout : new KeyLayout[]{new KeyLayout(0, KeyFormat.BINARY), new KeyLayout(8, KeyFormat.BINARY),
+                                                new KeyLayout(0, KeyFormat.ASCII), new KeyLayout(8, KeyFormat.ASCII)}) {
+            int[] ids = layout.getFormat() == KeyFormat.BINARY ? SIGNED_IDS : IDS;
+            for (int tourneyId : ids) {
+                byte[] start = layout.tourneyStart(tourneyId);
+                byte[] stop = layout.tourneyStop(tourneyId);
+                for (int gameId : ids) {
+                    byte[] key = layout.rowKey(tourneyId, gameId);
+                    assertTrue(Bytes.compareTo(start, key) <= 0);
+                    assertTrue(Bytes.compareTo(key, stop) < 0);
+                }
+                for (int other : ids) {
+                    if (other != tourneyId && layout.bucket(other) == layout.bucket(tourneyId)) {
+                        byte[] key = layout.rowKey(other, 0);
+                        assertTrue(Bytes.compareTo(key, start) < 0 || Bytes.compareTo(key, stop) >= 0);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void tourneyRangesCoverOneRangePerBucket() {
+        for (KeyFormat format : KeyFormat.values()) {
+            KeyLayout layout = new KeyLayout(4, format);
+            List<byte[][]> ranges = layout.tourneyRanges(10, 20);
+            assertEquals(4, ranges.size());
+            for (int tourneyId = 0; tourneyId < 30; tourneyId++) {
+                int inRanges = 0;
+                for (byte[][] range : ranges) {
+                    byte[] key = layout.rowKey(tourneyId, 5);
+                    if (Bytes.compareTo(range[0], key) <= 0 && Bytes.compareTo(key, range[1]) < 0) {
+                        inRanges++;
+                    }
+                }
+                assertEquals(format + " tourney " + tourneyId, tourneyId >= 10 && tourneyId < 20 ? 1 : 0, inRanges);
+            }
+        }
+    }
+
+    @Test
+    public void tourneyRangesOfIdsCoalesceConsecutiveTourneys() {
+        KeyLayout layout = new KeyLayout(4, KeyFormat.BINARY);
+        // 1, 5 and 9 follow each other in bucket 1, 2 is alone in bucket 2
+        List<byte[][]> ranges = layout.tourneyRanges(Arrays.asList(9, 2, 5, 1, 5), 0);
+        assertEquals(2, ranges.size());
+        assertArrayEquals(layout.tourneyStart(1), ranges.get(0)[0]);
+        assertArrayEquals(layout.tourneyStop(9), ranges.get(0)[1]);
+        assertArrayEquals(layout.tourneyStart(2), ranges.get(1)[0]);
+        assertArrayEquals(layout.tourneyStop(2), ranges.get(1)[1]);
+
+        // 1 and 9 are one tourney of the bucket apart
+        assertEquals(2, layout.tourneyRanges(Arrays.asList(1, 9), 0).size());
+        assertEquals(1, layout.tourneyRanges(Arrays.asList(1, 9), 1).size());
+    }
+}
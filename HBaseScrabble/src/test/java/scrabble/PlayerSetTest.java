@@ -0,0 +1,108 @@
+package scrabble;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PlayerSetTest {
+
+    private static byte[] encode(int... players) {
+        byte[] bytes = new byte[2 + players.length * 4];
+        for (int i = 0; i < players.length; i++) {
+            RowKeyCodec.encodeInt(players[i], bytes, 2 + i * 4);
+        }
+        return bytes;
+    }
+
+    @Test
+    public void unseededSetHoldsNothingButIsNotEmpty() {
+        PlayerSet set = new PlayerSet();
+        assertFalse(set.isSeeded());
+        assertFalse(set.isEmpty());
+        assertEquals(0, set.size());
+        assertEquals(Collections.<String>emptyList(), set.toStrings());
+    }
+
+    @Test
+    public void firstRetainSeeds() {
+        PlayerSet set = new PlayerSet();
+        set.retain(new int[]{1, 5, 9, 99}, 3);
+        assertTrue(set.isSeeded());
+        assertEquals(Arrays.asList("1", "5", "9"), set.toStrings());
+    }
+
+    @Test
+    public void seedingWithNoPlayerIsEmpty() {
+        PlayerSet set = new PlayerSet();
+        set.retain(new int[0], 0);
+        assertTrue(set.isSeeded());
+        assertTrue(set.isEmpty());
+
+        set.retain(new int[]{1, 2}, 2);
+        assertTrue(set.isEmpty());
+    }
+
+    @Test
+    public void retainIntersects() {
+        PlayerSet set = new PlayerSet();
+        set.retain(new int[]{-7, 1, 3, 5, 8, 13}, 6);
+        set.retain(new int[]{-7, 2, 3, 4, 13, 21}, 6);
+        assertEquals(Arrays.asList("-7", "3", "13"), set.toStrings());
+        set.retain(new int[]{0, 3}, 2);
+        assertEquals(Collections.singletonList("3"), set.toStrings());
+        set.retain(new int[]{4}, 1);
+        assertTrue(set.isEmpty());
+        assertTrue(set.toStrings().isEmpty());
+    }
+
+    @Test
+    public void retainEncodedAgreesWithRetain() {
+        int[][] sets = {{-100, -1, 0, 4, 8, 15, 16, 23, 42}, {-1, 0, 8, 16, 42, 1000}, {-100, 0, 16, 42}};
+        PlayerSet decoded = new PlayerSet();
+        PlayerSet encoded = new PlayerSet();
+        for (int[] players : sets) {
+            decoded.retain(players, players.length);
+            byte[] bytes = encode(players);
+            encoded.retainEncoded(bytes, 2, bytes.length - 2);
+            assertEquals(decoded.toStrings(), encoded.toStrings());
+        }
+        assertEquals(Arrays.asList("0", "16", "42"), encoded.toStrings());
+    }
+
+    @Test
+    public void unseededOtherSetIsIgnored() {
+        PlayerSet set = new PlayerSet();
+        set.retain(new PlayerSet());
+        assertFalse(set.isSeeded());
+
+        set.retain(new int[]{1, 2, 3}, 3);
+        set.retain(new PlayerSet());
+        assertEquals(Arrays.asList("1", "2", "3"), set.toStrings());
+
+        PlayerSet other = new PlayerSet();
+        other.retain(new int[]{2, 3, 4}, 3);
+        set.retain(other);
+        assertEquals(Arrays.asList("2", "3"), set.toStrings());
+
+        // an empty seeded set empties the intersection
+        PlayerSet empty = new PlayerSet();
+        empty.retain(new int[0], 0);
+        set.retain(empty);
+        assertTrue(set.isEmpty());
+    }
+
+    @Test
+    public void retainDoesNotChangeTheOtherSet() {
+        PlayerSet other = new PlayerSet();
+        other.retain(new int[]{1, 2, 3}, 3);
+        PlayerSet set = new PlayerSet();
+        set.retain(other);
+        set.retain(new int[]{2}, 1);
+        assertEquals(Arrays.asList("1", "2", "3"), other.toStrings());
+    }
+}
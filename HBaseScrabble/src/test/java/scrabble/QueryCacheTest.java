@@ -0,0 +1,204 @@
+package scrabble;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class QueryCacheTest {
+
+    /**
+     * Answers query3 with its tourney id and the number of queries run so far, so a cached result can be told from
+     * a new one. Runs a hook in the middle of every query.
+     */
+    private static final class CountingQueries implements ScrabbleQueries {
+        private final AtomicInteger runs = new AtomicInteger();
+        private volatile Runnable during;
+
+        @Override
+        public List<String> query1(String tourneyid, String winnername) {
+            return Collections.singletonList(winnername + runs.incrementAndGet());
+        }
+
+        @Override
+        public List<String> query2(String firsttourneyid, String lasttourneyid) {
+            return Collections.singletonList(firsttourneyid + "-" + lasttourneyid + "#" + runs.incrementAndGet());
+        }
+
+        @Override
+        public List<String> query3(String tourneyid) {
+            int run = runs.incrementAndGet();
+            if (during != null) {
+                during.run();
+            }
+            return Collections.singletonList(tourneyid + "#" + run);
+        }
+
+        @Override
+        public long countRecords() {
+            return runs.incrementAndGet();
+        }
+    }
+
+    /**
+     * An epoch kept in memory instead of the "ScrabbleMeta" table.
+     */
+    private static final class MemoryEpoch extends LoadEpoch {
+        private final AtomicLong value = new AtomicLong();
+
+        MemoryEpoch() {
+            super(null);
+        }
+
+        @Override
+        public long read() {
+            return value.get();
+        }
+
+        @Override
+        public long bump() {
+            return value.incrementAndGet();
+        }
+    }
+
+    private static Configuration config(int entries, long ttl) {
+        Configuration config = new Configuration();
+        config.setInt(QueryCache.ENTRIES_KEY, entries);
+        config.setLong(QueryCache.TTL_KEY, ttl);
+        // short, so a bumped epoch is seen quickly
+        config.setLong(QueryCache.EPOCH_POLL_KEY, 10);
+        return config;
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedResult() throws Exception {
+        CountingQueries queries = new CountingQueries();
+        try (QueryCache cache = new QueryCache(config(2, 60000), queries, new MemoryEpoch())) {
+            List<String> first = cache.query3("1");
+            cache.query3("2");
+            // 1 is now more recent than 2
+            assertEquals(first, cache.query3("1"));
+            cache.query3("3");
+
+            assertEquals(1, cache.getEvictions());
+            assertEquals(2, cache.size());
+            assertEquals(first, cache.query3("1"));
+            assertEquals(Collections.singletonList("2#4"), cache.query3("2"));
+            assertEquals(2, cache.getHits());
+            assertEquals(4, cache.getMisses());
+            assertEquals(2, cache.getEvictions());
+        }
+    }
+
+    @Test
+    public void queriesAreCachedSeparately() throws Exception {
+        CountingQueries queries = new CountingQueries();
+        try (QueryCache cache = new QueryCache(config(100, 60000), queries, new MemoryEpoch())) {
+            List<String> query1 = cache.query1("1", "anna");
+            List<String> query2 = cache.query2("1", "2");
+            long count = cache.countRecords();
+            assertEquals(query1, cache.query1("1", "anna"));
+            assertEquals(query2, cache.query2("1", "2"));
+            assertEquals(count, cache.countRecords());
+            assertEquals(Collections.singletonList("1-3#4"), cache.query2("1", "3"));
+            assertEquals(3, cache.getHits());
+            assertEquals(4, cache.getMisses());
+        }
+    }
+
+    @Test
+    public void expiredResultsRunAgain() throws Exception {
+        CountingQueries queries = new CountingQueries();
+        try (QueryCache cache = new QueryCache(config(100, 50), queries, new MemoryEpoch())) {
+            assertEquals(Collections.singletonList("1#1"), cache.query3("1"));
+            Thread.sleep(100);
+            assertEquals(Collections.singletonList("1#2"), cache.query3("1"));
+            assertEquals(0, cache.getHits());
+            assertEquals(2, cache.getMisses());
+        }
+    }
+
+    @Test
+    public void resultComputedAcrossAnInvalidationIsNotKept() throws Exception {
+        final CountingQueries queries = new CountingQueries();
+        try (final QueryCache cache = new QueryCache(config(100, 60000), queries, new MemoryEpoch())) {
+            queries.during = new Runnable() {
+                @Override
+                public void run() {
+                    queries.during = null;
+                    cache.invalidate();
+                }
+            };
+            // the result is still returned, but not cached
+            assertEquals(Collections.singletonList("1#1"), cache.query3("1"));
+            assertEquals(0, cache.size());
+            assertEquals(Collections.singletonList("1#2"), cache.query3("1"));
+            assertEquals(Collections.singletonList("1#2"), cache.query3("1"));
+            assertEquals(1, cache.getInvalidations());
+        }
+    }
+
+    @Test
+    public void invalidateDropsTheResultsAndTellsTheListener() throws Exception {
+        CountingQueries queries = new CountingQueries();
+        final AtomicInteger invalidated = new AtomicInteger();
+        QueryCache.Listener listener = new QueryCache.Listener() {
+            @Override
+            public void invalidated() {
+                invalidated.incrementAndGet();
+            }
+        };
+        try (QueryCache cache = new QueryCache(config(100, 60000), queries, new MemoryEpoch(), listener)) {
+            cache.query3("1");
+            cache.query3("2");
+            cache.invalidate();
+            assertEquals(0, cache.size());
+            assertEquals(1, invalidated.get());
+            assertEquals(Collections.singletonList("1#3"), cache.query3("1"));
+            assertEquals(1, cache.getInvalidations());
+        }
+    }
+
+    @Test
+    public void bumpedEpochInvalidates() throws Exception {
+        CountingQueries queries = new CountingQueries();
+        MemoryEpoch epoch = new MemoryEpoch();
+        final AtomicInteger invalidated = new AtomicInteger();
+        QueryCache.Listener listener = new QueryCache.Listener() {
+            @Override
+            public void invalidated() {
+                invalidated.incrementAndGet();
+            }
+        };
+        try (QueryCache cache = new QueryCache(config(100, 60000), queries, epoch, listener)) {
+            cache.query3("1");
+            epoch.bump();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (cache.getInvalidations() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, cache.getInvalidations());
+            assertEquals(1, invalidated.get());
+            assertEquals(Collections.singletonList("1#2"), cache.query3("1"));
+        }
+    }
+
+    @Test
+    public void noEntriesKeepsNoResult() throws Exception {
+        CountingQueries queries = new CountingQueries();
+        try (QueryCache cache = new QueryCache(config(0, 60000), queries, new MemoryEpoch())) {
+            cache.query3("1");
+            assertEquals(Collections.singletonList("1#2"), cache.query3("1"));
+            assertEquals(0, cache.size());
+            assertEquals(0, cache.getEvictions());
+            assertTrue(cache.toString().contains("2 misses"));
+        }
+    }
+}
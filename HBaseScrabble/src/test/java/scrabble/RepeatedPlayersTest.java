@@ -0,0 +1,269 @@
+package scrabble;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.junit.Test;
+import scrabble.GameCodec.CellFormat;
+import scrabble.KeyLayout.KeyFormat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RepeatedPlayersTest {
+    private static final KeyLayout LAYOUT = new KeyLayout(0, KeyFormat.BINARY);
+
+    /**
+     * Returns the rows of a list, counting the ones read.
+     */
+    static final class ListScanner implements ResultScanner {
+        private final List<Result> results;
+        private int next = 0;
+
+        ListScanner(List<Result> results) {
+            this.results = results;
+        }
+
+        @Override
+        public Result next() {
+            return next < results.size() ? results.get(next++) : null;
+        }
+
+        @Override
+        public Result[] next(int n) {
+            List<Result> batch = new ArrayList<>();
+            Result result;
+            while (batch.size() < n && (result = next()) != null) {
+                batch.add(result);
+            }
+            return batch.toArray(new Result[batch.size()]);
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public Iterator<Result> iterator() {
+            return new Iterator<Result>() {
+                @Override
+                public boolean hasNext() {
+                    return next < results.size();
+                }
+
+                @Override
+                public Result next() {
+                    return results.get(next++);
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+
+    private static Result game(GameCodec codec, int tourneyId, int gameId, int winnerId, int loserId) {
+        String[] values = new String[ScrabbleSchema.CSV_COLUMNS];
+        Arrays.fill(values, "");
+        values[ScrabbleSchema.COL_TOURNEYID] = Integer.toString(tourneyId);
+        values[ScrabbleSchema.COL_GAMEID] = Integer.toString(gameId);
+        values[ScrabbleSchema.COL_TIE] = "False";
+        values[ScrabbleSchema.COL_WINNER_ID] = Integer.toString(winnerId);
+        values[ScrabbleSchema.COL_LOSER_ID] = Integer.toString(loserId);
+        Put put = codec.toPut(LAYOUT.rowKey(tourneyId, gameId), values);
+        List<Cell> cells = new ArrayList<>();
+        for (List<Cell> family : put.getFamilyCellMap().values()) {
+            cells.addAll(family);
+        }
+        return Result.create(cells);
+    }
+
+    /**
+     * Random games, in key order. Player 1 plays twice in every tourney, player 2 in all but one.
+     *
+     * @param gap A tourney player 1 does not play in, so no player may be repeated in all of them.
+     */
+    static List<int[]> randomGames(Random random, int tourneys, int gap) {
+        List<int[]> games = new ArrayList<>();
+        for (int tourneyId = 0; tourneyId < tourneys; tourneyId++) {
+            int gameId = 0;
+            games.add(new int[]{tourneyId, gameId++, tourneyId == gap ? 11 : 1, 2});
+            games.add(new int[]{tourneyId, gameId++, 1, tourneyId == tourneys / 2 ? 3 : 2});
+            for (int i = random.nextInt(10); i > 0; i--) {
+                games.add(new int[]{tourneyId, gameId++, 3 + random.nextInt(8), 3 + random.nextInt(8)});
+            }
+        }
+        return games;
+    }
+
+    static List<Result> results(GameCodec codec, List<int[]> games) {
+        List<Result> results = new ArrayList<>();
+        for (int[] game : games) {
+            results.add(game(codec, game[0], game[1], game[2], game[3]));
+        }
+        return results;
+    }
+
+    /**
+     * The players with more than one game in every tourney, computed naively.
+     */
+    static List<String> expected(List<int[]> games) {
+        Map<Integer, Map<Integer, Integer>> counts = new TreeMap<>();
+        for (int[] game : games) {
+            Map<Integer, Integer> tourney = counts.get(game[0]);
+            if (tourney == null) {
+                tourney = new HashMap<>();
+                counts.put(game[0], tourney);
+            }
+            for (int player : new int[]{game[2], game[3]}) {
+                Integer count = tourney.get(player);
+                tourney.put(player, count == null ? 1 : count + 1);
+            }
+        }
+        TreeSet<Integer> players = null;
+        for (Map<Integer, Integer> tourney : counts.values()) {
+            TreeSet<Integer> repeated = new TreeSet<>();
+            for (Map.Entry<Integer, Integer> player : tourney.entrySet()) {
+                if (player.getValue() > 1) {
+                    repeated.add(player.getKey());
+                }
+            }
+            if (players == null) {
+                players = repeated;
+            } else {
+                players.retainAll(repeated);
+            }
+        }
+        List<String> ids = new ArrayList<>();
+        if (players != null) {
+            for (int player : players) {
+                ids.add(Integer.toString(player));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Cuts the rows at random places, in the middle of the tourneys too, and scans every sub-range in parallel.
+     */
+    private static PlayerSet parallelScan(ExecutorService pool, final GameCodec codec, List<Result> results,
+                                          Random random, int subRanges) throws Exception {
+        TreeSet<Integer> cuts = new TreeSet<>();
+        cuts.add(0);
+        cuts.add(results.size());
+        for (int i = 1; i < subRanges; i++) {
+            cuts.add(random.nextInt(results.size() + 1));
+        }
+
+        List<Future<RepeatedPlayers.Partial>> futures = new ArrayList<>();
+        Integer from = cuts.first();
+        for (Integer to = cuts.higher(from); to != null; from = to, to = cuts.higher(to)) {
+            final List<Result> subRange = results.subList(from, to);
+            futures.add(pool.submit(new Callable<RepeatedPlayers.Partial>() {
+                @Override
+                public RepeatedPlayers.Partial call() throws Exception {
+                    return RepeatedPlayers.scan(new ListScanner(subRange), LAYOUT, codec);
+                }
+            }));
+        }
+        List<RepeatedPlayers.Partial> partials = new ArrayList<>();
+        for (Future<RepeatedPlayers.Partial> future : futures) {
+            partials.add(future.get());
+        }
+        return RepeatedPlayers.reduce(partials);
+    }
+
+    @Test
+    public void parallelReduceEqualsSequentialResult() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            Random random = new Random(7);
+            for (CellFormat format : CellFormat.values()) {
+                GameCodec codec = GameCodec.of(format);
+                for (int round = 0; round < 20; round++) {
+                    int tourneys = 1 + random.nextInt(30);
+                    // every other round, most likely nobody is repeated everywhere and the scans stop early
+                    List<int[]> games = randomGames(random, tourneys, round % 2 == 0 ? -1 : random.nextInt(tourneys));
+                    List<Result> results = results(codec, games);
+                    List<String> expected = expected(games);
+
+                    PlayerSet sequential = RepeatedPlayers.reduce(Collections.singletonList(
+                            RepeatedPlayers.scan(new ListScanner(results), LAYOUT, codec)));
+                    assertEquals(expected, sequential.toStrings());
+                    for (int subRanges : new int[]{2, 3, 8, results.size()}) {
+                        assertEquals(format + " in " + subRanges + " sub-ranges", expected,
+                                     parallelScan(pool, codec, results, random, subRanges).toStrings());
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void tourneyCutByASubRangeIsCountedOnce() throws Exception {
+        GameCodec codec = GameCodec.of(CellFormat.COLUMNS);
+        // player 5 plays once on each side of the cut, so twice in tourney 1
+        List<Result> results = Arrays.asList(game(codec, 0, 0, 5, 6), game(codec, 0, 1, 5, 6),
+                                             game(codec, 1, 0, 5, 7),
+                                             game(codec, 1, 1, 5, 8), game(codec, 2, 0, 5, 6),
+                                             game(codec, 2, 1, 5, 9));
+        List<RepeatedPlayers.Partial> partials = new ArrayList<>();
+        partials.add(RepeatedPlayers.scan(new ListScanner(results.subList(0, 3)), LAYOUT, codec));
+        partials.add(RepeatedPlayers.scan(new ListScanner(results.subList(3, 6)), LAYOUT, codec));
+        assertEquals(Collections.singletonList("5"), RepeatedPlayers.reduce(partials).toStrings());
+    }
+
+    @Test
+    public void scanStopsOnceTheIntersectionIsEmpty() throws Exception {
+        GameCodec codec = GameCodec.of(CellFormat.PACKED);
+        List<Result> results = new ArrayList<>();
+        // tourney 1 repeats player 1 only, tourney 2 player 2 only: no player is repeated in both
+        results.add(game(codec, 0, 0, 1, 2));
+        results.add(game(codec, 1, 0, 1, 3));
+        results.add(game(codec, 1, 1, 1, 4));
+        results.add(game(codec, 2, 0, 2, 5));
+        results.add(game(codec, 2, 1, 2, 6));
+        for (int tourneyId = 3; tourneyId < 100; tourneyId++) {
+            results.add(game(codec, tourneyId, 0, 1, 2));
+            results.add(game(codec, tourneyId, 1, 1, 2));
+        }
+
+        ListScanner scanner = new ListScanner(results);
+        RepeatedPlayers.Partial partial = RepeatedPlayers.scan(scanner, LAYOUT, codec);
+        // the first game of tourney 3 completes tourney 2, and is the last row read
+        assertEquals(6, scanner.next);
+        PlayerSet result = RepeatedPlayers.reduce(Collections.singletonList(partial));
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    public void noGames() throws Exception {
+        GameCodec codec = GameCodec.of(CellFormat.COLUMNS);
+        RepeatedPlayers.Partial partial =
+                RepeatedPlayers.scan(new ListScanner(Collections.<Result>emptyList()), LAYOUT, codec);
+        PlayerSet result = RepeatedPlayers.reduce(Arrays.asList(partial, partial));
+        assertFalse(result.isSeeded());
+        assertTrue(result.toStrings().isEmpty());
+    }
+}
@@ -0,0 +1,62 @@
+package scrabble;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RowKeyCodecTest {
+    private static final int[] IDS = {Integer.MIN_VALUE, Integer.MIN_VALUE + 1, -65536, -256, -1, 0, 1, 255, 256,
+                                      65535, 1234567, Integer.MAX_VALUE - 1, Integer.MAX_VALUE};
+
+    @Test
+    public void byteOrderIsNumericOrder() {
+        for (int a : IDS) {
+            for (int b : IDS) {
+                byte[] keyA = new byte[4];
+                byte[] keyB = new byte[4];
+                RowKeyCodec.encodeInt(a, keyA, 0);
+                RowKeyCodec.encodeInt(b, keyB, 0);
+                assertEquals(a + " vs " + b, Integer.signum(Integer.compare(a, b)),
+                             Integer.signum(Bytes.compareTo(keyA, keyB)));
+            }
+        }
+    }
+
+    @Test
+    public void signBitIsFlipped() {
+        byte[] key = new byte[4];
+        RowKeyCodec.encodeInt(-1, key, 0);
+        assertEquals(0x7fffffff, Bytes.toInt(key));
+        RowKeyCodec.encodeInt(0, key, 0);
+        assertEquals(0x80000000, Bytes.toInt(key));
+    }
+
+    @Test
+    public void keysSortByTourneyThenGame() {
+        byte[] previous = null;
+        for (int tourneyId : IDS) {
+            for (int gameId : IDS) {
+                byte[] key = new byte[RowKeyCodec.KEY_LENGTH];
+                RowKeyCodec.encode(tourneyId, gameId, key, 0);
+                if (previous != null) {
+                    assertTrue(Bytes.compareTo(previous, key) < 0);
+                }
+                previous = key;
+            }
+        }
+    }
+
+    @Test
+    public void roundTrip() {
+        byte[] buffer = new byte[3 + RowKeyCodec.KEY_LENGTH];
+        for (int tourneyId : IDS) {
+            for (int gameId : IDS) {
+                RowKeyCodec.encode(tourneyId, gameId, buffer, 3);
+                assertEquals(tourneyId, RowKeyCodec.decodeTourneyId(buffer, 3));
+                assertEquals(gameId, RowKeyCodec.decodeGameId(buffer, 3));
+            }
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package scrabble;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.client.Result;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import scrabble.GameCodec.CellFormat;
+import scrabble.KeyLayout.KeyFormat;
+import scrabble.Snapshot.Column;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * A game as a csv line. Every third game is a tie, and the players are named after their id.
+     */
+    private static String[] values(int tourneyId, int gameId, int winnerId, int loserId) {
+        String[] values = new String[ScrabbleSchema.CSV_COLUMNS];
+        Arrays.fill(values, "");
+        values[ScrabbleSchema.COL_TOURNEYID] = Integer.toString(tourneyId);
+        values[ScrabbleSchema.COL_GAMEID] = Integer.toString(gameId);
+        values[ScrabbleSchema.COL_ROUND] = Integer.toString(gameId + 1);
+        values[ScrabbleSchema.COL_TIE] = gameId % 3 == 2 ? "True" : "False";
+        values[ScrabbleSchema.COL_WINNER_ID] = Integer.toString(winnerId);
+        values[ScrabbleSchema.COL_WINNER_NAME] = "player" + winnerId;
+        values[ScrabbleSchema.COL_WINNER_SCORE] = "400";
+        values[ScrabbleSchema.COL_LOSER_ID] = Integer.toString(loserId);
+        values[ScrabbleSchema.COL_LOSER_NAME] = "player" + loserId;
+        values[ScrabbleSchema.COL_LOSER_SCORE] = "350";
+        return values;
+    }
+
+    /**
+     * Writes the games, as {tourneyId, gameId, winnerId, loserId} in key order, and opens the snapshot.
+     */
+    private Snapshot snapshot(List<int[]> games) throws Exception {
+        File file = new File(folder.getRoot(), "games.snap");
+        try (SnapshotWriter writer = new SnapshotWriter(file)) {
+            for (int[] game : games) {
+                writer.append(values(game[0], game[1], game[2], game[3]));
+            }
+            writer.commit();
+        }
+        return Snapshot.open(file);
+    }
+
+    private static SnapshotQueries queries(Snapshot snapshot, int threads) {
+        Configuration config = new Configuration();
+        config.setInt(SnapshotQueries.THREADS_KEY, threads);
+        return new SnapshotQueries(config, snapshot);
+    }
+
+    /**
+     * @return The games of the tourneys from first (included) to last (excluded).
+     */
+    private static List<int[]> range(List<int[]> games, int first, int last) {
+        List<int[]> range = new ArrayList<>();
+        for (int[] game : games) {
+            if (game[0] >= first && game[0] < last) {
+                range.add(game);
+            }
+        }
+        return range;
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        File file = new File(folder.getRoot(), "games.snap");
+        String[] first = values(3, 1, 10, 20);
+        first[ScrabbleSchema.COL_WINNER_NAME] = "Zoë";
+        first[ScrabbleSchema.COL_ROUND] = "";
+        String[] second = values(3, 2, 20, 10);
+        second[ScrabbleSchema.COL_LOSER_NAME] = "Zoë";
+        second[ScrabbleSchema.COL_WINNER_SCORE] = "n/a";
+        try (SnapshotWriter writer = new SnapshotWriter(file)) {
+            writer.append(first);
+            writer.append(second);
+            writer.append(values(4, 1, 30, 10));
+            writer.commit();
+        }
+
+        Snapshot snapshot = Snapshot.open(file);
+        assertEquals(3, snapshot.getRows());
+        assertEquals(4, snapshot.column(Column.TOURNEY_ID).get(2));
+        assertEquals(2, snapshot.column(Column.GAME_ID).get(1));
+        assertEquals(1, snapshot.column(Column.TIE).get(1));
+        assertEquals(0, snapshot.column(Column.TIE).get(0));
+        assertEquals(20, snapshot.column(Column.LOSER_ID).get(0));
+        assertEquals(350, snapshot.column(Column.LOSER_SCORE).get(2));
+        // the empty and the malformed fields
+        assertEquals(Snapshot.NULL, snapshot.column(Column.ROUND).get(0));
+        assertEquals(Snapshot.NULL, snapshot.column(Column.WINNER_SCORE).get(1));
+
+        // the names share one dictionary
+        int zoe = snapshot.column(Column.WINNER_NAME).get(0);
+        assertEquals("Zoë", snapshot.name(zoe));
+        assertEquals(zoe, snapshot.column(Column.LOSER_NAME).get(1));
+        assertEquals(zoe, snapshot.code("Zoë"));
+        assertEquals("player30", snapshot.name(snapshot.column(Column.WINNER_NAME).get(2)));
+        assertEquals(Snapshot.NULL, snapshot.code("nobody"));
+        assertNull(snapshot.name(Snapshot.NULL));
+    }
+
+    @Test
+    public void rowsOfTheTourneys() throws Exception {
+        // tourneys 2, 5 and 7 in rows 0-2, 3-4 and 5
+        Snapshot snapshot = snapshot(Arrays.asList(new int[]{2, 1, 1, 2}, new int[]{2, 2, 1, 2}, new int[]{2, 3, 1, 2},
+                                                   new int[]{5, 1, 1, 2}, new int[]{5, 2, 1, 2},
+                                                   new int[]{7, 1, 1, 2}));
+        int[][] expected = {
+                // tourney, firstRow, endRow
+                {Integer.MIN_VALUE + 1, 0, 0},
+                {1, 0, 0},
+                {2, 0, 3},
+                {3, 3, 3},
+                {4, 3, 3},
+                {5, 3, 5},
+                {6, 5, 5},
+                {7, 5, 6},
+                {8, 6, 6},
+                {Integer.MAX_VALUE, 6, 6},
+        };
+        for (int[] tourney : expected) {
+            assertEquals("first row of " + tourney[0], tourney[1], snapshot.firstRow(tourney[0]));
+            assertEquals("end row of " + tourney[0], tourney[2], snapshot.endRow(tourney[0]));
+        }
+
+        Snapshot empty = snapshot(Collections.<int[]>emptyList());
+        assertEquals(0, empty.getRows());
+        assertEquals(0, empty.firstRow(1));
+        assertEquals(0, empty.endRow(1));
+    }
+
+    @Test
+    public void queriesMatchTheGames() throws Exception {
+        Random random = new Random(11);
+        List<int[]> games = RepeatedPlayersTest.randomGames(random, 40, 25);
+        try (SnapshotQueries queries = queries(snapshot(games), 4)) {
+            assertEquals(games.size(), queries.countRecords());
+            for (int tourneyId = -1; tourneyId <= 41; tourneyId++) {
+                List<String> ties = new ArrayList<>();
+                List<String> opponents = new ArrayList<>();
+                for (int[] game : range(games, tourneyId, tourneyId + 1)) {
+                    if (game[1] % 3 == 2) {
+                        ties.add(Integer.toString(game[1]));
+                    }
+                    if (game[2] == 1) {
+                        opponents.add(Integer.toString(game[3]));
+                    }
+                }
+                String tourney = Integer.toString(tourneyId);
+                assertEquals("query3 of " + tourney, ties, queries.query3(tourney));
+                assertEquals("query1 of " + tourney, opponents, queries.query1(tourney, "player1"));
+            }
+            assertEquals(Collections.<String>emptyList(), queries.query1("1", "nobody"));
+        }
+    }
+
+    @Test
+    public void query2MatchesRepeatedPlayers() throws Exception {
+        KeyLayout layout = new KeyLayout(0, KeyFormat.BINARY);
+        GameCodec codec = GameCodec.of(CellFormat.PACKED);
+        Random random = new Random(5);
+        for (int round = 0; round < 10; round++) {
+            int tourneys = 1 + random.nextInt(50);
+            List<int[]> games = RepeatedPlayersTest.randomGames(random, tourneys,
+                                                                round % 2 == 0 ? -1 : random.nextInt(tourneys));
+            try (SnapshotQueries queries = queries(snapshot(games), 1 + random.nextInt(4))) {
+                for (int i = 0; i < 10; i++) {
+                    int first = random.nextInt(tourneys + 2) - 1;
+                    int last = first + random.nextInt(tourneys + 2);
+                    List<Result> results = RepeatedPlayersTest.results(codec, range(games, first, last));
+                    PlayerSet expected = RepeatedPlayers.reduce(Collections.singletonList(
+                            RepeatedPlayers.scan(new RepeatedPlayersTest.ListScanner(results), layout, codec)));
+                    assertEquals("query2 from " + first + " to " + last, expected.toStrings(),
+                                 queries.query2(Integer.toString(first), Integer.toString(last)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void query2SplitIntoChunks() throws Exception {
+        // enough games for several chunks of whole tourneys
+        Random random = new Random(3);
+        List<int[]> games = RepeatedPlayersTest.randomGames(random, 40000, -1);
+        Snapshot snapshot = snapshot(games);
+        try (SnapshotQueries chunked = queries(snapshot, 4);
+             SnapshotQueries single = queries(snapshot, 1)) {
+            for (int[] range : new int[][]{{0, 40000}, {0, 20000}, {13, 39999}, {30000, 50000}}) {
+                String first = Integer.toString(range[0]);
+                String last = Integer.toString(range[1]);
+                List<String> expected = RepeatedPlayersTest.expected(range(games, range[0], range[1]));
+                assertEquals(expected, single.query2(first, last));
+                assertEquals(expected, chunked.query2(first, last));
+            }
+        }
+    }
+}
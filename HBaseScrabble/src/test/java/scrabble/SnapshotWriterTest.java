@@ -0,0 +1,87 @@
+package scrabble;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class SnapshotWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String[] game(int tourneyId, int gameId) {
+        String[] values = new String[ScrabbleSchema.CSV_COLUMNS];
+        Arrays.fill(values, "");
+        values[ScrabbleSchema.COL_TOURNEYID] = Integer.toString(tourneyId);
+        values[ScrabbleSchema.COL_GAMEID] = Integer.toString(gameId);
+        values[ScrabbleSchema.COL_TIE] = "False";
+        values[ScrabbleSchema.COL_WINNER_NAME] = "winner";
+        values[ScrabbleSchema.COL_LOSER_NAME] = "loser";
+        return values;
+    }
+
+    /**
+     * @return The names of the files of the folder, the snapshot and the temporary ones.
+     */
+    private String[] files() {
+        String[] names = folder.getRoot().list();
+        Arrays.sort(names);
+        return names;
+    }
+
+    @Test
+    public void failedExportLeavesTheSnapshotUntouched() throws Exception {
+        File file = new File(folder.getRoot(), "games.snap");
+        try (SnapshotWriter writer = new SnapshotWriter(file)) {
+            writer.append(game(1, 1));
+            writer.append(game(1, 2));
+            writer.commit();
+        }
+        byte[] before = Files.readAllBytes(file.toPath());
+
+        // like exportSnapshot, the writer is committed only if all the games were appended
+        try (SnapshotWriter writer = new SnapshotWriter(file)) {
+            writer.append(game(2, 1));
+            writer.append(game(1, 1));
+            writer.commit();
+            fail();
+        } catch (IllegalArgumentException e) {
+            // the games are out of order
+        }
+        assertArrayEquals(before, Files.readAllBytes(file.toPath()));
+        assertArrayEquals(new String[]{"games.snap"}, files());
+        assertEquals(2, Snapshot.open(file).getRows());
+    }
+
+    @Test
+    public void closeWithoutCommitWritesNothing() throws Exception {
+        File file = new File(folder.getRoot(), "games.snap");
+        SnapshotWriter writer = new SnapshotWriter(file);
+        writer.append(game(1, 1));
+        writer.close();
+        assertEquals(0, files().length);
+    }
+
+    @Test
+    public void commitReplacesTheSnapshot() throws Exception {
+        File file = new File(folder.getRoot(), "games.snap");
+        for (int games = 1; games <= 3; games++) {
+            try (SnapshotWriter writer = new SnapshotWriter(file)) {
+                for (int gameId = 0; gameId < games; gameId++) {
+                    writer.append(game(1, gameId));
+                }
+                writer.commit();
+            }
+            assertEquals(games, Snapshot.open(file).getRows());
+        }
+        assertArrayEquals(new String[]{"games.snap"}, files());
+    }
+}
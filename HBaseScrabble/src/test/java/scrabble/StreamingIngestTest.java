@@ -0,0 +1,294 @@
+package scrabble;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import scrabble.GameCodec.CellFormat;
+import scrabble.KeyLayout.KeyFormat;
+import scrabble.metrics.LoadMetrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StreamingIngestTest {
+    private static final KeyLayout LAYOUT = new KeyLayout(0, KeyFormat.BINARY);
+    private static final String HEADER = "gameid,tourneyid,tie,winnerid,winnername,winnerscore,winneroldrating,"
+            + "winnernewrating,winnerpos,loserid,losername,loserscore,loseroldrating,losernewrating,loserpos,round,"
+            + "division,date,lexicon";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Keeps the cells written like a table would: a cell written again overwrites itself.
+     */
+    private static class MemorySink implements PutSink {
+        final Map<String, String> cells = new TreeMap<>();
+        int flushes = 0;
+
+        @Override
+        public void write(String tableName, List<Put> puts) {
+            for (Put put : puts) {
+                for (List<Cell> family : put.getFamilyCellMap().values()) {
+                    for (Cell cell : family) {
+                        String column = tableName + "/" + Bytes.toStringBinary(put.getRow()) + "/"
+                                + Bytes.toString(cell.getFamilyArray(), cell.getFamilyOffset(),
+                                                 cell.getFamilyLength())
+                                + ":" + Bytes.toString(cell.getQualifierArray(), cell.getQualifierOffset(),
+                                                       cell.getQualifierLength());
+                        cells.put(column, Bytes.toString(cell.getValueArray(), cell.getValueOffset(),
+                                                         cell.getValueLength()));
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            flushes++;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        /**
+         * @return The value of a column of the games table.
+         */
+        String game(int tourneyId, int gameId, String family, String qualifier) {
+            return cells.get(ScrabbleSchema.TABLE_NAME + "/"
+                                     + Bytes.toStringBinary(LAYOUT.rowKey(tourneyId, gameId)) + "/" + family + ":"
+                                     + qualifier);
+        }
+    }
+
+    /**
+     * Checkpoints kept in memory instead of the "ScrabbleMeta" table, remembering every offset written.
+     */
+    private static final class MemoryCheckpoints extends IngestCheckpoint {
+        final Map<String, Long> offsets = new HashMap<>();
+        final List<Long> written = new ArrayList<>();
+
+        MemoryCheckpoints() {
+            super(null);
+        }
+
+        @Override
+        public long read(String fileName) {
+            Long offset = offsets.get(fileName);
+            return offset == null ? 0 : offset;
+        }
+
+        @Override
+        public void write(String fileName, long offset) {
+            offsets.put(fileName, offset);
+            written.add(offset);
+        }
+
+        @Override
+        public void clear() {
+            offsets.clear();
+        }
+    }
+
+    private static final class MemoryEpoch extends LoadEpoch {
+        long value = 0;
+
+        MemoryEpoch() {
+            super(null);
+        }
+
+        @Override
+        public long read() {
+            return value;
+        }
+
+        @Override
+        public long bump() {
+            return ++value;
+        }
+    }
+
+    private static String game(int tourneyId, int gameId, String winnerName) {
+        return gameId + "," + tourneyId + ",False,1," + winnerName + ",400,1500,1510,1,2,Bob,350,1490,1480,2,"
+                + gameId + ",A,2010-01-01,TWL";
+    }
+
+    private static StreamingIngest ingest(MemoryCheckpoints checkpoints, int batchLines) {
+        Configuration config = new Configuration();
+        config.setInt(StreamingIngest.BATCH_LINES_KEY, batchLines);
+        GameRowMapper mapper = new GameRowMapper(LAYOUT, GameCodec.of(CellFormat.COLUMNS), new WinnerIndex(LAYOUT),
+                                                 null);
+        return new StreamingIngest(config, null, mapper, null, checkpoints, new MemoryEpoch(), new LoadMetrics());
+    }
+
+    private File csv(String content) throws IOException {
+        File file = new File(folder.getRoot(), "games.csv");
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static void append(File file, String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+
+    /**
+     * @return The offsets following every line of the content.
+     */
+    private static List<Long> lineEnds(String content) {
+        List<Long> ends = new ArrayList<>();
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == '\n') {
+                ends.add((long) i + 1);
+            }
+        }
+        return ends;
+    }
+
+    @Test
+    public void partialLastLineWaitsForItsNewline() throws Exception {
+        String complete = HEADER + "\n" + game(1, 1, "Anna") + "\n" + game(1, 2, "Anna") + "\n";
+        String last = game(1, 3, "Anna");
+        // cut in the middle of the name
+        int cut = last.indexOf("Anna") + 2;
+        File file = csv(complete + last.substring(0, cut));
+        MemoryCheckpoints checkpoints = new MemoryCheckpoints();
+        MemorySink sink = new MemorySink();
+
+        LoadStats stats = ingest(checkpoints, 1000).ingest(folder.getRoot(), false, sink);
+        assertEquals(2, stats.getRowsWritten());
+        assertEquals(0, stats.getRowsSkipped());
+        assertEquals(complete.length(), (long) checkpoints.offsets.get("games.csv"));
+        assertNull(sink.game(1, 3, "Game", "gameid"));
+
+        // the rest of the line is written, the header is not read again
+        append(file, last.substring(cut) + "\n");
+        stats = ingest(checkpoints, 1000).ingest(folder.getRoot(), false, sink);
+        assertEquals(1, stats.getRowsWritten());
+        assertEquals(0, stats.getRowsSkipped());
+        assertEquals(file.length(), (long) checkpoints.offsets.get("games.csv"));
+        assertEquals("Anna", sink.game(1, 3, "Winner", "name"));
+    }
+
+    @Test
+    public void checkpointsAreAtLineEnds() throws Exception {
+        StringBuilder content = new StringBuilder(HEADER).append('\n');
+        for (int gameId = 1; gameId <= 7; gameId++) {
+            content.append(game(2, gameId, "Anna")).append('\n');
+        }
+        csv(content.toString());
+        MemoryCheckpoints checkpoints = new MemoryCheckpoints();
+        MemorySink sink = new MemorySink();
+
+        LoadStats stats = ingest(checkpoints, 3).ingest(folder.getRoot(), false, sink);
+        assertEquals(7, stats.getRowsWritten());
+        assertEquals(content.length(), stats.getBytesRead());
+        List<Long> ends = lineEnds(content.toString());
+        // batches of 3 lines, the first one being the header and 2 games
+        assertEquals(Arrays.asList(ends.get(2), ends.get(5), ends.get(7)), checkpoints.written);
+        assertEquals(3, sink.flushes);
+    }
+
+    @Test
+    public void crlfLineEnds() throws Exception {
+        csv(HEADER + "\r\n" + game(1, 1, "Anna") + "\r\n" + game(1, 2, "Anna") + "\r\n");
+        MemoryCheckpoints checkpoints = new MemoryCheckpoints();
+        MemorySink sink = new MemorySink();
+
+        LoadStats stats = ingest(checkpoints, 1000).ingest(folder.getRoot(), false, sink);
+        assertEquals(2, stats.getRowsWritten());
+        // the last field does not keep the carriage return
+        assertEquals("TWL", sink.game(1, 1, "Game", "lexicon"));
+        assertEquals("TWL", sink.game(1, 2, "Game", "lexicon"));
+    }
+
+    @Test
+    public void lineLongerThanTheBuffer() throws Exception {
+        char[] name = new char[3 * 1024 * 1024];
+        Arrays.fill(name, 'x');
+        String longName = new String(name);
+        File file = csv(HEADER + "\n" + game(1, 1, "Anna") + "\n" + game(1, 2, longName) + "\n"
+                                + game(1, 3, "Anna") + "\n");
+        MemoryCheckpoints checkpoints = new MemoryCheckpoints();
+        MemorySink sink = new MemorySink();
+
+        LoadStats stats = ingest(checkpoints, 1000).ingest(folder.getRoot(), false, sink);
+        assertEquals(3, stats.getRowsWritten());
+        assertEquals(file.length(), (long) checkpoints.offsets.get("games.csv"));
+        assertEquals(longName, sink.game(1, 2, "Winner", "name"));
+        assertEquals("Anna", sink.game(1, 3, "Winner", "name"));
+    }
+
+    @Test
+    public void shrunkFileIsIngestedFromTheStart() throws Exception {
+        csv(HEADER + "\n" + game(1, 1, "Anna") + "\n" + game(1, 2, "Anna") + "\n" + game(1, 3, "Anna") + "\n");
+        MemoryCheckpoints checkpoints = new MemoryCheckpoints();
+        ingest(checkpoints, 1000).ingest(folder.getRoot(), false, new MemorySink());
+
+        File file = csv(HEADER + "\n" + game(5, 1, "Carl") + "\n");
+        MemorySink sink = new MemorySink();
+        LoadStats stats = ingest(checkpoints, 1000).ingest(folder.getRoot(), false, sink);
+        // the header of the new file is skipped again
+        assertEquals(1, stats.getRowsWritten());
+        assertEquals(0, stats.getRowsSkipped());
+        assertEquals(file.length(), (long) checkpoints.offsets.get("games.csv"));
+        assertEquals("Carl", sink.game(5, 1, "Winner", "name"));
+    }
+
+    @Test
+    public void replayingIsIdempotent() throws Exception {
+        StringBuilder content = new StringBuilder(HEADER).append('\n');
+        for (int gameId = 1; gameId <= 10; gameId++) {
+            content.append(game(gameId % 3, gameId, "Player" + gameId % 4)).append('\n');
+        }
+        csv(content.toString());
+
+        MemorySink expected = new MemorySink();
+        ingest(new MemoryCheckpoints(), 4).ingest(folder.getRoot(), false, expected);
+
+        // the second batch is written, but the process fails before it is checkpointed
+        MemoryCheckpoints checkpoints = new MemoryCheckpoints();
+        MemorySink failing = new MemorySink() {
+            @Override
+            public void flush() throws IOException {
+                if (++flushes == 2) {
+                    throw new IOException("Region server down");
+                }
+            }
+        };
+        try {
+            ingest(checkpoints, 4).ingest(folder.getRoot(), false, failing);
+            fail();
+        } catch (IOException e) {
+            // the games of the first batch only are checkpointed
+        }
+        assertEquals(lineEnds(content.toString()).get(3), checkpoints.offsets.get("games.csv"));
+
+        // the restart writes the second batch again, over the same cells
+        MemorySink restarted = new MemorySink();
+        restarted.cells.putAll(failing.cells);
+        LoadStats stats = ingest(checkpoints, 4).ingest(folder.getRoot(), false, restarted);
+        assertEquals(7, stats.getRowsWritten());
+        assertEquals(expected.cells, restarted.cells);
+        assertTrue(expected.cells.size() > 10);
+    }
+}
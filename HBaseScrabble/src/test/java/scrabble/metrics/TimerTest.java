@@ -0,0 +1,89 @@
+package scrabble.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimerTest {
+
+    @Test
+    public void emptyTimer() {
+        Timer timer = new Timer();
+        assertEquals(0, timer.percentileNanos(50));
+        assertEquals(0, timer.percentileNanos(99));
+        assertEquals(0.0, timer.getMaxMillis(), 0.0);
+        assertEquals(0.0, timer.getMeanMillis(), 0.0);
+    }
+
+    @Test
+    public void shortDurationsAreExact() {
+        Timer timer = new Timer();
+        for (long nanos = 0; nanos < 32; nanos++) {
+            timer.record(nanos);
+        }
+        assertEquals(32, timer.getCount());
+        assertEquals(15, timer.percentileNanos(50));
+        assertEquals(31, timer.percentileNanos(99));
+        assertEquals(31, timer.percentileNanos(100));
+        assertEquals(0, timer.percentileNanos(0));
+    }
+
+    @Test
+    public void linearToLogBoundary() {
+        Timer timer = new Timer();
+        timer.record(31);
+        timer.record(32);
+        timer.record(33);
+        timer.record(34);
+        // 31 is the last bucket of its own, 32 and 33 share the first bucket of the powers of two
+        assertEquals(31, timer.percentileNanos(25));
+        assertEquals(33, timer.percentileNanos(50));
+        assertEquals(33, timer.percentileNanos(75));
+        // 34 is in the bucket up to 35, but no duration was longer than the max
+        assertEquals(34, timer.percentileNanos(99));
+        assertEquals(34, timer.percentileNanos(100));
+    }
+
+    @Test
+    public void percentilesAreWithinASixteenth() {
+        Timer timer = new Timer();
+        // 1 microsecond to 1 millisecond
+        for (long micros = 1000; micros >= 1; micros--) {
+            timer.record(micros * 1000);
+        }
+        assertEquals(1000, timer.getCount());
+        assertWithinASixteenth(500000, timer.percentileNanos(50));
+        assertWithinASixteenth(990000, timer.percentileNanos(99));
+        assertWithinASixteenth(999000, timer.percentileNanos(99.9));
+        assertEquals(1000000, timer.percentileNanos(100));
+        assertEquals(1.0, timer.getMaxMillis(), 0.0);
+        assertEquals(0.5005, timer.getMeanMillis(), 1e-9);
+        assertEquals(timer.percentileNanos(99) / 1000000.0, timer.getP99Millis(), 0.0);
+    }
+
+    @Test
+    public void everyDurationIsInABucketUpToASixteenthAboveIt() {
+        for (long nanos = 0; nanos < 1L << 40; nanos = nanos < 4096 ? nanos + 1 : nanos + nanos / 7) {
+            Timer timer = new Timer();
+            timer.record(nanos);
+            timer.record(Long.MAX_VALUE);
+            // the first half is the duration, reported as the top of its bucket
+            assertWithinASixteenth(nanos, timer.percentileNanos(50));
+        }
+    }
+
+    @Test
+    public void negativeDurationsCountAsZero() {
+        Timer timer = new Timer();
+        timer.record(-5);
+        assertEquals(1, timer.getCount());
+        assertEquals(0, timer.percentileNanos(100));
+        assertEquals(0, timer.getTotalNanos());
+    }
+
+    private static void assertWithinASixteenth(long expected, long actual) {
+        assertTrue(actual + " below " + expected, actual >= expected);
+        assertTrue(actual + " too far above " + expected, actual <= expected + expected / 16);
+    }
+}
@@ -0,0 +1,97 @@
+package scrabble.bench;
+
+import org.apache.hadoop.hbase.client.Put;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import scrabble.*;
+import scrabble.KeyLayout.KeyFormat;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per line work of loadTable: splitting the csv line, building the row key and building the Puts.
+ *
+ * Every invocation processes all the lines of the dataset, so the scores are per dataset; divide by the
+ * number of games for the cost of one line.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoaderBenchmark {
+
+    @Param({"BINARY", "ASCII"})
+    public KeyFormat keyFormat;
+
+    @Param({"0", "16"})
+    public int saltBuckets;
+
+    @Param({"COLUMNS", "PACKED"})
+    public GameCodec.CellFormat cellFormat;
+
+    @Param({"100"})
+    public int tourneys;
+
+    @Param({"100"})
+    public int gamesPerTourney;
+
+    private String[] lines;
+    private String[][] fields;
+    private GameRowMapper gamesOnly;
+    private KeyLayout layout;
+    private GameCodec codec;
+
+    @Setup
+    public void setUp() {
+        List<String> csv = new SyntheticGames(tourneys, gamesPerTourney, 500, 42).lines();
+        lines = csv.toArray(new String[csv.size()]);
+        fields = new String[lines.length][ScrabbleSchema.CSV_COLUMNS];
+        for (int i = 0; i < lines.length; i++) {
+            GameRowMapper.split(lines[i], fields[i]);
+        }
+        layout = new KeyLayout(saltBuckets, keyFormat);
+        codec = GameCodec.of(cellFormat);
+        gamesOnly = new GameRowMapper(layout, codec, null, null);
+    }
+
+    @Benchmark
+    public void split(Blackhole bh) {
+        String[] values = new String[ScrabbleSchema.CSV_COLUMNS];
+        for (String line : lines) {
+            bh.consume(GameRowMapper.split(line, values));
+        }
+    }
+
+    @Benchmark
+    public void getKey(Blackhole bh) {
+        for (String[] values : fields) {
+            bh.consume(gamesOnly.getKey(values));
+        }
+    }
+
+    @Benchmark
+    public void toPut(Blackhole bh) {
+        for (String[] values : fields) {
+            Put put = gamesOnly.toPut(values);
+            bh.consume(put);
+        }
+    }
+
+    /**
+     * Everything a parser thread does per line: the split, and the Puts of the game, the index and the aggregates.
+     */
+    @Benchmark
+    public PutBatch splitAndMap() {
+        GameRowMapper mapper = new GameRowMapper(layout, codec, new WinnerIndex(layout), new TourneyAggregates());
+        PutBatch batch = new PutBatch();
+        String[] values = new String[ScrabbleSchema.CSV_COLUMNS];
+        for (String line : lines) {
+            GameRowMapper.split(line, values);
+            mapper.map(values, batch);
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,172 @@
+package scrabble.bench;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.client.Result;
+import org.openjdk.jmh.annotations.*;
+import scrabble.*;
+import scrabble.KeyLayout.KeyFormat;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The set algebra of query2, on results held in memory so HBase itself is not measured.
+ *
+ * - aggregates: intersecting in place the sorted repeated players of every tourney, straight from their encoding in
+ *   the tourney aggregates.
+ * - aggregatesDecoded: the same intersection, decoding every tourney into an array and allocating a new array for
+ *   every intersection.
+ * - games: folding the player ids of every game into per tourney repeated players, cut into as many sub-ranges as
+ *   there are regions, and merging the partial results like the parallel scan does. The ids are decoded from cells
+ *   in either cell format.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Query2Benchmark {
+
+    @Param({"1000"})
+    public int tourneys;
+
+    @Param({"50"})
+    public int gamesPerTourney;
+
+    @Param({"200", "2000"})
+    public int players;
+
+    @Param({"1", "8"})
+    public int regions;
+
+    @Param({"COLUMNS", "PACKED"})
+    public GameCodec.CellFormat cellFormat;
+
+    private List<byte[]> repeated;
+    private List<List<Result>> regionResults;
+    private KeyLayout layout;
+    private GameCodec codec;
+
+    @Setup
+    public void setUp() {
+        layout = new KeyLayout(0, KeyFormat.BINARY);
+        codec = GameCodec.of(cellFormat);
+        List<String> lines = new SyntheticGames(tourneys, gamesPerTourney, players, 42).lines();
+
+        List<Result> results = new ArrayList<>(lines.size());
+        Map<Integer, Map<Integer, Integer>> counts = new TreeMap<>();
+        String[] values = new String[ScrabbleSchema.CSV_COLUMNS];
+        for (String line : lines) {
+            GameRowMapper.split(line, values);
+            int tourney = Integer.parseInt(values[ScrabbleSchema.COL_TOURNEYID]);
+            byte[] row = layout.rowKey(tourney, Integer.parseInt(values[ScrabbleSchema.COL_GAMEID]));
+            // the cells the QUERY2_GAMES profile reads, the families sorted like in a Result
+            Map<byte[], List<Cell>> families = codec.toPut(row, values).getFamilyCellMap();
+            List<Cell> cells = new ArrayList<>();
+            for (Cell cell : families.get(ScrabbleSchema.LOSER)) {
+                if (codec.contains(cell, ScrabbleSchema.ID)) {
+                    cells.add(cell);
+                }
+            }
+            for (Cell cell : families.get(ScrabbleSchema.WINNER)) {
+                if (codec.contains(cell, ScrabbleSchema.ID)) {
+                    cells.add(cell);
+                }
+            }
+            results.add(Result.create(cells));
+
+            Map<Integer, Integer> tourneyCounts = counts.get(tourney);
+            if (tourneyCounts == null) {
+                tourneyCounts = new TreeMap<>();
+                counts.put(tourney, tourneyCounts);
+            }
+            for (int col : new int[]{ScrabbleSchema.COL_WINNER_ID, ScrabbleSchema.COL_LOSER_ID}) {
+                int player = Integer.parseInt(values[col]);
+                Integer games = tourneyCounts.get(player);
+                tourneyCounts.put(player, games == null ? 1 : games + 1);
+            }
+        }
+
+        repeated = new ArrayList<>(counts.size());
+        for (Map<Integer, Integer> tourneyCounts : counts.values()) {
+            int[] players = new int[tourneyCounts.size()];
+            int count = 0;
+            for (Map.Entry<Integer, Integer> player : tourneyCounts.entrySet()) {
+                if (player.getValue() > 1) {
+                    players[count++] = player.getKey();
+                }
+            }
+            repeated.add(TourneyAggregates.encode(Arrays.copyOf(players, count)));
+        }
+
+        // region boundaries at arbitrary games, so tourneys get cut like by real regions
+        regionResults = new ArrayList<>(regions);
+        int perRegion = (results.size() + regions - 1) / regions;
+        for (int from = 0; from < results.size(); from += perRegion) {
+            regionResults.add(results.subList(from, Math.min(results.size(), from + perRegion)));
+        }
+    }
+
+    @Benchmark
+    public PlayerSet aggregates() {
+        PlayerSet result = new PlayerSet();
+        for (byte[] players : repeated) {
+            result.retainEncoded(players, 0, players.length);
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public int[] aggregatesDecoded() {
+        int[] result = null;
+        for (byte[] encoded : repeated) {
+            int[] players = decode(encoded);
+            result = result == null ? players : intersect(result, players);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<String> games() throws IOException {
+        List<RepeatedPlayers.Partial> partials = new ArrayList<>(regionResults.size());
+        for (List<Result> region : regionResults) {
+            partials.add(RepeatedPlayers.scan(new ResultListScanner(region), layout, codec));
+        }
+        return RepeatedPlayers.reduce(partials).toStrings();
+    }
+
+    private static int[] decode(byte[] encoded) {
+        int[] players = new int[encoded.length / 4];
+        for (int i = 0; i < players.length; i++) {
+            players[i] = RowKeyCodec.decodeInt(encoded, i * 4);
+        }
+        return players;
+    }
+
+    /**
+     * @return The ids present in both sorted arrays, sorted.
+     */
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+}
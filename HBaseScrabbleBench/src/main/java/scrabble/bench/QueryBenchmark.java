@@ -0,0 +1,164 @@
+package scrabble.bench;
+
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.openjdk.jmh.annotations.*;
+import scrabble.AsyncQueries;
+import scrabble.GameRowMapper;
+import scrabble.ScrabbleQueries;
+import scrabble.ScrabbleSchema;
+
+import java.io.Closeable;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The queries end to end, against an HBase running in the benchmark process.
+ *
+ * A mini cluster is started once per fork, and a synthetic dataset is loaded into it with createTable and loadTable,
+ * so the tables have their winner index and aggregates like in production. Every invocation then queries another
+ * tourney, cycling over all of them.
+ *
+ * query3 is also measured over a batch of tourneys, answered one after the other, as a single batched query, and as
+ * concurrent queries submitted to {@link AsyncQueries}.
+ *
+ * HBaseScrabble lives in the default package, which cannot be imported, so it is created by reflection and used
+ * through the {@link ScrabbleQueries} it implements.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class QueryBenchmark {
+
+    @Param({"200"})
+    public int tourneys;
+
+    @Param({"100"})
+    public int gamesPerTourney;
+
+    @Param({"500"})
+    public int players;
+
+    /**
+     * The number of tourneys of the range of query2.
+     */
+    @Param({"10", "100"})
+    public int query2Tourneys;
+
+    /**
+     * The number of tourneys of the batches of query3.
+     */
+    @Param({"16"})
+    public int batchTourneys;
+
+    private HBaseTestingUtility cluster;
+    private Object app;
+    private ScrabbleQueries queries;
+    private AsyncQueries async;
+    private File dataDir;
+    private String[] winners;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        cluster = new HBaseTestingUtility();
+        cluster.startMiniCluster();
+
+        SyntheticGames games = new SyntheticGames(tourneys, gamesPerTourney, players, 42);
+        dataDir = Files.createTempDirectory("scrabble-bench").toFile();
+        games.writeCsv(dataDir);
+
+        // a winner of every tourney, so query1 finds games
+        winners = new String[tourneys + 1];
+        String[] values = new String[ScrabbleSchema.CSV_COLUMNS];
+        for (String line : games.lines()) {
+            GameRowMapper.split(line, values);
+            int tourney = Integer.parseInt(values[ScrabbleSchema.COL_TOURNEYID]);
+            if (winners[tourney] == null) {
+                winners[tourney] = values[ScrabbleSchema.COL_WINNER_NAME];
+            }
+        }
+
+        Class<?> hBaseScrabble = Class.forName("HBaseScrabble");
+        app = hBaseScrabble.getConstructor(String.class)
+                           .newInstance("localhost:" + cluster.getZkCluster().getClientPort());
+        hBaseScrabble.getMethod("createTable").invoke(app);
+        hBaseScrabble.getMethod("loadTable", String.class).invoke(app, dataDir.getAbsolutePath());
+        queries = (ScrabbleQueries) app;
+        async = new AsyncQueries(cluster.getConfiguration(), queries);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        async.close();
+        ((Closeable) app).close();
+        cluster.shutdownMiniCluster();
+        new File(dataDir, "scrabble_games.csv").delete();
+        dataDir.delete();
+    }
+
+    @Benchmark
+    public List<String> query1() throws Exception {
+        int tourney = nextTourney();
+        return queries.query1(Integer.toString(tourney), winners[tourney]);
+    }
+
+    @Benchmark
+    public List<String> query2() throws Exception {
+        int first = 1 + (nextTourney() - 1) % Math.max(1, tourneys - query2Tourneys);
+        return queries.query2(Integer.toString(first), Integer.toString(first + query2Tourneys));
+    }
+
+    @Benchmark
+    public List<String> query3() throws Exception {
+        return queries.query3(Integer.toString(nextTourney()));
+    }
+
+    @Benchmark
+    public List<List<String>> query3Sequential() throws Exception {
+        List<List<String>> results = new ArrayList<>(batchTourneys);
+        for (String tourney : nextTourneys()) {
+            results.add(queries.query3(tourney));
+        }
+        return results;
+    }
+
+    @Benchmark
+    public Map<String, List<String>> query3Batch() throws Exception {
+        return queries.query3(nextTourneys());
+    }
+
+    @Benchmark
+    public Map<String, List<String>> query3Async() throws Exception {
+        Map<String, CompletableFuture<List<String>>> futures = new HashMap<>();
+        for (String tourney : nextTourneys()) {
+            futures.put(tourney, async.query3(tourney));
+        }
+        Map<String, List<String>> results = new HashMap<>();
+        for (Map.Entry<String, CompletableFuture<List<String>>> future : futures.entrySet()) {
+            results.put(future.getKey(), future.getValue().get());
+        }
+        return results;
+    }
+
+    private List<String> nextTourneys() {
+        List<String> batch = new ArrayList<>(batchTourneys);
+        for (int i = 0; i < batchTourneys; i++) {
+            batch.add(Integer.toString(nextTourney()));
+        }
+        return batch;
+    }
+
+    private synchronized int nextTourney() {
+        next = next % tourneys + 1;
+        return next;
+    }
+}
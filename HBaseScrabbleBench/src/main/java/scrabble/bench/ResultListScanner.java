@@ -0,0 +1,51 @@
+package scrabble.bench;
+
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A scanner over Results held in memory, standing in for the scanner of a region.
+ */
+public class ResultListScanner implements ResultScanner {
+    private final List<Result> results;
+    private int next = 0;
+
+    public ResultListScanner(List<Result> results) {
+        this.results = results;
+    }
+
+    @Override
+    public Result next() {
+        return next < results.size() ? results.get(next++) : null;
+    }
+
+    @Override
+    public Result[] next(int nbRows) {
+        int to = Math.min(results.size(), next + nbRows);
+        Result[] batch = results.subList(next, to).toArray(new Result[to - next]);
+        next = to;
+        return batch;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public Iterator<Result> iterator() {
+        return new Iterator<Result>() {
+            @Override
+            public boolean hasNext() {
+                return next < results.size();
+            }
+
+            @Override
+            public Result next() {
+                return results.get(next++);
+            }
+        };
+    }
+}
@@ -0,0 +1,119 @@
+package scrabble.bench;
+
+import scrabble.ScrabbleSchema;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates a dataset of games in the csv format of "scrabble_games.csv".
+ *
+ * The tourneys are numbered from 1, and every tourney has the same number of games between players drawn from a
+ * pool. The smaller the pool compared to the games of a tourney, the more players are repeated in it, which is
+ * what query2 is about. The same seed always gives the same games.
+ */
+public class SyntheticGames {
+    public static final String HEADER = "gameid,tourneyid,tie,winnerid,winnername,winnerscore,winneroldrating,"
+            + "winnernewrating,winnerpos,loserid,losername,loserscore,loseroldrating,losernewrating,loserpos,"
+            + "round,division,date,lexicon";
+
+    private final int tourneys;
+    private final int gamesPerTourney;
+    private final int players;
+    private final long seed;
+
+    /**
+     * @param tourneys        The number of tourneys.
+     * @param gamesPerTourney The number of games of every tourney.
+     * @param players         The size of the pool the players of the games are drawn from.
+     * @param seed            The seed of the random generator.
+     */
+    public SyntheticGames(int tourneys, int gamesPerTourney, int players, long seed) {
+        this.tourneys = tourneys;
+        this.gamesPerTourney = gamesPerTourney;
+        this.players = players;
+        this.seed = seed;
+    }
+
+    public int getTourneys() {
+        return tourneys;
+    }
+
+    /**
+     * @return The name of a player of the pool.
+     */
+    public static String playerName(int playerId) {
+        return "Player " + playerId;
+    }
+
+    /**
+     * @return The csv lines of all the games, without the header, in the order of the tourneys.
+     */
+    public List<String> lines() {
+        List<String> lines = new ArrayList<>(tourneys * gamesPerTourney);
+        Random random = new Random(seed);
+        String[] fields = new String[ScrabbleSchema.CSV_COLUMNS];
+        int gameId = 1;
+        for (int tourney = 1; tourney <= tourneys; tourney++) {
+            for (int round = 1; round <= gamesPerTourney; round++) {
+                game(random, tourney, gameId++, round, fields);
+                lines.add(String.join(",", fields));
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Writes the header and all the games to "folder/scrabble_games.csv", the file loadTable reads.
+     *
+     * @return The csv file.
+     * @throws IOException
+     */
+    public File writeCsv(File folder) throws IOException {
+        File csv = new File(folder, "scrabble_games.csv");
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(csv),
+                                                                    StandardCharsets.UTF_8))) {
+            out.write(HEADER);
+            out.write('\n');
+            for (String line : lines()) {
+                out.write(line);
+                out.write('\n');
+            }
+        }
+        return csv;
+    }
+
+    private void game(Random random, int tourney, int gameId, int round, String[] fields) {
+        int winner = 1 + random.nextInt(players);
+        int loser = 1 + random.nextInt(players - 1);
+        if (loser >= winner) {
+            loser++;
+        }
+        boolean tie = random.nextInt(20) == 0;
+        int winnerScore = 300 + random.nextInt(300);
+        int loserScore = tie ? winnerScore : winnerScore - 1 - random.nextInt(200);
+
+        fields[ScrabbleSchema.COL_GAMEID] = Integer.toString(gameId);
+        fields[ScrabbleSchema.COL_TOURNEYID] = Integer.toString(tourney);
+        fields[ScrabbleSchema.COL_TIE] = tie ? "True" : "False";
+        fields[ScrabbleSchema.COL_WINNER_ID] = Integer.toString(winner);
+        fields[ScrabbleSchema.COL_WINNER_NAME] = playerName(winner);
+        fields[ScrabbleSchema.COL_WINNER_SCORE] = Integer.toString(winnerScore);
+        fields[ScrabbleSchema.COL_WINNER_OLDRATING] = Integer.toString(1000 + winner % 1000);
+        fields[ScrabbleSchema.COL_WINNER_NEWRATING] = Integer.toString(1005 + winner % 1000);
+        fields[ScrabbleSchema.COL_WINNER_POS] = Integer.toString(1 + random.nextInt(gamesPerTourney));
+        fields[ScrabbleSchema.COL_LOSER_ID] = Integer.toString(loser);
+        fields[ScrabbleSchema.COL_LOSER_NAME] = playerName(loser);
+        fields[ScrabbleSchema.COL_LOSER_SCORE] = Integer.toString(loserScore);
+        fields[ScrabbleSchema.COL_LOSER_OLDRATING] = Integer.toString(1000 + loser % 1000);
+        fields[ScrabbleSchema.COL_LOSER_NEWRATING] = Integer.toString(995 + loser % 1000);
+        fields[ScrabbleSchema.COL_LOSER_POS] = Integer.toString(1 + random.nextInt(gamesPerTourney));
+        fields[ScrabbleSchema.COL_ROUND] = Integer.toString(round);
+        fields[ScrabbleSchema.COL_DIVISION] = Integer.toString(1 + tourney % 3);
+        fields[ScrabbleSchema.COL_DATE] = String.format("2018-%02d-%02d", 1 + tourney % 12, 1 + tourney % 28);
+        fields[ScrabbleSchema.COL_LEXICON] = "False";
+    }
+}